@@ -0,0 +1,387 @@
+package alns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import heuristics.ConstructiveHeuristic;
+import heuristics.RouteEvaluator;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+/**
+ * Adaptive large neighborhood search for the mE-VRSPTW, run on a background thread alongside the Branch-and-Price.
+ * The destroy operators remove customers (random, worst, related, whole routes, or routes charging in the most congested period)
+ * and the repair operators reinsert them (greedy or regret-2). The parallel arcs are chosen each time a sequence is evaluated,
+ * and the charging intervals are rescheduled after each repair (list scheduling). New solutions are accepted with a simulated annealing
+ * criterion, and the weights of the operators are adapted every segment. The improving solutions are published (pollSolution),
+ * and their routes are exported into the column pool (pollColumns).
+ */
+public final class ALNS implements Runnable {
+
+	public static int segmentLength = 100; 					//iterations between two updates of the weights of the operators
+	public static double reactionFactor = 0.1; 				//reaction factor of the weights
+	public static double[] scores = {33, 9, 13}; 			//score of an operator: new best, improving, and accepted solution
+	public static double minimumRemoval = 0.1; 				//minimum fraction of customers removed
+	public static double maximumRemoval = 0.3; 				//maximum fraction of customers removed
+	public static double initialWorsening = 0.05; 			//a solution this much worse than the initial one is accepted with probability 0.5 at the start
+	public static double coolingRate = 0.9998; 				//cooling rate of the temperature
+	public static int infeasibilityPenalty = 1000000; 		//penalty of a solution whose charging intervals exceed the chargers capacity
+	public static long seed = 0; 							//seed of the random numbers
+
+	private static final int RANDOM = 0, WORST = 1, RELATED = 2, ROUTE = 3, CHARGING = 4; 		//destroy operators
+	private static final int GREEDY = 0, REGRET = 1; 											//repair operators
+	private final Logger logger = LoggerFactory.getLogger(ALNS.class);
+
+	private final EVRPTW dataModel; 							//data model (own copy)
+	private final RouteEvaluator evaluator; 					//evaluation of the sequences (and of the insertions and removals)
+	private final ConstructiveHeuristic heuristic; 				//initial solution and scheduling of the charging intervals
+	private final Random random = new Random(seed); 			//random numbers
+	private final int[][] minimumCost; 							//cost of the cheapest arc between two vertices
+	private final double[] destroyWeights, repairWeights; 		//weights of the operators
+	private final double[] destroyScores, repairScores; 		//scores of the operators in the current segment
+	private final int[] destroyUses, repairUses; 				//uses of the operators in the current segment
+	private Thread thread; 										//thread running the search
+	private volatile boolean stopped = false; 					//if true, the search is stopped
+	private long timeLimit; 									//future point in time by which the search must be finished
+	private int objectiveBestSolution = Integer.MAX_VALUE; 		//objective of the best (feasible) solution
+	private List<Route> solution; 								//improved solution not collected yet (null if none)
+	private List<Route> columns = new ArrayList<Route>(); 		//routes not exported yet
+	private final Set<Route> exportedColumns = new HashSet<Route>(); //routes exported (or to be exported)
+
+	public ALNS(EVRPTW dataModel, PricingProblem pricingProblem) {
+		this.dataModel = dataModel;
+		this.evaluator = new RouteEvaluator(dataModel, pricingProblem, "alns");
+		this.heuristic = new ConstructiveHeuristic(dataModel, evaluator);
+		this.minimumCost = new int[dataModel.C+2][dataModel.C+2];
+		for (int i = 0; i <= dataModel.C+1; i++)
+			for (int j = 0; j <= dataModel.C+1; j++) {
+				minimumCost[i][j] = Integer.MAX_VALUE/4;
+				if(i != j && dataModel.graph.containsEdge(i, j))
+					for(Arc arc: dataModel.graph.getAllEdges(i, j)) minimumCost[i][j] = Math.min(minimumCost[i][j], arc.cost);
+			}
+		this.destroyWeights = new double[CHARGING+1];
+		this.destroyScores = new double[CHARGING+1];
+		this.destroyUses = new int[CHARGING+1];
+		this.repairWeights = new double[REGRET+1];
+		this.repairScores = new double[REGRET+1];
+		this.repairUses = new int[REGRET+1];
+		Arrays.fill(destroyWeights, 1);
+		Arrays.fill(repairWeights, 1);
+	}
+
+	/**
+	 * Starts the search on a background (daemon) thread.
+	 * @param timeLimit future point in time by which the search must be finished.
+	 */
+	public void start(long timeLimit) {
+		this.timeLimit = timeLimit;
+		this.thread = new Thread(this, "BPC-alns");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/** Stops the search (and waits for the current iteration). */
+	public void stop() {
+		stopped = true;
+		if(thread == null) return;
+		try {thread.join();}
+		catch (InterruptedException e) {Thread.currentThread().interrupt();}
+	}
+
+	/** Runs the search. */
+	@Override
+	public void run() {
+		Solution current = getInitialSolution();
+		if(current == null) {
+			logger.debug("ALNS: no initial solution");
+			return;
+		}
+		if(current.feasible) publish(current);
+		double temperature = -initialWorsening*getObjective(current)/Math.log(0.5);
+		int iteration = 0;
+
+		while(!stopped && System.currentTimeMillis()<timeLimit) {
+			iteration++;
+			int destroyOperator = select(destroyWeights);
+			int repairOperator = select(repairWeights);
+
+			Solution candidate = current.copy();
+			List<Integer> removed = destroy(candidate, destroyOperator);
+			repair(candidate, removed, repairOperator == REGRET);
+			candidate.feasible = heuristic.scheduleCharging(candidate.routes);
+
+			//Acceptance (simulated annealing)
+			double score = 0;
+			if(candidate.feasible && candidate.cost<objectiveBestSolution) {
+				publish(candidate);
+				score = scores[0];
+			}
+			else if(getObjective(candidate)<getObjective(current)) score = scores[1];
+			else if(random.nextDouble()<Math.exp((getObjective(current)-getObjective(candidate))/temperature)) score = scores[2];
+			if(score>0) current = candidate;
+			destroyScores[destroyOperator]+=score; destroyUses[destroyOperator]++;
+			repairScores[repairOperator]+=score; repairUses[repairOperator]++;
+			temperature*=coolingRate;
+
+			//Adapt the weights
+			if(iteration%segmentLength == 0) {
+				updateWeights(destroyWeights, destroyScores, destroyUses);
+				updateWeights(repairWeights, repairScores, repairUses);
+			}
+		}
+		logger.debug("ALNS finished after " + iteration + " iterations (" + evaluator.getEvaluations() + " sequences evaluated). Best solution: " + objectiveBestSolution);
+	}
+
+	/** Returns the solution of the constructive heuristic, or single-customer routes (possibly exceeding the chargers capacity). */
+	private Solution getInitialSolution() {
+		Solution initialSolution = new Solution();
+		List<Route> routes = heuristic.solve();
+		if(routes != null) {
+			for(Route route: routes) {
+				List<Integer> sequence = new ArrayList<Integer>();
+				for(int i: route.routeSequence) sequence.add(i);
+				initialSolution.add(sequence, route);
+			}
+			initialSolution.feasible = true;
+			return initialSolution;
+		}
+		for (int i = 1; i <= dataModel.C; i++) {
+			List<Integer> sequence = new ArrayList<Integer>();
+			sequence.add(i);
+			Route route = evaluator.evaluate(sequence);
+			if(route == null) return null;
+			initialSolution.add(sequence, route);
+		}
+		initialSolution.feasible = heuristic.scheduleCharging(initialSolution.routes);
+		return initialSolution;
+	}
+
+	/**
+	 * Removes customers from the solution.
+	 * @return customers removed (including the customers of the routes that became infeasible)
+	 */
+	private List<Integer> destroy(Solution solution, int operator) {
+		int minimum = Math.max(1, (int) (minimumRemoval*dataModel.C));
+		int maximum = Math.max(minimum, (int) (maximumRemoval*dataModel.C));
+		int q = minimum+random.nextInt(maximum-minimum+1);
+		Set<Integer> removed = new LinkedHashSet<Integer>();
+
+		if(operator == WORST) { //worst removal: largest savings first (randomized)
+			List<int[]> savings = new ArrayList<int[]>();
+			for (int k = 0; k < solution.sequences.size(); k++) {
+				List<Integer> sequence = solution.sequences.get(k);
+				for (int position = 0; position < sequence.size(); position++) {
+					int cost = evaluator.getRemovalCost(sequence, position);
+					if(cost<Integer.MAX_VALUE) savings.add(new int[] {sequence.get(position), solution.routes.get(k).cost-cost});
+				}
+			}
+			Collections.sort(savings, (saving1, saving2) -> Integer.compare(saving2[1], saving1[1]));
+			while(removed.size()<q && !savings.isEmpty()) removed.add(savings.remove((int) (Math.pow(random.nextDouble(), 3)*savings.size()))[0]);
+		}
+		else if(operator == RELATED) { //related removal: close customers (cost and time windows)
+			removed.add(1+random.nextInt(dataModel.C));
+			while(removed.size()<q) {
+				List<Integer> removedList = new ArrayList<Integer>(removed);
+				int reference = removedList.get(random.nextInt(removedList.size()));
+				List<Integer> candidates = new ArrayList<Integer>();
+				for (int i = 1; i <= dataModel.C; i++) if(!removed.contains(i)) candidates.add(i);
+				if(candidates.isEmpty()) break;
+				candidates.sort((i, j) -> Integer.compare(getRelatedness(reference, i), getRelatedness(reference, j)));
+				removed.add(candidates.get((int) (Math.pow(random.nextDouble(), 3)*candidates.size())));
+			}
+		}
+		else if(operator == ROUTE) { //route removal
+			List<Integer> indices = new ArrayList<Integer>();
+			for (int k = 0; k < solution.sequences.size(); k++) indices.add(k);
+			Collections.shuffle(indices, random);
+			for (int k = 0; k < indices.size() && removed.size()<q; k++) removed.addAll(solution.sequences.get(indices.get(k)));
+		}
+		else if(operator == CHARGING) { //charging removal: routes charging in the most congested period
+			int[] chargersUsed = new int[dataModel.last_charging_period+2];
+			for(Route route: solution.routes)
+				for (int t = Math.max(route.initialChargingTime, 1); t <= Math.min(route.initialChargingTime+route.chargingTime-1, dataModel.last_charging_period); t++) chargersUsed[t]++;
+			int period = 1;
+			for (int t = 1; t <= dataModel.last_charging_period; t++) if(chargersUsed[t]>chargersUsed[period]) period = t;
+			List<Integer> indices = new ArrayList<Integer>();
+			for (int k = 0; k < solution.routes.size(); k++) {
+				Route route = solution.routes.get(k);
+				if(route.initialChargingTime<=period && period<=route.initialChargingTime+route.chargingTime-1) indices.add(k);
+			}
+			Collections.shuffle(indices, random);
+			for (int k = 0; k < indices.size() && removed.size()<q; k++) removed.addAll(solution.sequences.get(indices.get(k)));
+		}
+		while(removed.size()<q) removed.add(1+random.nextInt(dataModel.C)); //random removal (RANDOM, and completion of the other operators)
+
+		//Remove the customers from their routes
+		List<Integer> customers = new ArrayList<Integer>(removed);
+		for (int k = solution.sequences.size()-1; k >= 0; k--) {
+			List<Integer> sequence = new ArrayList<Integer>(solution.sequences.get(k));
+			if(!sequence.removeAll(removed)) continue;
+			Route route = sequence.isEmpty() ? null : evaluator.evaluate(sequence);
+			if(route == null) {
+				customers.addAll(sequence); //the remaining sequence is infeasible
+				solution.set(k, null, null);
+			}
+			else solution.set(k, sequence, route);
+		}
+		return customers;
+	}
+
+	/**
+	 * Inserts the customers in the solution (cheapest insertion on each route, or a new route).
+	 * @param regret if true, the customer with the largest regret (second best minus best insertion) is inserted first. Otherwise, the cheapest insertion first.
+	 */
+	private void repair(Solution solution, List<Integer> customers, boolean regret) {
+		List<Integer> remaining = new ArrayList<Integer>(customers);
+		Collections.shuffle(remaining, random);
+
+		//Best insertion of each customer in each route
+		List<List<Insertion>> insertions = new ArrayList<List<Insertion>>();
+		List<Route> singleRoutes = new ArrayList<Route>();
+		for(int customer: remaining) {
+			List<Insertion> customerInsertions = new ArrayList<Insertion>();
+			for (int k = 0; k < solution.sequences.size(); k++) customerInsertions.add(getBestInsertion(solution, k, customer));
+			insertions.add(customerInsertions);
+			List<Integer> sequence = new ArrayList<Integer>();
+			sequence.add(customer);
+			singleRoutes.add(evaluator.evaluate(sequence));
+		}
+
+		while(!remaining.isEmpty()) {
+			int selected = -1; Insertion selectedInsertion = null; double selectedValue = 0;
+			for (int c = 0; c < remaining.size(); c++) {
+				Insertion best = null; int bestDelta = Integer.MAX_VALUE, secondDelta = Integer.MAX_VALUE;
+				if(singleRoutes.get(c) != null) bestDelta = singleRoutes.get(c).cost;
+				for(Insertion insertion: insertions.get(c)) {
+					if(insertion == null) continue;
+					if(insertion.delta<bestDelta) {secondDelta = bestDelta; bestDelta = insertion.delta; best = insertion;}
+					else if(insertion.delta<secondDelta) secondDelta = insertion.delta;
+				}
+				if(bestDelta == Integer.MAX_VALUE) continue;
+				double value = regret ? -((double) secondDelta-bestDelta) : bestDelta; //lower is better
+				if(selected<0 || value<selectedValue) {selected = c; selectedInsertion = best; selectedValue = value;}
+			}
+			if(selected<0) throw new RuntimeException("ALNS: a customer cannot be inserted in any route");
+
+			int customer = remaining.get(selected);
+			int index;
+			if(selectedInsertion == null) { //new route
+				List<Integer> sequence = new ArrayList<Integer>();
+				sequence.add(customer);
+				solution.add(sequence, singleRoutes.get(selected));
+				index = solution.sequences.size()-1;
+				for (int c = 0; c < remaining.size(); c++) insertions.get(c).add(null);
+			}else {
+				index = selectedInsertion.route;
+				List<Integer> sequence = new ArrayList<Integer>(solution.sequences.get(index));
+				sequence.add(selectedInsertion.position, customer);
+				Route route = evaluator.evaluate(sequence);
+				if(route == null) { //infeasible after all: the insertion is discarded and the customer is selected again
+					insertions.get(selected).set(index, null);
+					continue;
+				}
+				solution.set(index, sequence, route);
+			}
+			remaining.remove(selected);
+			insertions.remove(selected);
+			singleRoutes.remove(selected);
+			for (int c = 0; c < remaining.size(); c++) insertions.get(c).set(index, getBestInsertion(solution, index, remaining.get(c)));
+		}
+	}
+
+	/** Returns the cheapest insertion of a customer in a route (null if there is no feasible insertion). */
+	private Insertion getBestInsertion(Solution solution, int routeIndex, int customer) {
+		Route route = solution.routes.get(routeIndex);
+		if(route.load+dataModel.vertices[customer].load>dataModel.Q) return null;
+		List<Integer> sequence = solution.sequences.get(routeIndex);
+		Insertion best = null;
+		for (int position = 0; position <= sequence.size(); position++) {
+			int cost = evaluator.getInsertionCost(sequence, position, customer);
+			if(cost<Integer.MAX_VALUE && (best == null || cost-route.cost<best.delta)) best = new Insertion(routeIndex, position, cost-route.cost);
+		}
+		return best;
+	}
+
+	/** Returns the relatedness of two customers (the lower, the more related): cost between them and difference of their time windows. */
+	private int getRelatedness(int i, int j) {
+		int cost = Math.min(minimumCost[i][j], minimumCost[j][i]);
+		return cost+Math.abs(dataModel.vertices[i].opening_tw-dataModel.vertices[j].opening_tw)+Math.abs(dataModel.vertices[i].closing_tw-dataModel.vertices[j].closing_tw);
+	}
+
+	/** Returns the objective of a solution (penalized if the chargers capacity is exceeded). */
+	private int getObjective(Solution solution) {
+		return solution.cost+(solution.feasible ? 0 : infeasibilityPenalty);
+	}
+
+	/** Selects an operator (roulette wheel). */
+	private int select(double[] weights) {
+		double total = 0;
+		for(double weight: weights) total+=weight;
+		double value = random.nextDouble()*total;
+		for (int k = 0; k < weights.length; k++) {
+			value-=weights[k];
+			if(value<=0) return k;
+		}
+		return weights.length-1;
+	}
+
+	/** Updates the weights of the operators with the scores of the segment. */
+	private void updateWeights(double[] weights, double[] segmentScores, int[] uses) {
+		for (int k = 0; k < weights.length; k++) {
+			if(uses[k]>0) weights[k] = (1-reactionFactor)*weights[k]+reactionFactor*segmentScores[k]/uses[k];
+			weights[k] = Math.max(weights[k], 0.01);
+			segmentScores[k] = 0;
+			uses[k] = 0;
+		}
+	}
+
+	/** Publishes a new best solution and its routes. */
+	private synchronized void publish(Solution newSolution) {
+		objectiveBestSolution = newSolution.cost;
+		solution = new ArrayList<Route>(newSolution.routes.size());
+		for(Route route: newSolution.routes) {
+			Route newRoute = route.clone();
+			newRoute.value = 1;
+			solution.add(newRoute);
+			if(exportedColumns.add(newRoute)) columns.add(newRoute.clone());
+		}
+		logger.debug("ALNS found a solution: {}", objectiveBestSolution);
+		if(dataModel.monitor != null) dataModel.monitor.incumbentFound(objectiveBestSolution, solution); //the monitor is shared with the copy
+	}
+
+	/** Returns the improved solution found since the last call (null if none). */
+	public synchronized List<Route> pollSolution() {
+		List<Route> newSolution = solution;
+		solution = null;
+		return newSolution;
+	}
+
+	/** Returns the routes found since the last call (to be added to the column pool). */
+	public synchronized List<Route> pollColumns() {
+		List<Route> newColumns = columns;
+		columns = new ArrayList<Route>();
+		return newColumns;
+	}
+
+	/** Insertion of a customer in a route. */
+	private final class Insertion {
+		final int route; 						//index of the route
+		final int position; 					//position of the customer in the new sequence
+		final int delta; 						//cost increase
+
+		Insertion(int route, int position, int delta) {
+			this.route = route;
+			this.position = position;
+			this.delta = delta;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package alns;
+
+import java.util.ArrayList;
+import java.util.List;
+import columnGeneration.Route;
+
+/**
+ * Solution of the ALNS: customer sequences and their routes (arcs chosen on the multigraph and charging intervals).
+ */
+final class Solution {
+
+	final List<List<Integer>> sequences; 		//customer sequences
+	final List<Route> routes; 					//route of each sequence
+	int cost; 									//routing cost
+	boolean feasible; 							//true if the charging intervals respect the chargers capacity
+
+	Solution() {
+		this.sequences = new ArrayList<List<Integer>>();
+		this.routes = new ArrayList<Route>();
+	}
+
+	/** Returns a copy of the solution (the routes are cloned, since their charging intervals are modified by the scheduling). */
+	Solution copy() {
+		Solution copy = new Solution();
+		for (int k = 0; k < sequences.size(); k++) {
+			copy.sequences.add(new ArrayList<Integer>(sequences.get(k)));
+			copy.routes.add(routes.get(k).clone());
+		}
+		copy.cost = cost;
+		copy.feasible = feasible;
+		return copy;
+	}
+
+	/** Adds a route. */
+	void add(List<Integer> sequence, Route route) {
+		sequences.add(sequence);
+		routes.add(route);
+		cost+=route.cost;
+	}
+
+	/** Replaces the route in the given position (null route removes it). */
+	void set(int index, List<Integer> sequence, Route route) {
+		cost-=routes.get(index).cost;
+		if(route == null) {
+			sequences.remove(index);
+			routes.remove(index);
+			return;
+		}
+		sequences.set(index, sequence);
+		routes.set(index, route);
+		cost+=route.cost;
+	}
+}
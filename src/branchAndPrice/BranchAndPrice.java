@@ -4,16 +4,23 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.AbstractBranchAndPrice;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.AbstractBranchCreator;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.EventHandling.CGListener;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.branchingDecisions.BranchingDecision;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.bapNodeComparators.BFSbapNodeComparator;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.bapNodeComparators.DFSbapNodeComparator;
 import org.jorlib.frameworks.columnGeneration.io.TimeLimitExceededException;
 import org.jorlib.frameworks.columnGeneration.pricing.AbstractPricingProblemSolver;
+import org.jorlib.frameworks.columnGeneration.util.MathProgrammingUtil;
+import alns.ALNS;
+import columnGeneration.CoveringSolutionRepair;
+import columnGeneration.CutPool;
 import columnGeneration.Master;
 import columnGeneration.PricingProblem;
 import columnGeneration.Route;
@@ -32,6 +39,13 @@ import model.EVRPTW;
 public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,PricingProblem> {
 
 	PricingProblem pricingProblem; 					//pricing problem
+	CoveringSolutionRepair coveringRepair; 			//repairs over-covered solutions (set-covering master)
+	BranchingRules branchingRules; 					//branching rules (updated with the bounds of the nodes for reliability branching)
+	NodeStore nodeStore; 							//compact storage of the nodes (null if the columns and cuts are copied to the children)
+	DivingHeuristic divingHeuristic; 				//diving heuristic (null if disabled)
+	RestrictedMasterHeuristic restrictedMasterHeuristic; //MIP on the column pool solved in the background (null if disabled)
+	ALNS alns; 										//metaheuristic running alongside the Branch-and-Price (null if disabled)
+	List<Route> rootColumns; 						//columns of the master problem at the end of the root node (null if it was not solved by this instance)
 	public static final double PRECISION=0.001; 	//precision considered for the fractional solutions (nodes)
 
 	public BranchAndPrice(EVRPTW modelData,
@@ -43,7 +57,18 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 					List<Route> initialSolution){
 		super(modelData, master, pricingProblem, solvers, branchCreators, 0, objectiveInitialSolution);
 		this.warmStart(objectiveInitialSolution, initialSolution);
+		this.incumbentSolution = getInitialIncumbent(initialSolution);
 		this.pricingProblem = pricingProblem;
+		this.coveringRepair = new CoveringSolutionRepair(modelData);
+		if(modelData.compactNodeStorage && !modelData.usesParallelTreeSearch()) this.nodeStore = new NodeStore(); //the parallel tree search stores its own nodes
+		if(modelData.divingHeuristic) this.divingHeuristic = new DivingHeuristic(this, pricingProblem);
+		if(modelData.restrictedMasterHeuristic) this.restrictedMasterHeuristic = new RestrictedMasterHeuristic(modelData);
+		for(AbstractBranchCreator<EVRPTW,Route,PricingProblem> branchCreator: branchCreators) {
+			if(branchCreator instanceof BranchingRules) {
+				this.branchingRules = (BranchingRules) branchCreator;
+				this.branchingRules.setBranchAndPrice(this);
+			}
+		}
 		this.setNodeOrdering(new Comparator<BAPNode>() {
 			@Override
 			public int compare(BAPNode node1, BAPNode node2) {
@@ -55,6 +80,16 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 		//		this.setNodeOrdering(new DFSbapNodeComparator()); //Depth-First Search (DFS)
 	}
 
+	/**
+	 * Returns the routes of the initial solution with a positive value (e.g., constructive heuristic). The other routes are only initial columns.
+	 */
+	static List<Route> getInitialIncumbent(List<Route> initialSolution) {
+		List<Route> solution = new ArrayList<Route>();
+		for(Route route: initialSolution)
+			if(!route.isArtificialColumn && route.value>=1-PRECISION) solution.add(route);
+		return solution;
+	}
+
 	/**
 	 * Generates an artificial solution. Columns in the artificial solution are of high cost such that they never end up in the final solution
 	 * if a feasible solution exists, since any feasible solution is assumed to be cheaper than the artificial solution. The artificial solution is used
@@ -81,15 +116,24 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 		if(node.nodeID == 0) { //stores the information for the root node
 			dataModel.columnsRootNode=master.getColumns(this.pricingProblem).size();
 			dataModel.cutsRootNode=node.getInequalities().size();
+			rootColumns=getMasterColumns();
 		}
 
 		boolean isInteger = true;
 		List<Route> solution = node.getSolution();
 		for(Route route: solution)
 			if(route.value>0+PRECISION && route.value<1-PRECISION) {isInteger = false; break;}
+		if(isInteger && dataModel.setCoveringFormulation && coveringRepair.isOverCovered(solution)) { //it could not be repaired
+			logger.debug("Integer solution with over-covered customers could not be repaired at node " + node.nodeID);
+			isInteger = false;
+		}
 
-		if(isInteger) return true;
-		else {			//Inherit the routes generated
+		if(isInteger) {
+			if(dataModel.monitor != null) dataModel.monitor.incumbentFound(MathProgrammingUtil.doubleToInt(node.getObjective()), solution); //the framework updates its incumbent afterwards
+			return true;
+		}
+		else {
+			//Inherit the routes generated
 			List<Route> routesToAdd = new ArrayList<Route>();
 			for(Route column: master.getColumns(this.pricingProblem)) {
 				if(column.BBnode==-1) {
@@ -97,14 +141,28 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 					routesToAdd.add(column);
 				}
 			}
+			if(alns != null) { //routes of the metaheuristic
+				Set<Route> columns = new HashSet<Route>(node.getInitialColumns());
+				for(Route column: alns.pollColumns()) {
+					Route newColumn = column.clone(this.pricingProblem);
+					newColumn.BBnode=node.nodeID;
+					if(columns.add(newColumn)) routesToAdd.add(newColumn);
+				}
+			}
 			node.addInitialColumns(routesToAdd);
 			//Inherit the cuts generated (not necessary)
 
-			//Solve MIP at root node (optional)
-			if(node.nodeID == 0) {
+			//Solve MIP at root node (optional), or periodically on the column pool in the background
+			if(restrictedMasterHeuristic != null) {
+				if(node.nodeID % RestrictedMasterHeuristic.frequency == 0) restrictedMasterHeuristic.submit(node.getInitialColumns(), objectiveIncumbentSolution, incumbentSolution);
+			}
+			else if(node.nodeID == 0) {
 				try {solveIPAtRootNode(node);} 
 				catch (IloException e) {e.printStackTrace();}
 			}
+
+			//Diving heuristic (at the root node and periodically)
+			if(divingHeuristic != null && node.nodeID % DivingHeuristic.frequency == 0) divingHeuristic.dive(node);
 			return false;
 		}
 	}
@@ -123,8 +181,10 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 		IloObjective obj= cplex.addMinimize();
 		//Define partitioning constraints
 		IloRange[] visitCustomerConstraints=new IloRange[dataModel.C];
-		for(int i=0; i< dataModel.C; i++)
-			visitCustomerConstraints[i] = cplex.addEq(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+		for(int i=0; i< dataModel.C; i++) {
+			if(dataModel.setCoveringFormulation) visitCustomerConstraints[i] = cplex.addGe(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+			else visitCustomerConstraints[i] = cplex.addEq(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+		}
 
 		//define constrains (capacitated station)
 		IloRange[]  chargersCapacityConstraints = new IloRange[dataModel.last_charging_period];
@@ -155,8 +215,7 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 		//Set time limit
 		cplex.setParam(IloCplex.DoubleParam.TiLim, 10.0); //set time limit in seconds (in this case 10 seconds)
 		if(cplex.solve() && cplex.getStatus()==IloCplex.Status.Optimal && cplex.getCplexTime()<10){
-			objectiveIncumbentSolution = (int) (cplex.getObjValue()+0.05);
-			upperBoundOnObjective = objectiveIncumbentSolution;
+			int objective = (int) (cplex.getObjValue()+0.05);
 			//retrieve solution
 			List<Route> optimalSolution = new ArrayList<Route>();
 			for (Route route: solution.keySet()) {
@@ -167,7 +226,17 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 					optimalSolution.add(newRoute);
 				}
 			}
-			incumbentSolution = optimalSolution;
+			if(dataModel.setCoveringFormulation && coveringRepair.isOverCovered(optimalSolution)) { //turn it into a partition
+				optimalSolution = coveringRepair.repair(optimalSolution);
+				objective = 0;
+				if(optimalSolution != null) for(Route route: optimalSolution) objective+=route.cost;
+			}
+			if(optimalSolution != null && objective<objectiveIncumbentSolution) {
+				objectiveIncumbentSolution = objective;
+				upperBoundOnObjective = objectiveIncumbentSolution;
+				incumbentSolution = optimalSolution;
+				if(dataModel.monitor != null) dataModel.monitor.incumbentFound(objective, optimalSolution);
+			}
 		}
 		cplex.close();
 		cplex.end();
@@ -181,9 +250,11 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 	 */
 	@Override
 	protected void solveBAPNode(BAPNode<EVRPTW,Route> bapNode, long timeLimit) throws TimeLimitExceededException {
+		if(nodeStore != null) bapNode.addInitialColumns(nodeStore.getColumns(bapNode)); //materialize the columns inherited
 		customCG cg=null;
 		try {
 			cg = new customCG(dataModel, master, pricingProblems, solvers, pricingProblemManager, bapNode.getInitialColumns(), objectiveIncumbentSolution, bapNode.getBound()); //Solve the node
+			cg.nodeID = bapNode.nodeID; cg.nodeDepth = bapNode.getRootPath().size()-1;
 			for(CGListener listener : columnGenerationEventListeners) cg.addCGEventListener(listener);
 			cg.solve(timeLimit);
 		}finally{
@@ -195,11 +266,190 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 				totalGeneratedColumns += cg.getNrGeneratedColumns();
 				//				if(cg.incumbentSolutionObjective<=this.objectiveIncumbentSolution) {this.objectiveIncumbentSolution = cg.incumbentSolutionObjective; this.incumbentSolution=cg.incumbentSolution;}
 				notifier.fireFinishCGEvent(bapNode, cg.getBound(), cg.getObjective(), cg.getNumberOfIterations(), cg.getMasterSolveTime(), cg.getPricingSolveTime(), cg.getNrGeneratedColumns());
+				if(dataModel.trace != null) dataModel.trace.node(bapNode.nodeID, cg.nodeDepth, cg.getNumberOfIterations(), cg.getMasterSolveTime(), cg.getPricingSolveTime(), cg.getNrGeneratedColumns(), cg.getCuts().size(), cg.getObjective(), cg.getBound());
 			}
 		}
 		ArrayList<Route> solution = new ArrayList<Route>(cg.getSolution().size()); //if not, it overwrites the value
 		for(Route route: cg.getSolution()) {Route newRoute = route.clone(); newRoute.value = route.value; solution.add(newRoute);}
-		bapNode.storeSolution(cg.getObjective(), cg.getBound(), solution, cg.getCuts());
+		double objective = cg.getObjective();
+
+		//Set-covering master: an integer solution with over-covered customers is turned into a partition (without increasing its cost)
+		if(dataModel.setCoveringFormulation && coveringRepair.isOverCovered(solution) && isInteger(solution)) {
+			List<Route> repairedSolution = coveringRepair.repair(solution);
+			if(repairedSolution != null) {
+				solution = new ArrayList<Route>(repairedSolution);
+				objective = 0;
+				for(Route route: solution) objective+=route.cost;
+			}
+		}
+		bapNode.storeSolution(objective, cg.getBound(), solution, cg.getCuts());
+		if(branchingRules != null) branchingRules.updatePseudocosts(bapNode.nodeID, objective, isInfeasible(solution));
+	}
+
+	/**
+	 * Evaluates a branching decision on the current node with a truncated CG: heuristic pricing (first solver) only,
+	 * a limited number of iterations and no cuts. The master problem is rebuilt with the decision and the decision is reversed afterwards
+	 * (the next node processed rebuilds the master problem again). The columns generated are inherited by the children.
+	 * The objective returned is that of the restricted master problem, not a bound of the child: the scores (and the pseudocosts initialized
+	 * with them) are heuristic estimates, which the pseudocosts of the solved children correct afterwards.
+	 * @param parentNode node being branched
+	 * @param bd branching decision of the child
+	 * @param maximumIterations maximum number of CG iterations
+	 * @param timeLimit future point in time by which the evaluation must be finished
+	 * @return objective of the restricted master problem of the child (Double.MAX_VALUE if it is infeasible), or NaN if it could not be evaluated
+	 */
+	public double evaluateBranchingDecision(BAPNode<EVRPTW,Route> parentNode, BranchingDecision<EVRPTW,Route> bd, int maximumIterations, long timeLimit) {
+
+		//Arcs forbidden by the decision in the (heuristic) pricing problem
+		List<Integer> forbiddenArcs = new ArrayList<Integer>();
+		if(bd instanceof FixArc || bd instanceof RemoveArc) {
+			if(dataModel.infeasibleArcs == null) return Double.NaN;
+			for(int arc: getForbiddenArcs(bd)) if(!dataModel.infeasibleArcs[arc]) forbiddenArcs.add(arc);
+		}
+		double objective = Double.NaN;
+		try { //the arcs and the master problem are restored even if the evaluation fails
+			for(int arc: forbiddenArcs) dataModel.infeasibleArcs[arc] = true;
+			master.branchingDecisionPerformed(bd);
+			List<Route> initialColumns = new ArrayList<Route>();
+			for(Route column: parentNode.getInitialColumns())
+				if(bd.columnIsCompatibleWithBranchingDecision(column)) initialColumns.add(column);
+			customCG cg = solveTruncatedCG(parentNode, initialColumns, maximumIterations, timeLimit);
+			objective = isInfeasible(cg.getSolution()) ? Double.MAX_VALUE : cg.getObjective();
+		} catch (TimeLimitExceededException e) {
+			logger.debug("Time limit reached evaluating the branching decision: " + bd);
+		} finally {
+			for(int arc: forbiddenArcs) dataModel.infeasibleArcs[arc] = false;
+			master.branchingDecisionReversed(bd);
+		}
+
+		//Inherit the routes generated
+		List<Route> routesToAdd = new ArrayList<Route>();
+		for(Route column: master.getColumns(this.pricingProblem)) {
+			if(column.BBnode==-1 && !column.isArtificialColumn) {
+				column.BBnode=parentNode.nodeID;
+				routesToAdd.add(column);
+			}
+		}
+		parentNode.addInitialColumns(routesToAdd);
+		return objective;
+	}
+
+	/**
+	 * Solves the current master problem with a truncated CG: heuristic pricing (first solver) only, a limited number of iterations and no cuts
+	 * (strong branching and diving heuristic). The artificial column is added to the given columns.
+	 * @param node node of the Branch-and-Price tree
+	 * @param columns initial columns
+	 * @param maximumIterations maximum number of CG iterations
+	 * @param timeLimit future point in time by which the CG must be finished
+	 * @return column generation solved
+	 * @throws TimeLimitExceededException TimeLimitExceededException
+	 */
+	customCG solveTruncatedCG(BAPNode<EVRPTW,Route> node, List<Route> columns, int maximumIterations, long timeLimit) throws TimeLimitExceededException {
+		List<Route> initialColumns = new ArrayList<Route>(this.generateInitialFeasibleSolution(node));
+		initialColumns.addAll(columns);
+		customCG cg = new customCG(dataModel, master, pricingProblems, solvers.subList(0, 1), pricingProblemManager, initialColumns, objectiveIncumbentSolution, node.getBound());
+		cg.nodeID = node.nodeID; cg.nodeDepth = node.getRootPath().size()-1;
+		cg.maximumIterations = maximumIterations;
+		cg.separateCuts = false;
+		try {
+			cg.solve(timeLimit);
+		} finally {
+			timeSolvingMaster += cg.getMasterSolveTime();
+			timeSolvingPricing += cg.getPricingSolveTime();
+			totalNrIterations += cg.getNumberOfIterations();
+			totalGeneratedColumns += cg.getNrGeneratedColumns();
+		}
+		return cg;
+	}
+
+	/** Returns the columns (not artificial) of the current master problem. */
+	List<Route> getMasterColumns() {
+		List<Route> columns = new ArrayList<Route>();
+		for(Route column: master.getColumns(this.pricingProblem))
+			if(!column.isArtificialColumn) columns.add(column);
+		return columns;
+	}
+
+	/** Returns the columns of the master problem at the end of the root node (null if it was not solved by this instance). */
+	public List<Route> getRootColumns() {
+		return rootColumns;
+	}
+
+	/** Returns the arcs forbidden in the pricing problem by a branching decision. */
+	private List<Integer> getForbiddenArcs(BranchingDecision<EVRPTW,Route> bd) {
+		if(bd instanceof FixArc) return ((FixArc) bd).infeasibleArcs;
+		if(bd instanceof FixRoute) return ((FixRoute) bd).infeasibleArcs;
+		if(bd instanceof RemoveArc) return Collections.singletonList(((RemoveArc) bd).arc);
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Performs a branching decision on the master problem and on the pricing problem (parallel tree search and diving heuristic, where the nodes are not processed by the framework).
+	 * The pricing solvers of the worker share the array of infeasible arcs of its instance.
+	 */
+	void performBranchingDecision(BranchingDecision<EVRPTW,Route> bd) {
+		for(int arc: getForbiddenArcs(bd)) dataModel.infeasibleArcs[arc] = true;
+		master.branchingDecisionPerformed(bd);
+	}
+
+	/** Performs several branching decisions (in order) with a single rebuild of the master problem (parallel tree search). */
+	void performBranchingDecisions(List<BranchingDecision<EVRPTW,Route>> bds) {
+		for(BranchingDecision<EVRPTW,Route> bd: bds)
+			for(int arc: getForbiddenArcs(bd)) dataModel.infeasibleArcs[arc] = true;
+		((Master) master).branchingDecisionsPerformed(bds);
+	}
+
+	/** Reverses a branching decision on the master problem and on the pricing problem (parallel tree search and diving heuristic). */
+	void reverseBranchingDecision(BranchingDecision<EVRPTW,Route> bd) {
+		for(int arc: getForbiddenArcs(bd)) dataModel.infeasibleArcs[arc] = false;
+		master.branchingDecisionReversed(bd);
+	}
+
+	/** Updates the incumbent solution if the given solution is better (e.g., found by another worker of the parallel tree search). */
+	void offerIncumbent(int objective, List<Route> solution) {
+		if(objective<objectiveIncumbentSolution) {
+			objectiveIncumbentSolution = objective;
+			upperBoundOnObjective = objective;
+			incumbentSolution = solution;
+			if(dataModel.monitor != null) dataModel.monitor.incumbentFound(objective, solution);
+		}
+	}
+
+	/** Updates the incumbent solution with a solution found by a heuristic (if it is not null and better). */
+	private void offerSolution(List<Route> solution) {
+		if(solution == null) return;
+		int objective = 0;
+		for(Route route: solution) objective+=route.cost;
+		offerIncumbent(objective, solution);
+	}
+
+	/** Sets the metaheuristic running alongside the Branch-and-Price (its solutions and routes are collected during the search). */
+	public void setALNS(ALNS alns) {
+		this.alns = alns;
+	}
+
+	/** Returns the pool of SRCs of the master problem (null if the cuts are never removed from the MP). */
+	CutPool getCutPool() {
+		return ((Master) master).getCutPool();
+	}
+
+	/** Returns the instance of this Branch-and-Price. */
+	EVRPTW getDataModel() {
+		return dataModel;
+	}
+
+	/** Returns true if the solution uses an artificial column (the node is infeasible). */
+	boolean isInfeasible(List<Route> solution) {
+		for(Route route: solution)
+			if(route.isArtificialColumn) return true;
+		return false;
+	}
+
+	/** Returns true if all the routes in the solution take integer values. */
+	boolean isInteger(List<Route> solution) {
+		for(Route route: solution)
+			if(route.value>0+PRECISION && route.value<1-PRECISION) return false;
+		return true;
 	}
 
 	/**
@@ -209,7 +459,20 @@ public final class BranchAndPrice extends AbstractBranchAndPrice<EVRPTW,Route,Pr
 	 */
 	@Override
 	protected boolean nodeCanBePruned(BAPNode<EVRPTW,Route> node){
+		if(restrictedMasterHeuristic != null) offerSolution(restrictedMasterHeuristic.pollSolution()); //collect the solutions found in the background
+		if(alns != null) offerSolution(alns.pollSolution());
 		//		System.out.println(Math.ceil(node.getBound()-config.PRECISION) + " >= " + this.objectiveIncumbentSolution);
-		return Math.ceil(node.getBound()) >= (this.objectiveIncumbentSolution-config.PRECISION);
+		boolean canBePruned = Math.ceil(node.getBound()) >= (this.objectiveIncumbentSolution-config.PRECISION);
+		if(canBePruned && nodeStore != null) nodeStore.remove(node.nodeID);
+		return canBePruned;
+	}
+
+	/**
+	 * Closes the master and pricing problems (and the restricted master heuristic)
+	 */
+	@Override
+	public void close() {
+		super.close();
+		if(restrictedMasterHeuristic != null) restrictedMasterHeuristic.close();
 	}
 }
\ No newline at end of file
@@ -1,11 +1,16 @@
 package branchAndPrice;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.AbstractBranchCreator;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.branchingDecisions.BranchingDecision;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
 import org.jorlib.frameworks.columnGeneration.util.MathProgrammingUtil;
 import columnGeneration.PricingProblem;
 import columnGeneration.Route;
@@ -19,6 +24,8 @@ import model.EVRPTW;
  * Two important methods are:
  * 	1. canPerformBranching that determines whether the particular branch creator can create the child nodes (there is a fractional arc to branch on)
  *  2. getBranches creates the actual branches
+ * With reliability branching, all the fractional candidates (number of vehicles, arcs, initial and end charging times) compete:
+ * candidates with unreliable pseudocosts are evaluated by strong branching (truncated CG), and the product of the gains of both children is maximized.
  */
 
 public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, PricingProblem>{
@@ -33,6 +40,18 @@ public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, P
 	private double bestTimestepValue = 0; 				//number of vehicles charging of the timestep to branch on
 	private EVRPTW dataModel; 							//model data
 
+	//Reliability branching
+	public static int reliabilityThreshold = 4; 		//evaluations (per direction) after which the pseudocosts of a candidate are reliable
+	public static int maximumEvaluations = 8; 			//maximum number of candidates evaluated by strong branching at a node
+	public static int strongBranchingIterations = 10; 	//CG iterations (heuristic pricing) to evaluate a child
+	public static long strongBranchingTime = 30000; 	//time limit (ms) to evaluate the candidates at a node
+	private static final double EPSILON = 1e-6; 		//minimum gain in the product score
+	private static final int VEHICLES = 0, ARC = 1, INITIAL_CHARGING_TIME = 2, END_CHARGING_TIME = 3; //types of candidates
+	private BranchAndPrice branchAndPrice; 				//evaluates the branching decisions (strong branching)
+	private List<Candidate> candidates = new ArrayList<Candidate>(); 		//fractional candidates of the current node
+	private Map<String, double[]> pseudocosts = new HashMap<String, double[]>(); 	//candidate -> {sum of unit gains down, evaluations down, sum of unit gains up, evaluations up}
+	private Map<Integer, Object[]> pendingChildren = new HashMap<Integer, Object[]>(); //child node -> {candidate, up branch, objective of the parent}
+
 	public BranchingRules(EVRPTW dataModel, PricingProblem pricingProblem){
 		super(dataModel, pricingProblem);
 		this.dataModel = dataModel;
@@ -58,6 +77,8 @@ public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, P
 		this.timestepForBranching = -1;
 		this.bestTimestepValue = 0;
 
+		if(dataModel.reliabilityBranching) collectCandidates(solution);
+
 		//Aggregate route values
 		for(Route route : solution){vehiclesForBranching+=route.value;}
 		if(MathProgrammingUtil.isFractional(vehiclesForBranching)) {branchingOnVehicles = true; return true;}
@@ -90,11 +111,12 @@ public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, P
 		//End charging time
 		for (int r = 0; r < solution.size(); r++) {
 			Route route1 = solution.get(r);
+			if(route1.chargingTime==0) continue; //routes without charging have no charging times
 			int t = route1.initialChargingTime + route1.chargingTime-1;
 			double flow = route1.value;
 			for (int r2 = r+1; r2 < solution.size(); r2++) {
 				Route route2 = solution.get(r2);
-				if(route2.initialChargingTime + route2.chargingTime-1==t)
+				if(route2.initialChargingTime + route2.chargingTime-1==t && route2.chargingTime>0)
 					flow+=route2.value;
 			}
 			if(MathProgrammingUtil.isFractional(flow)) {
@@ -108,11 +130,12 @@ public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, P
 		//Initial charging time
 		for (int r = 0; r < solution.size(); r++) {
 			Route route1 = solution.get(r);
+			if(route1.chargingTime==0) continue; //routes without charging have no charging times
 			int t = route1.initialChargingTime;
 			double flow = route1.value;
 			for (int r2 = r+1; r2 < solution.size(); r2++) {
 				Route route2 = solution.get(r2);
-				if(route2.initialChargingTime==t)
+				if(route2.initialChargingTime==t && route2.chargingTime>0)
 					flow+=route2.value;
 			}
 			if(MathProgrammingUtil.isFractional(flow)) {
@@ -136,38 +159,229 @@ public final class BranchingRules extends AbstractBranchCreator<EVRPTW, Route, P
 	protected List<BAPNode<EVRPTW,Route>> getBranches(BAPNode<EVRPTW,Route> parentNode) {
 		BAPNode<EVRPTW,Route> node2; 		//one child node
 		BAPNode<EVRPTW,Route> node1; 		//other child node
+		Candidate selectedCandidate = (dataModel.reliabilityBranching && candidates.size()>1) ? selectCandidate(parentNode) : null;
+
+		//Columns and cuts of the children (only the ones added at this node are stored with a compact storage)
+		NodeStore nodeStore = (branchAndPrice != null) ? branchAndPrice.nodeStore : null;
+		List<AbstractInequality> inequalities = (nodeStore != null) ? nodeStore.storeNode(parentNode) : parentNode.getInequalities();
+		List<Route> columns = (nodeStore != null) ? Collections.<Route>emptyList() : parentNode.getInitialColumns();
 
 		if(branchingOnVehicles) {
 			//Branch 1: number of vehicles down
-			BranchVehiclesDown branchingDecision1=new BranchVehiclesDown(this.pricingProblems.get(0), (int) Math.floor(vehiclesForBranching), parentNode.getInequalities());
-			node1=this.createBranch(parentNode, branchingDecision1, parentNode.getInitialColumns(), parentNode.getInequalities());
+			BranchVehiclesDown branchingDecision1=new BranchVehiclesDown(this.pricingProblems.get(0), (int) Math.floor(vehiclesForBranching), inequalities);
+			node1=this.createBranch(parentNode, branchingDecision1, columns, inequalities);
 			//Branch 2: number of vehicles up
-			BranchVehiclesUp branchingDecision2=new BranchVehiclesUp(this.pricingProblems.get(0), (int) Math.ceil(vehiclesForBranching), parentNode.getInequalities());
-			node2=this.createBranch(parentNode, branchingDecision2, parentNode.getInitialColumns(), parentNode.getInequalities());
+			BranchVehiclesUp branchingDecision2=new BranchVehiclesUp(this.pricingProblems.get(0), (int) Math.ceil(vehiclesForBranching), inequalities);
+			node2=this.createBranch(parentNode, branchingDecision2, columns, inequalities);
 		}else if(branchOnCustomerArcs){
 			//Branch 1: remove the edge:
-			RemoveArc branchingDecision1=new RemoveArc(this.pricingProblems.get(0), arcForBranching, dataModel, parentNode.getInequalities(), bestArcValue);
-			node2=this.createBranch(parentNode, branchingDecision1, parentNode.getInitialColumns(), parentNode.getInequalities());
+			RemoveArc branchingDecision1=new RemoveArc(this.pricingProblems.get(0), arcForBranching, dataModel, inequalities, bestArcValue);
+			node2=this.createBranch(parentNode, branchingDecision1, columns, inequalities);
 			//Branch 2: fix the edge:
-			FixArc branchingDecision2=new FixArc(this.pricingProblems.get(0), arcForBranching, dataModel, parentNode.getInequalities(), bestArcValue);
-			node1=this.createBranch(parentNode, branchingDecision2, parentNode.getInitialColumns(), parentNode.getInequalities());
+			FixArc branchingDecision2=new FixArc(this.pricingProblems.get(0), arcForBranching, dataModel, inequalities, bestArcValue);
+			node1=this.createBranch(parentNode, branchingDecision2, columns, inequalities);
 		}else {
 			if(branchOnInitialChargingTime) {
 				//Branch 1: remove the edge:
-				BranchInitialChargingTimeDown branchingDecision1= new BranchInitialChargingTimeDown(this.pricingProblems.get(0), (int) Math.floor(bestTimestepValue),parentNode.getInequalities(), this.timestepForBranching);
-				node2=this.createBranch(parentNode, branchingDecision1, parentNode.getInitialColumns(), parentNode.getInequalities());
+				BranchInitialChargingTimeDown branchingDecision1= new BranchInitialChargingTimeDown(this.pricingProblems.get(0), (int) Math.floor(bestTimestepValue),inequalities, this.timestepForBranching);
+				node2=this.createBranch(parentNode, branchingDecision1, columns, inequalities);
 				//Branch 2: fix the edge:
-				BranchInitialChargingTimeUp branchingDecision2=new BranchInitialChargingTimeUp(this.pricingProblems.get(0), (int) Math.ceil(bestTimestepValue),parentNode.getInequalities(), this.timestepForBranching);
-				node1=this.createBranch(parentNode, branchingDecision2, parentNode.getInitialColumns(), parentNode.getInequalities());
+				BranchInitialChargingTimeUp branchingDecision2=new BranchInitialChargingTimeUp(this.pricingProblems.get(0), (int) Math.ceil(bestTimestepValue),inequalities, this.timestepForBranching);
+				node1=this.createBranch(parentNode, branchingDecision2, columns, inequalities);
 			}else {
 				//Branch 1: remove the edge:
-				BranchEndChargingTimeDown branchingDecision1= new BranchEndChargingTimeDown(this.pricingProblems.get(0), (int) Math.floor(bestTimestepValue),parentNode.getInequalities(), this.timestepForBranching);
-				node2=this.createBranch(parentNode, branchingDecision1, parentNode.getInitialColumns(), parentNode.getInequalities());
+				BranchEndChargingTimeDown branchingDecision1= new BranchEndChargingTimeDown(this.pricingProblems.get(0), (int) Math.floor(bestTimestepValue),inequalities, this.timestepForBranching);
+				node2=this.createBranch(parentNode, branchingDecision1, columns, inequalities);
 				//Branch 2: fix the edge:
-				BranchEndChargingTimeUp branchingDecision2=new BranchEndChargingTimeUp(this.pricingProblems.get(0), (int) Math.ceil(bestTimestepValue),parentNode.getInequalities(), this.timestepForBranching);
-				node1=this.createBranch(parentNode, branchingDecision2, parentNode.getInitialColumns(), parentNode.getInequalities());
+				BranchEndChargingTimeUp branchingDecision2=new BranchEndChargingTimeUp(this.pricingProblems.get(0), (int) Math.ceil(bestTimestepValue),inequalities, this.timestepForBranching);
+				node1=this.createBranch(parentNode, branchingDecision2, columns, inequalities);
 			}
 		}
+		if(nodeStore != null) {nodeStore.addChild(node1); nodeStore.addChild(node2);}
+		if(dataModel.reliabilityBranching) { //the down branch is the one with the smaller value (remove the arc)
+			Candidate candidate = (selectedCandidate != null) ? selectedCandidate : getSelectedCandidate();
+			boolean downIsNode1 = branchingOnVehicles;
+			pendingChildren.put(node1.nodeID, new Object[] {candidate, !downIsNode1, parentNode.getObjective()});
+			pendingChildren.put(node2.nodeID, new Object[] {candidate, downIsNode1, parentNode.getObjective()});
+		}
 		return Arrays.asList(node1,node2);
 	}
+
+	/** Sets the Branch-and-Price used to evaluate the candidates (strong branching). */
+	public void setBranchAndPrice(BranchAndPrice branchAndPrice) {
+		this.branchAndPrice = branchAndPrice;
+	}
+
+	/** Collects all the fractional candidates of a solution. */
+	private void collectCandidates(List<Route> solution) {
+		candidates = new ArrayList<Candidate>();
+
+		double vehicles = 0;
+		for(Route route : solution) vehicles+=route.value;
+		if(MathProgrammingUtil.isFractional(vehicles)) candidates.add(new Candidate(VEHICLES, -1, vehicles));
+
+		Map<Integer, Double> arcValues=new LinkedHashMap<>();
+		Map<Integer, Double> initialTimes=new LinkedHashMap<>();
+		Map<Integer, Double> endTimes=new LinkedHashMap<>();
+		for(Route route : solution){
+			if(route.value<1) for(int arc : route.arcs) arcValues.merge(arc, route.value, Double::sum);
+			if(route.chargingTime==0) continue; //routes without charging have no charging times
+			initialTimes.merge(route.initialChargingTime, route.value, Double::sum);
+			endTimes.merge(route.initialChargingTime + route.chargingTime-1, route.value, Double::sum);
+		}
+		for(int arc : arcValues.keySet()) if(MathProgrammingUtil.isFractional(arcValues.get(arc))) candidates.add(new Candidate(ARC, arc, arcValues.get(arc)));
+		for(int t : endTimes.keySet()) if(MathProgrammingUtil.isFractional(endTimes.get(t))) candidates.add(new Candidate(END_CHARGING_TIME, t, endTimes.get(t)));
+		for(int t : initialTimes.keySet()) if(MathProgrammingUtil.isFractional(initialTimes.get(t))) candidates.add(new Candidate(INITIAL_CHARGING_TIME, t, initialTimes.get(t)));
+	}
+
+	/**
+	 * Selects the candidate to branch on (reliability branching) and sets the branching attributes accordingly.
+	 * The candidates are sorted by their pseudocost score; the ones with unreliable pseudocosts are evaluated by strong branching.
+	 */
+	private Candidate selectCandidate(BAPNode<EVRPTW,Route> parentNode) {
+		for(Candidate candidate: candidates) candidate.score = getPseudocostScore(candidate);
+		candidates.sort((c1, c2) -> Double.compare(c2.score, c1.score));
+
+		Candidate bestCandidate = null;
+		double bestScore = -1;
+		int evaluations = 0;
+		long timeLimit = System.currentTimeMillis()+strongBranchingTime;
+		for(Candidate candidate: candidates) {
+			double score = candidate.score;
+			if(!isReliable(candidate) && branchAndPrice != null && evaluations<maximumEvaluations && System.currentTimeMillis()<timeLimit) {
+				double down = branchAndPrice.evaluateBranchingDecision(parentNode, getBranchingDecision(candidate, false, parentNode), strongBranchingIterations, timeLimit);
+				double up = branchAndPrice.evaluateBranchingDecision(parentNode, getBranchingDecision(candidate, true, parentNode), strongBranchingIterations, timeLimit);
+				if(!Double.isNaN(down) && !Double.isNaN(up)) {
+					double gainDown = Math.max(0, Math.min(down, Integer.MAX_VALUE)-parentNode.getObjective());
+					double gainUp = Math.max(0, Math.min(up, Integer.MAX_VALUE)-parentNode.getObjective());
+					if(down<Double.MAX_VALUE) updatePseudocost(candidate, false, gainDown);
+					if(up<Double.MAX_VALUE) updatePseudocost(candidate, true, gainUp);
+					score = Math.max(gainDown, EPSILON)*Math.max(gainUp, EPSILON);
+					evaluations++;
+				}
+			}
+			if(score>bestScore) {bestScore = score; bestCandidate = candidate;}
+		}
+
+		//Branching attributes
+		branchingOnVehicles = bestCandidate.type==VEHICLES;
+		branchOnCustomerArcs = bestCandidate.type==ARC;
+		branchOnInitialChargingTime = bestCandidate.type==INITIAL_CHARGING_TIME;
+		if(branchingOnVehicles) vehiclesForBranching = bestCandidate.value;
+		else if(branchOnCustomerArcs) {arcForBranching = bestCandidate.index; bestArcValue = bestCandidate.value;}
+		else {timestepForBranching = bestCandidate.index; bestTimestepValue = bestCandidate.value;}
+		return bestCandidate;
+	}
+
+	/** Returns the candidate selected by the default rule. */
+	private Candidate getSelectedCandidate() {
+		if(branchingOnVehicles) return new Candidate(VEHICLES, -1, vehiclesForBranching);
+		if(branchOnCustomerArcs) return new Candidate(ARC, arcForBranching, bestArcValue);
+		return new Candidate(branchOnInitialChargingTime ? INITIAL_CHARGING_TIME : END_CHARGING_TIME, timestepForBranching, bestTimestepValue);
+	}
+
+	/** Creates the branching decision of a child (up: the value of the candidate is rounded up). */
+	private BranchingDecision<EVRPTW,Route> getBranchingDecision(Candidate candidate, boolean up, BAPNode<EVRPTW,Route> parentNode) {
+		int rounded = (int) (up ? Math.ceil(candidate.value) : Math.floor(candidate.value));
+		switch(candidate.type) {
+		case VEHICLES:
+			if(up) return new BranchVehiclesUp(this.pricingProblems.get(0), rounded, parentNode.getInequalities());
+			return new BranchVehiclesDown(this.pricingProblems.get(0), rounded, parentNode.getInequalities());
+		case ARC:
+			if(up) return new FixArc(this.pricingProblems.get(0), candidate.index, dataModel, parentNode.getInequalities(), candidate.value);
+			return new RemoveArc(this.pricingProblems.get(0), candidate.index, dataModel, parentNode.getInequalities(), candidate.value);
+		case INITIAL_CHARGING_TIME:
+			if(up) return new BranchInitialChargingTimeUp(this.pricingProblems.get(0), rounded, parentNode.getInequalities(), candidate.index);
+			return new BranchInitialChargingTimeDown(this.pricingProblems.get(0), rounded, parentNode.getInequalities(), candidate.index);
+		default:
+			if(up) return new BranchEndChargingTimeUp(this.pricingProblems.get(0), rounded, parentNode.getInequalities(), candidate.index);
+			return new BranchEndChargingTimeDown(this.pricingProblems.get(0), rounded, parentNode.getInequalities(), candidate.index);
+		}
+	}
+
+	/**
+	 * Updates the pseudocosts with the bound of a child node created by the reliability branching.
+	 * @param nodeID child node
+	 * @param objective objective of the (solved) node
+	 * @param infeasible true if the node is infeasible
+	 */
+	public void updatePseudocosts(int nodeID, double objective, boolean infeasible) {
+		Object[] child = pendingChildren.remove(nodeID);
+		if(child == null || infeasible) return;
+		updatePseudocost((Candidate) child[0], (Boolean) child[1], Math.max(0, objective-(Double) child[2]));
+	}
+
+	/**
+	 * Changes the identifiers of the child nodes (the parallel tree search assigns its own identifiers to the nodes).
+	 * @param nodeIDs identifiers given by the framework -> new identifiers
+	 */
+	void relabelChildren(Map<Integer, Integer> nodeIDs) {
+		Map<Integer, Object[]> children = new HashMap<Integer, Object[]>();
+		for(int nodeID: nodeIDs.keySet()) {
+			Object[] child = pendingChildren.remove(nodeID);
+			if(child != null) children.put(nodeIDs.get(nodeID), child);
+		}
+		pendingChildren.putAll(children);
+	}
+
+	/** Adds a gain to the pseudocost of a candidate (per unit of change of its value). */
+	private void updatePseudocost(Candidate candidate, boolean up, double gain) {
+		double change = up ? Math.ceil(candidate.value)-candidate.value : candidate.value-Math.floor(candidate.value);
+		double[] pseudocost = pseudocosts.computeIfAbsent(candidate.getKey(), key -> new double[4]);
+		int direction = up ? 2 : 0;
+		pseudocost[direction]+=gain/Math.max(change, EPSILON);
+		pseudocost[direction+1]++;
+	}
+
+	/** Returns true if the pseudocosts of the candidate are reliable in both directions. */
+	private boolean isReliable(Candidate candidate) {
+		double[] pseudocost = pseudocosts.get(candidate.getKey());
+		return pseudocost != null && pseudocost[1]>=reliabilityThreshold && pseudocost[3]>=reliabilityThreshold;
+	}
+
+	/** Returns the product score of a candidate estimated by its pseudocosts (the average of its type when not initialized). */
+	private double getPseudocostScore(Candidate candidate) {
+		double up = Math.ceil(candidate.value)-candidate.value;
+		double down = candidate.value-Math.floor(candidate.value);
+		return Math.max(getPseudocost(candidate, false)*down, EPSILON)*Math.max(getPseudocost(candidate, true)*up, EPSILON);
+	}
+
+	/** Returns the pseudocost of a candidate in a direction. */
+	private double getPseudocost(Candidate candidate, boolean up) {
+		int direction = up ? 2 : 0;
+		double[] pseudocost = pseudocosts.get(candidate.getKey());
+		if(pseudocost != null && pseudocost[direction+1]>0) return pseudocost[direction]/pseudocost[direction+1];
+		double sum = 0; int count = 0;
+		for(Map.Entry<String, double[]> entry: pseudocosts.entrySet()) {
+			if(entry.getKey().startsWith(candidate.type+":") && entry.getValue()[direction+1]>0) {
+				sum+=entry.getValue()[direction]/entry.getValue()[direction+1];
+				count++;
+			}
+		}
+		return (count>0) ? sum/count : 1;
+	}
+
+	/** Class that represents a branching candidate. */
+	private class Candidate {
+		final int type; 				//type of candidate
+		final int index; 				//arc or timestep (-1 for the number of vehicles)
+		final double value; 			//current (fractional) value
+		double score; 					//score of the candidate
+
+		Candidate(int type, int index, double value) {
+			this.type = type;
+			this.index = index;
+			this.value = value;
+		}
+
+		/** Key of the candidate in the pseudocosts. */
+		String getKey() {
+			return type+":"+index;
+		}
+
+		@Override
+		public String toString() {
+			return getKey()+" (value: "+value+")";
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package branchAndPrice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractCutGenerator;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import branchAndPrice.ParallelBranchAndPrice.Decision;
+import branchAndPrice.ParallelBranchAndPrice.Node;
+import columnGeneration.CapacityInequality;
+import columnGeneration.CapacityInequalityGenerator;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import columnGeneration.SubsetRowInequality;
+import columnGeneration.SubsetRowInequalityGenerator;
+import model.EVRPTW;
+
+/**
+ * State of the tree search saved on disk (so a run can be resumed): open nodes (branching decisions, columns and cuts),
+ * incumbent solution, ng-neighborhoods and SRCs removed from the master problems.
+ * The file is a gzipped binary stream; the columns are stored once and referenced by the nodes.
+ */
+final class Checkpoint {
+
+	public static long interval = 600000; 				//time between checkpoints (ms)
+	private static final int MAGIC = 0x42504343; 		//first int of a checkpoint file
+	private static final int VERSION = 1; 				//version of the checkpoint format
+
+	int nodeCounter; 									//nodes created
+	int processedNodes; 								//nodes processed
+	double boundRootNode; 								//bound of the root node
+	int objectiveIncumbentSolution; 					//objective of the incumbent solution
+	List<Route> incumbentSolution; 						//incumbent solution
+	List<Node> nodes; 									//open nodes
+	List<Set<Integer>> neighborhoods; 					//ng-neighborhood of each customer (index 0 is not used)
+	List<SubsetRowInequality> removedCuts; 				//SRCs removed from the master problems (cut pool)
+
+	/**
+	 * Writes the checkpoint (through a temporary file, so a previous checkpoint is only replaced by a complete one).
+	 */
+	void write(File file, EVRPTW dataModel) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		File temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporaryFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(dataModel.getName());
+			out.writeInt(dataModel.numArcs);
+			out.writeInt(nodeCounter);
+			out.writeInt(processedNodes);
+			out.writeDouble(boundRootNode);
+			out.writeInt(objectiveIncumbentSolution);
+
+			//Columns (each one is written once)
+			Map<Route, Integer> routeIndex = new HashMap<Route, Integer>();
+			List<Route> routes = new ArrayList<Route>();
+			for(Route route: incumbentSolution) if(!routeIndex.containsKey(route)) {routeIndex.put(route, routes.size()); routes.add(route);}
+			for(Node node: nodes)
+				for(Route route: node.columns) if(!routeIndex.containsKey(route)) {routeIndex.put(route, routes.size()); routes.add(route);}
+			out.writeInt(routes.size());
+			for(Route route: routes) writeRoute(out, route);
+
+			//Incumbent solution
+			out.writeInt(incumbentSolution.size());
+			for(Route route: incumbentSolution) {out.writeInt(routeIndex.get(route)); out.writeDouble(route.value);}
+
+			//ng-neighborhoods and cut pool
+			for (int i = 1; i < neighborhoods.size(); i++) writeInts(out, neighborhoods.get(i));
+			out.writeInt(removedCuts.size());
+			for(SubsetRowInequality cut: removedCuts) writeInequality(out, cut);
+
+			//Open nodes
+			out.writeInt(nodes.size());
+			for(Node node: nodes) {
+				out.writeInt(node.nodeID);
+				out.writeInt(node.path.size());
+				for(Decision decision: node.path) {
+					out.writeByte(decision.type);
+					out.writeInt(decision.coefficient);
+					out.writeInt(decision.index);
+					out.writeDouble(decision.flowValue);
+				}
+				writeInts(out, node.rootPath);
+				out.writeInt(node.columns.size());
+				for(Route route: node.columns) {out.writeInt(routeIndex.get(route)); out.writeInt(route.BBnode);}
+				out.writeInt(node.inequalities.size());
+				for(AbstractInequality inequality: node.inequalities) writeInequality(out, inequality);
+				out.writeDouble(node.bound);
+			}
+		}
+		try {Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);}
+		catch (IOException e) {temporaryFile.delete(); throw e;}
+	}
+
+	/**
+	 * Reads a checkpoint.
+	 * @param pricingProblem pricing problem of the columns.
+	 * @param cutGenerators cut generators of the cuts (SRCs and, if used, capacity cuts).
+	 * @throws IOException Throws IO exception when the file cannot be read or belongs to another instance.
+	 */
+	static Checkpoint read(File file, EVRPTW dataModel, PricingProblem pricingProblem, List<AbstractCutGenerator<EVRPTW, ?>> cutGenerators) throws IOException {
+		Checkpoint checkpoint = new Checkpoint();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unknown checkpoint format: " + file);
+			if(!in.readUTF().equals(dataModel.getName()) || in.readInt() != dataModel.numArcs) throw new IOException("The checkpoint belongs to another instance: " + file);
+			checkpoint.nodeCounter = in.readInt();
+			checkpoint.processedNodes = in.readInt();
+			checkpoint.boundRootNode = in.readDouble();
+			checkpoint.objectiveIncumbentSolution = in.readInt();
+
+			//Columns
+			List<Route> routes = new ArrayList<Route>();
+			int numberOfRoutes = in.readInt();
+			for (int k = 0; k < numberOfRoutes; k++) routes.add(readRoute(in, pricingProblem));
+
+			//Incumbent solution
+			checkpoint.incumbentSolution = new ArrayList<Route>();
+			int solutionSize = in.readInt();
+			for (int k = 0; k < solutionSize; k++) {
+				Route route = routes.get(in.readInt()).clone();
+				route.value = in.readDouble();
+				checkpoint.incumbentSolution.add(route);
+			}
+
+			//ng-neighborhoods and cut pool
+			checkpoint.neighborhoods = new ArrayList<Set<Integer>>(dataModel.C+1);
+			checkpoint.neighborhoods.add(new HashSet<Integer>());
+			for (int i = 1; i <= dataModel.C; i++) checkpoint.neighborhoods.add(new HashSet<Integer>(readInts(in)));
+			checkpoint.removedCuts = new ArrayList<SubsetRowInequality>();
+			int numberOfCuts = in.readInt();
+			for (int k = 0; k < numberOfCuts; k++) checkpoint.removedCuts.add((SubsetRowInequality) readInequality(in, dataModel, cutGenerators));
+
+			//Open nodes
+			checkpoint.nodes = new ArrayList<Node>();
+			int numberOfNodes = in.readInt();
+			for (int k = 0; k < numberOfNodes; k++) {
+				int nodeID = in.readInt();
+				List<Decision> path = new ArrayList<Decision>();
+				int pathLength = in.readInt();
+				for (int l = 0; l < pathLength; l++) path.add(new Decision(in.readByte(), in.readInt(), in.readInt(), in.readDouble()));
+				List<Integer> rootPath = readInts(in);
+				List<Route> columns = new ArrayList<Route>();
+				int numberOfColumns = in.readInt();
+				for (int l = 0; l < numberOfColumns; l++) {
+					Route column = routes.get(in.readInt()).clone();
+					column.BBnode = in.readInt();
+					columns.add(column);
+				}
+				List<AbstractInequality> inequalities = new ArrayList<AbstractInequality>();
+				int numberOfInequalities = in.readInt();
+				for (int l = 0; l < numberOfInequalities; l++) inequalities.add(readInequality(in, dataModel, cutGenerators));
+				checkpoint.nodes.add(new Node(nodeID, path, rootPath, columns, inequalities, in.readDouble()));
+			}
+		} catch (RuntimeException e) { //corrupt file
+			throw new IOException("Invalid checkpoint: " + file, e);
+		}
+		return checkpoint;
+	}
+
+	/** Writes a route. */
+	private static void writeRoute(DataOutputStream out, Route route) throws IOException {
+		out.writeUTF(route.creator);
+		out.writeInt(route.route.size());
+		for(Map.Entry<Integer, Integer> entry: route.route.entrySet()) {out.writeInt(entry.getKey()); out.writeInt(entry.getValue());}
+		out.writeInt(route.routeSequence.length);
+		for(int customer: route.routeSequence) out.writeInt(customer);
+		out.writeInt(route.cost);
+		out.writeInt(route.departureTime);
+		out.writeInt(route.energy);
+		out.writeInt(route.load);
+		writeInts(out, route.arcs);
+		out.writeInt(route.initialChargingTime);
+		out.writeInt(route.chargingTime);
+	}
+
+	/** Reads a route. */
+	private static Route readRoute(DataInputStream in, PricingProblem pricingProblem) throws IOException {
+		String creator = in.readUTF();
+		int size = in.readInt();
+		HashMap<Integer, Integer> route = new HashMap<Integer, Integer>(size);
+		for (int k = 0; k < size; k++) route.put(in.readInt(), in.readInt());
+		int[] routeSequence = new int[in.readInt()];
+		for (int k = 0; k < routeSequence.length; k++) routeSequence[k] = in.readInt();
+		int cost = in.readInt();
+		int departureTime = in.readInt();
+		int energy = in.readInt();
+		int load = in.readInt();
+		ArrayList<Integer> arcs = new ArrayList<Integer>(readInts(in));
+		int initialChargingTime = in.readInt();
+		int chargingTime = in.readInt();
+		return new Route(creator, false, route, routeSequence, pricingProblem, cost, departureTime, energy, load, 0.0, arcs, initialChargingTime, chargingTime);
+	}
+
+	/** Writes a cut (SRC or capacity cut). */
+	private static void writeInequality(DataOutputStream out, AbstractInequality inequality) throws IOException {
+		if(inequality instanceof SubsetRowInequality) {
+			SubsetRowInequality cut = (SubsetRowInequality) inequality;
+			out.writeByte(0);
+			writeInts(out, cut.cutSet);
+			writeInts(out, cut.multipliers);
+			out.writeInt(cut.denominator);
+			out.writeInt(cut.chargingPeriod);
+			out.writeBoolean(cut.memory != null);
+			if(cut.memory != null) {out.writeInt(cut.memory.length); for(boolean inMemory: cut.memory) out.writeBoolean(inMemory);}
+			out.writeDouble(cut.violation);
+		}else if(inequality instanceof CapacityInequality) {
+			CapacityInequality cut = (CapacityInequality) inequality;
+			out.writeByte(1);
+			writeInts(out, cut.customerSet);
+			out.writeInt(cut.rightHandSide);
+			out.writeDouble(cut.violation);
+		}else throw new RuntimeException("Unknown inequality: "+inequality);
+	}
+
+	/** Reads a cut (associated with the cut generator of its type). */
+	private static AbstractInequality readInequality(DataInputStream in, EVRPTW dataModel, List<AbstractCutGenerator<EVRPTW, ?>> cutGenerators) throws IOException {
+		if(in.readByte() == 0) {
+			int[] cutSet = toArray(readInts(in));
+			int[] multipliers = toArray(readInts(in));
+			int denominator = in.readInt();
+			int chargingPeriod = in.readInt();
+			boolean[] memory = null;
+			if(in.readBoolean()) {memory = new boolean[in.readInt()]; for (int k = 0; k < memory.length; k++) memory[k] = in.readBoolean();}
+			double violation = in.readDouble();
+			AbstractCutGenerator<EVRPTW, ?> generator = getGenerator(cutGenerators, SubsetRowInequalityGenerator.class);
+			if(chargingPeriod>0) return new SubsetRowInequality(generator, cutSet, chargingPeriod, dataModel.B, violation);
+			return new SubsetRowInequality(generator, cutSet, multipliers, denominator, memory, violation);
+		}
+		int[] customerSet = toArray(readInts(in));
+		int rightHandSide = in.readInt();
+		double violation = in.readDouble();
+		return new CapacityInequality(getGenerator(cutGenerators, CapacityInequalityGenerator.class), customerSet, rightHandSide, violation, dataModel.C+2);
+	}
+
+	/** Returns the cut generator of a class. */
+	private static AbstractCutGenerator<EVRPTW, ?> getGenerator(List<AbstractCutGenerator<EVRPTW, ?>> cutGenerators, Class<?> type) {
+		for(AbstractCutGenerator<EVRPTW, ?> generator: cutGenerators)
+			if(type.isInstance(generator)) return generator;
+		throw new RuntimeException("The checkpoint has cuts of a generator that is not used: "+type.getSimpleName());
+	}
+
+	/** Writes a list of integers. */
+	private static void writeInts(DataOutputStream out, Iterable<Integer> values) throws IOException {
+		List<Integer> list = new ArrayList<Integer>();
+		for(int value: values) list.add(value);
+		out.writeInt(list.size());
+		for(int value: list) out.writeInt(value);
+	}
+
+	/** Writes an array of integers. */
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for(int value: values) out.writeInt(value);
+	}
+
+	/** Reads a list of integers. */
+	private static List<Integer> readInts(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<Integer> values = new ArrayList<Integer>(size);
+		for (int k = 0; k < size; k++) values.add(in.readInt());
+		return values;
+	}
+
+	/** Returns the array of a list of integers. */
+	private static int[] toArray(List<Integer> values) {
+		int[] array = new int[values.size()];
+		for (int k = 0; k < array.length; k++) array[k] = values.get(k);
+		return array;
+	}
+}
@@ -0,0 +1,121 @@
+package branchAndPrice;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
+import org.jorlib.frameworks.columnGeneration.io.TimeLimitExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import columnGeneration.customCG;
+import model.EVRPTW;
+
+/**
+ * Diving heuristic based on column generation. The route with the largest fractional value is fixed (FixRoute) and the
+ * master problem is re-optimized with a truncated CG (heuristic pricing), until an integer solution is found or the dive fails
+ * (infeasible master or bound not better than the incumbent). The dive backtracks to the next candidates within a budget:
+ * limited discrepancy search (at most maximumDiscrepancies deviations from the largest value) or depth-first search (at most maximumBacktracks).
+ * The decisions are reversed at the end, and the columns generated are inherited by the node.
+ */
+public final class DivingHeuristic {
+
+	public static int frequency = 50; 							//the dive is performed at the root node and every frequency nodes
+	public static boolean limitedDiscrepancySearch = true; 		//limited discrepancy search (true) or depth-first search with limited backtracking (false)
+	public static int maximumDiscrepancies = 2; 				//maximum discrepancies of a dive (limited discrepancy search)
+	public static int maximumBacktracks = 5; 					//maximum backtracks of a dive (depth-first search)
+	public static int maximumCandidates = 3; 					//fractional routes considered at each level
+	public static int columnGenerationIterations = 50; 			//maximum CG iterations at each level
+	public static long timeLimit = 30000; 						//time limit of a dive (ms)
+	private final Logger logger = LoggerFactory.getLogger(DivingHeuristic.class);
+
+	private final BranchAndPrice branchAndPrice; 				//Branch-and-Price
+	private final PricingProblem pricingProblem; 				//pricing problem
+	private final EVRPTW dataModel; 							//data model
+	private int backtracks; 									//backtracks performed in the current dive
+	private long deadline; 										//future point in time by which the current dive must be finished
+	private List<Route> generatedColumns; 						//columns generated in the current dive
+
+	public DivingHeuristic(BranchAndPrice branchAndPrice, PricingProblem pricingProblem) {
+		this.branchAndPrice = branchAndPrice;
+		this.pricingProblem = pricingProblem;
+		this.dataModel = branchAndPrice.getDataModel();
+	}
+
+	/**
+	 * Dives from a (fractional) node. The master problem is left with the last decisions reversed (it is rebuilt by the next node processed).
+	 * @param node node of the Branch-and-Price tree
+	 */
+	public void dive(BAPNode<EVRPTW,Route> node) {
+		if(dataModel.infeasibleArcs == null) return; //pricing problem not initialized
+		this.backtracks = 0;
+		this.deadline = System.currentTimeMillis()+timeLimit;
+		this.generatedColumns = new ArrayList<Route>();
+		int objective = branchAndPrice.getObjective();
+		dive(node, branchAndPrice.getMasterColumns(), node.getSolution(), maximumDiscrepancies);
+		node.addInitialColumns(generatedColumns);
+		if(branchAndPrice.getObjective()<objective) logger.debug("Diving heuristic at node {} improved the incumbent: {}", node.nodeID, branchAndPrice.getObjective());
+	}
+
+	/**
+	 * Fixes the fractional routes of the solution one by one (largest value first) and dives from each child.
+	 * @return true if the dive must stop (integer solution found, time limit or backtracking budget reached)
+	 */
+	private boolean dive(BAPNode<EVRPTW,Route> node, List<Route> columns, List<Route> solution, int discrepancies) {
+
+		//Candidates: fractional routes (one per sequence of arcs), largest value first
+		List<Route> candidates = new ArrayList<Route>();
+		for(Route route: solution) {
+			if(route.isArtificialColumn || route.value<=BranchAndPrice.PRECISION || route.value>=1-BranchAndPrice.PRECISION) continue;
+			boolean repeated = false;
+			for(Route candidate: candidates) if(candidate.arcs.equals(route.arcs)) {repeated = true; break;}
+			if(!repeated) candidates.add(route);
+		}
+		candidates.sort((route1, route2) -> Double.compare(route2.value, route1.value));
+
+		for (int k = 0; k < candidates.size() && k < maximumCandidates; k++) {
+			if(limitedDiscrepancySearch && k>discrepancies) break;
+			if(!limitedDiscrepancySearch && k>0 && backtracks++>=maximumBacktracks) return true;
+			if(System.currentTimeMillis()>=deadline) return true;
+
+			FixRoute decision = new FixRoute(pricingProblem, candidates.get(k), dataModel, node.getInequalities());
+			List<Route> childColumns = new ArrayList<Route>();
+			for(Route column: columns)
+				if(decision.columnIsCompatibleWithBranchingDecision(column)) childColumns.add(column);
+
+			branchAndPrice.performBranchingDecision(decision);
+			try {
+				customCG cg = branchAndPrice.solveTruncatedCG(node, childColumns, columnGenerationIterations, deadline);
+				for(Route column: branchAndPrice.getMasterColumns()) {
+					if(column.BBnode==-1) {
+						column.BBnode=node.nodeID;
+						generatedColumns.add(column);
+					}
+				}
+				if(cg.incumbentSolutionObjective<branchAndPrice.getObjective() && !cg.incumbentSolution.isEmpty())
+					branchAndPrice.offerIncumbent(cg.incumbentSolutionObjective, cg.incumbentSolution);
+
+				List<Route> childSolution = new ArrayList<Route>(cg.getSolution().size()); //the values are overwritten by the next master problems
+				for(Route route: cg.getSolution()) {Route newRoute = route.clone(); newRoute.value = route.value; childSolution.add(newRoute);}
+				if(branchAndPrice.isInfeasible(childSolution) || Math.ceil(cg.getObjective()-BranchAndPrice.PRECISION)>=branchAndPrice.getObjective()) continue;
+
+				if(branchAndPrice.isInteger(childSolution)) {
+					if(dataModel.setCoveringFormulation && branchAndPrice.coveringRepair.isOverCovered(childSolution)) {
+						childSolution = branchAndPrice.coveringRepair.repair(childSolution);
+						if(childSolution == null) continue;
+					}
+					int objective = 0;
+					for(Route route: childSolution) objective+=route.cost;
+					branchAndPrice.offerIncumbent(objective, childSolution);
+					return true;
+				}
+				if(dive(node, branchAndPrice.getMasterColumns(), childSolution, discrepancies-k)) return true;
+			} catch (TimeLimitExceededException e) {
+				return true;
+			} finally {
+				branchAndPrice.reverseBranchingDecision(decision);
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,66 @@
+package branchAndPrice;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.branchingDecisions.BranchingDecision;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+
+/**
+ * Ensure that a route is used (diving heuristic): its variable is fixed to one and its customers cannot be visited by other routes
+ */
+public final class FixRoute implements BranchingDecision<EVRPTW,Route> {
+
+	public final PricingProblem pricingProblem;				//pricing problem
+	public final Route route;								//fixed route
+	public List<AbstractInequality> poolOfCuts;				//separated SRCs
+	public EVRPTW dataModel;								//data model
+	public ArrayList<Integer> infeasibleArcs;				//infeasible arcs by the decision (arcs of the customers in the route)
+
+	public FixRoute(PricingProblem pricingProblem, Route route, EVRPTW dataModel, List<AbstractInequality> list){
+		this.pricingProblem=pricingProblem;
+		this.route=route;
+		this.dataModel = dataModel;
+		this.poolOfCuts = list;
+		this.infeasibleArcs = new ArrayList<Integer>();
+
+		for(int i: route.route.keySet()) {
+			for(Arc arc: dataModel.graph.incomingEdgesOf(i))
+				if(!dataModel.infeasibleArcs[arc.id] && !infeasibleArcs.contains(arc.id)) infeasibleArcs.add(arc.id);
+			for(Arc arc: dataModel.graph.outgoingEdgesOf(i))
+				if(!dataModel.infeasibleArcs[arc.id] && !infeasibleArcs.contains(arc.id)) infeasibleArcs.add(arc.id);
+		}
+	}
+
+	/**
+	 * Determine whether the given inequality remains feasible for the child node
+	 * @param inequality inequality
+	 * @return true
+	 */
+	@Override
+	public boolean inEqualityIsCompatibleWithBranchingDecision(AbstractInequality inequality) {
+		return true;
+	}
+
+	/**
+	 * Determine whether the given column remains feasible for the child node
+	 * @param column column
+	 * @return true if the column is the fixed route or does not visit its customers
+	 */
+	@Override
+	public boolean columnIsCompatibleWithBranchingDecision(Route column) {
+		if(column.associatedPricingProblem != this.pricingProblem) return false;
+		if(column.isArtificialColumn || column.arcs.equals(route.arcs)) return true;
+		for(int i: route.route.keySet()) if(column.route.containsKey(i)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString(){
+		return "Fix route: "+ route.toString();
+	}
+}
@@ -0,0 +1,137 @@
+package branchAndPrice;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.branchingDecisions.BranchingDecision;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import columnGeneration.Route;
+import model.EVRPTW;
+
+/**
+ * Compact storage of the nodes of the Branch-and-Price tree.
+ * Each node keeps its branching decision, a reference to its parent and the columns and cuts added at the node (not the ones inherited).
+ * The children are created without columns and cuts: the columns of a node (the ones of its ancestors compatible with the branching decisions
+ * below them) are materialized when it is solved, and its cuts are read by the master problem through the branching decision.
+ * A node is only referenced by its open descendants, so the columns and cuts of a subtree are released once it has been explored.
+ */
+public final class NodeStore {
+
+	private final Map<Integer, NodeRecord> openNodes = new HashMap<Integer, NodeRecord>(); 	//open nodes
+	private NodeRecord currentNode; 													//node being solved (null for the root node)
+	private NodeRecord lastStoredNode; 													//node being branched
+
+	/**
+	 * Returns the columns inherited by a node from its ancestors (the node is no longer open).
+	 * @param node node to be solved.
+	 * @return columns compatible with the branching decisions on the path from the node that generated them.
+	 */
+	public List<Route> getColumns(BAPNode<EVRPTW,Route> node) {
+		List<Route> nodeColumns = new ArrayList<Route>();
+		currentNode = openNodes.remove(node.nodeID);
+		if(currentNode == null) return nodeColumns;
+
+		List<BranchingDecision<EVRPTW,Route>> decisions = new ArrayList<BranchingDecision<EVRPTW,Route>>();
+		decisions.add(currentNode.decision);
+		for(NodeRecord ancestor = currentNode.parent; ancestor != null; ancestor = ancestor.parent) {
+			for(Route column: ancestor.columns) {
+				boolean compatible = true;
+				for(BranchingDecision<EVRPTW,Route> bd: decisions)
+					if(!bd.columnIsCompatibleWithBranchingDecision(column)) {compatible = false; break;}
+				if(compatible) nodeColumns.add(column);
+			}
+			if(ancestor.decision != null) decisions.add(ancestor.decision);
+		}
+		return nodeColumns;
+	}
+
+	/**
+	 * Stores the columns and cuts added at a node, before its children are created.
+	 * @param node node being branched (solved).
+	 * @return cuts of the node (materialized when the list is read).
+	 */
+	public List<AbstractInequality> storeNode(BAPNode<EVRPTW,Route> node) {
+		NodeRecord record = (currentNode != null && currentNode.nodeID == node.nodeID) ? currentNode : new NodeRecord(node.nodeID, null, null);
+
+		//Columns generated at the node
+		List<Route> nodeColumns = new ArrayList<Route>();
+		for(Route column: node.getInitialColumns())
+			if(!column.isArtificialColumn && column.BBnode == node.nodeID) nodeColumns.add(column);
+		record.columns = nodeColumns.toArray(new Route[0]);
+
+		//Cuts separated at the node
+		Set<AbstractInequality> ancestorCuts = (record.parent == null) ? new HashSet<AbstractInequality>() : new HashSet<AbstractInequality>(record.parent.getCuts());
+		List<AbstractInequality> nodeCuts = new ArrayList<AbstractInequality>();
+		for(AbstractInequality cut: node.getInequalities())
+			if(!ancestorCuts.contains(cut)) nodeCuts.add(cut);
+		record.cuts = nodeCuts.toArray(new AbstractInequality[0]);
+		lastStoredNode = record;
+		return record.getCuts();
+	}
+
+	/** Registers a child (without columns and cuts) of the node branched last. */
+	public void addChild(BAPNode<EVRPTW,Route> child) {
+		openNodes.put(child.nodeID, new NodeRecord(child.nodeID, lastStoredNode, child.getBranchingDecision()));
+	}
+
+	/** Removes an open node (pruned before being solved). */
+	public void remove(int nodeID) {
+		openNodes.remove(nodeID);
+	}
+
+	/** Returns the number of open nodes. */
+	public int getNumberOfOpenNodes() {
+		return openNodes.size();
+	}
+
+	/** Class that represents a node: its branching decision, its parent and the columns and cuts added at the node (once it is branched). */
+	private final class NodeRecord {
+		final int nodeID; 										//node identifier
+		final NodeRecord parent; 								//parent node (null for the root node)
+		final BranchingDecision<EVRPTW,Route> decision; 		//branching decision of the node (null for the root node)
+		Route[] columns = new Route[0]; 						//columns generated at the node
+		AbstractInequality[] cuts = new AbstractInequality[0]; 	//cuts separated at the node
+
+		NodeRecord(int nodeID, NodeRecord parent, BranchingDecision<EVRPTW,Route> decision) {
+			this.nodeID = nodeID;
+			this.parent = parent;
+			this.decision = decision;
+		}
+
+		/** Returns the cuts of the node (the ones separated at the node and at its ancestors) as a list materialized when it is read. */
+		List<AbstractInequality> getCuts() {
+			return new AbstractList<AbstractInequality>() {
+				@Override
+				public AbstractInequality get(int index) {
+					return materialize().get(index);
+				}
+				@Override
+				public Iterator<AbstractInequality> iterator() {
+					return materialize().iterator();
+				}
+				@Override
+				public int size() {
+					int size = 0;
+					for(NodeRecord record = NodeRecord.this; record != null; record = record.parent) size+=record.cuts.length;
+					return size;
+				}
+			};
+		}
+
+		/** Returns the cuts of the node (from the root node). */
+		private List<AbstractInequality> materialize() {
+			List<NodeRecord> path = new ArrayList<NodeRecord>();
+			for(NodeRecord record = this; record != null; record = record.parent) path.add(record);
+			List<AbstractInequality> nodeCuts = new ArrayList<AbstractInequality>();
+			for (int k = path.size()-1; k >= 0; k--)
+				for(AbstractInequality cut: path.get(k).cuts) nodeCuts.add(cut);
+			return nodeCuts;
+		}
+	}
+}
@@ -0,0 +1,484 @@
+package branchAndPrice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
+import org.jorlib.frameworks.columnGeneration.branchAndPrice.branchingDecisions.BranchingDecision;
+import org.jorlib.frameworks.columnGeneration.io.TimeLimitExceededException;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractCutGenerator;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import org.jorlib.frameworks.columnGeneration.util.MathProgrammingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import columnGeneration.CutPool;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import columnGeneration.SubsetRowInequality;
+import model.EVRPTW;
+import model.SolverMonitor;
+
+/**
+ * Parallel exploration of the Branch-and-Price tree.
+ * A best-first queue of nodes and the incumbent solution are shared by the workers, each one with its own copy of the instance,
+ * master problem, pricing solvers and branching rules (a Branch-and-Price whose nodes are not processed by the framework).
+ * A node is described by the branching decisions from the root (re-created on the instance of the worker that processes it),
+ * the columns inherited from its parent and the cuts separated in its ancestors. Thus, columns and cuts are passed between the workers.
+ */
+public final class ParallelBranchAndPrice {
+
+	private final Logger logger = LoggerFactory.getLogger(ParallelBranchAndPrice.class);
+	private final List<Worker> workers; 								//workers exploring the tree
+	private final PriorityQueue<Node> queue; 							//open nodes (best bound first)
+	private final Map<Worker, Node> nodesInProcess; 					//node being processed by each worker
+	private final List<Route> initialColumns; 							//columns of the root node
+	private int objectiveIncumbentSolution; 							//objective of the incumbent solution
+	private List<Route> incumbentSolution = new ArrayList<Route>(); 	//incumbent solution
+	private int nodeCounter = 0; 										//nodes created
+	private int processedNodes = 0; 									//nodes processed
+	private double boundRootNode = 0; 									//bound of the root node
+	private boolean timeLimitReached = false; 							//if the time limit has been reached
+	private RuntimeException failure; 									//error thrown by a worker (the search is stopped)
+	private long runtime; 												//total running time (ms)
+	private File checkpointFile; 										//file of the checkpoints (null if disabled)
+	private long lastCheckpoint; 										//time of the last checkpoint
+	private final List<Set<Integer>> neighborhoods = new ArrayList<Set<Integer>>(); //ng-neighborhoods collected from the workers (checkpoints)
+	private final Set<SubsetRowInequality> removedCuts = new LinkedHashSet<SubsetRowInequality>(); //SRCs removed from the MPs, collected from the workers (checkpoints)
+	private boolean resumed = false; 									//if the search continues from a checkpoint
+
+	/**
+	 * Creates the parallel tree search.
+	 * @param branchAndPrices Branch-and-Price of each worker (on its own copy of the instance). The arcs forbidden by the branching decisions
+	 * must be shared by the pricing solvers of each worker (the instance array is set before the solvers are created).
+	 * @param initialColumns columns of the root node.
+	 * @param objectiveInitialSolution objective of the initial solution.
+	 */
+	public ParallelBranchAndPrice(List<BranchAndPrice> branchAndPrices, List<Route> initialColumns, int objectiveInitialSolution) {
+		this.workers = new ArrayList<Worker>(branchAndPrices.size());
+		for(BranchAndPrice branchAndPrice: branchAndPrices) {
+			if(branchAndPrice.branchingRules == null) throw new RuntimeException("The parallel tree search requires the branching rules");
+			if(branchAndPrice.getDataModel().infeasibleArcs == null) throw new RuntimeException("The infeasible arcs of each worker must be created before its pricing solvers");
+			workers.add(new Worker(branchAndPrice));
+		}
+		this.queue = new PriorityQueue<Node>((node1, node2) -> Double.compare(node1.bound, node2.bound));
+		this.nodesInProcess = new HashMap<Worker, Node>();
+		this.initialColumns = snapshot(initialColumns);
+		this.objectiveIncumbentSolution = objectiveInitialSolution;
+		for(Route route: BranchAndPrice.getInitialIncumbent(initialColumns)) {Route newRoute = route.clone(); newRoute.value = route.value; incumbentSolution.add(newRoute);}
+	}
+
+	/**
+	 * Enables the checkpoints of the search (every Checkpoint.interval ms and when the search stops before exploring the whole tree).
+	 * If the file exists, the search is resumed from it: open nodes, incumbent solution, ng-neighborhoods and cut pool.
+	 * @param file file of the checkpoints (deleted when the tree has been explored).
+	 * @param cutGenerators cut generators of the first worker (the cuts of the checkpoint are associated with them).
+	 * @throws IOException Throws IO exception when an existing checkpoint cannot be read.
+	 */
+	public void setCheckpoint(File file, List<AbstractCutGenerator<EVRPTW, ?>> cutGenerators) throws IOException {
+		this.checkpointFile = file;
+		EVRPTW dataModel = workers.get(0).branchAndPrice.getDataModel();
+		for (int i = 0; i <= dataModel.C; i++) neighborhoods.add(new HashSet<Integer>());
+		if(!file.exists()) return;
+
+		Checkpoint checkpoint = Checkpoint.read(file, dataModel, workers.get(0).branchAndPrice.pricingProblem, cutGenerators);
+		nodeCounter = checkpoint.nodeCounter;
+		processedNodes = checkpoint.processedNodes;
+		boundRootNode = checkpoint.boundRootNode;
+		if(checkpoint.objectiveIncumbentSolution<objectiveIncumbentSolution) {
+			objectiveIncumbentSolution = checkpoint.objectiveIncumbentSolution;
+			incumbentSolution = checkpoint.incumbentSolution;
+		}
+		queue.addAll(checkpoint.nodes);
+		for (int i = 1; i <= dataModel.C; i++) neighborhoods.get(i).addAll(checkpoint.neighborhoods.get(i));
+		removedCuts.addAll(checkpoint.removedCuts);
+		for(Worker worker: workers) {
+			EVRPTW workerModel = worker.branchAndPrice.getDataModel();
+			for (int i = 1; i <= workerModel.C; i++) workerModel.vertices[i].neighbors.addAll(neighborhoods.get(i));
+			CutPool cutPool = worker.branchAndPrice.getCutPool();
+			if(cutPool != null) for(SubsetRowInequality cut: removedCuts) cutPool.deactivate(cut.clone());
+		}
+		resumed = true;
+		logger.debug("Resuming from checkpoint: {} open nodes, {} processed nodes, incumbent solution: {}", new Object[] {queue.size(), processedNodes, objectiveIncumbentSolution});
+	}
+
+	/**
+	 * Runs the Branch-and-Price. The root node is solved by the first worker, then all the workers explore the tree.
+	 * @param timeLimit future point in time by which the algorithm must be finished.
+	 */
+	public void runBranchAndPrice(long timeLimit) {
+		runtime = System.currentTimeMillis();
+		lastCheckpoint = runtime;
+		if(!resumed) {
+			Node root = new Node(nodeCounter++, new ArrayList<Decision>(), Collections.singletonList(0), initialColumns, new ArrayList<AbstractInequality>(), 0);
+			queue.add(root);
+		}
+		explore(workers.get(0), timeLimit, true);
+
+		List<Thread> threads = new ArrayList<Thread>(workers.size());
+		for (int k = 0; k < workers.size(); k++) {
+			Worker worker = workers.get(k);
+			Thread thread = new Thread(() -> explore(worker, timeLimit, false), "BPC-worker-"+k);
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread: threads) {
+			try {thread.join();}
+			catch (InterruptedException e) {Thread.currentThread().interrupt();}
+		}
+		runtime = System.currentTimeMillis()-runtime;
+
+		//Last checkpoint (or none if the tree has been explored)
+		if(checkpointFile != null) {
+			if(isOptimal()) checkpointFile.delete();
+			else {
+				Checkpoint checkpoint;
+				synchronized(this) {
+					for(Worker worker: workers) collect(worker);
+					checkpoint = createCheckpoint();
+				}
+				writeCheckpoint(checkpoint);
+			}
+		}
+		if(failure != null) throw failure;
+	}
+
+	/**
+	 * Processes nodes of the shared queue until the tree is explored (or the search is stopped).
+	 * @param worker worker processing the nodes.
+	 * @param timeLimit future point in time by which the algorithm must be finished.
+	 * @param single true if only one node is processed (root node).
+	 */
+	private void explore(Worker worker, long timeLimit, boolean single) {
+		do {
+			Node node = null;
+			synchronized(this) {
+				while(node == null) {
+					if(timeLimitReached || failure != null) return;
+					if(queue.isEmpty()) {
+						if(nodesInProcess.isEmpty()) {notifyAll(); return;}
+						try {wait();}
+						catch (InterruptedException e) {Thread.currentThread().interrupt(); return;}
+						continue;
+					}
+					node = queue.poll();
+					if(Math.ceil(node.bound) >= objectiveIncumbentSolution-BranchAndPrice.PRECISION) {
+						logger.debug("Pruning node {}. Bound: {}, best integer solution: {}", new Object[] {node.nodeID, node.bound, objectiveIncumbentSolution});
+						node = null;
+					}
+				}
+				nodesInProcess.put(worker, node);
+				SolverMonitor monitor = worker.branchAndPrice.getDataModel().monitor;
+				if(monitor != null) monitor.nodeStarted(node.rootPath.size()-1, getBound(), objectiveIncumbentSolution, incumbentSolution, queue.size());
+			}
+
+			List<Node> children = Collections.emptyList();
+			Checkpoint checkpoint = null;
+			try {
+				children = processNode(worker, node, timeLimit);
+			} catch (TimeLimitExceededException e) {
+				synchronized(this) {queue.add(node); timeLimitReached = true;}
+			} catch (RuntimeException e) {
+				synchronized(this) {queue.add(node); if(failure == null) failure = e;}
+			} finally {
+				synchronized(this) {
+					nodesInProcess.remove(worker);
+					queue.addAll(children);
+					if(checkpointFile != null && !timeLimitReached && failure == null && System.currentTimeMillis()-lastCheckpoint>=Checkpoint.interval) {
+						lastCheckpoint = System.currentTimeMillis();
+						collect(worker);
+						checkpoint = createCheckpoint();
+					}
+					notifyAll();
+				}
+			}
+			if(checkpoint != null) writeCheckpoint(checkpoint); //outside the lock (the other workers continue)
+		}while(!single);
+	}
+
+	/**
+	 * Collects the ng-neighborhoods and removed SRCs of a worker (only called by the thread of the worker or once all the workers have stopped).
+	 */
+	private void collect(Worker worker) {
+		EVRPTW dataModel = worker.branchAndPrice.getDataModel();
+		for (int i = 1; i <= dataModel.C; i++) neighborhoods.get(i).addAll(dataModel.vertices[i].neighbors);
+		CutPool cutPool = worker.branchAndPrice.getCutPool();
+		if(cutPool != null) {
+			for(SubsetRowInequality cut: cutPool.getRemovedCuts()) {removedCuts.remove(cut); removedCuts.add(cut);} //most recent last
+			while(removedCuts.size()>CutPool.maximumPoolSize) {Iterator<SubsetRowInequality> iterator = removedCuts.iterator(); iterator.next(); iterator.remove();}
+		}
+	}
+
+	/** Returns the current state of the search (open nodes, including the ones in process, and incumbent solution). */
+	private Checkpoint createCheckpoint() {
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.nodeCounter = nodeCounter;
+		checkpoint.processedNodes = processedNodes;
+		checkpoint.boundRootNode = boundRootNode;
+		checkpoint.objectiveIncumbentSolution = objectiveIncumbentSolution;
+		checkpoint.incumbentSolution = new ArrayList<Route>(incumbentSolution);
+		checkpoint.nodes = new ArrayList<Node>(queue);
+		checkpoint.nodes.addAll(nodesInProcess.values());
+		checkpoint.neighborhoods = new ArrayList<Set<Integer>>();
+		for(Set<Integer> neighborhood: neighborhoods) checkpoint.neighborhoods.add(new HashSet<Integer>(neighborhood));
+		checkpoint.removedCuts = new ArrayList<SubsetRowInequality>(removedCuts);
+		return checkpoint;
+	}
+
+	/** Writes a checkpoint (one at a time). */
+	private void writeCheckpoint(Checkpoint checkpoint) {
+		synchronized(checkpointFile) {
+			try {
+				checkpoint.write(checkpointFile, workers.get(0).branchAndPrice.getDataModel());
+				logger.debug("Checkpoint written: {} open nodes, incumbent solution: {}", checkpoint.nodes.size(), checkpoint.objectiveIncumbentSolution);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Solves a node on a worker and creates its children.
+	 * @param worker worker processing the node.
+	 * @param node node in the Branch-and-Price tree.
+	 * @param timeLimit future point in time by which the node must be finished.
+	 * @return child nodes (empty if the node is pruned, infeasible or integer).
+	 * @throws TimeLimitExceededException TimeLimitExceededException
+	 */
+	private List<Node> processNode(Worker worker, Node node, long timeLimit) throws TimeLimitExceededException {
+		BranchAndPrice branchAndPrice = worker.branchAndPrice;
+		synchronized(this) {branchAndPrice.offerIncumbent(objectiveIncumbentSolution, incumbentSolution);}
+		worker.moveTo(node);
+
+		//Columns of the node (associated with the pricing problem of the worker)
+		List<Route> columns = new ArrayList<Route>(node.columns.size()+1);
+		for(Route column: node.columns) columns.add(column.clone(branchAndPrice.pricingProblem));
+		BranchingDecision<EVRPTW,Route> bd = worker.path.isEmpty() ? null : worker.path.get(worker.path.size()-1);
+		BAPNode<EVRPTW,Route> bapNode = new BAPNode<EVRPTW,Route>(node.nodeID, node.rootPath, columns, node.inequalities, node.bound, bd);
+		bapNode.addInitialColumns(branchAndPrice.generateInitialFeasibleSolution(bapNode));
+
+		//Solve the node
+		logger.debug("Worker {} processing node {} (bound: {})", new Object[] {workers.indexOf(worker), node.nodeID, node.bound});
+		branchAndPrice.solveBAPNode(bapNode, timeLimit);
+		List<Node> children = new ArrayList<Node>();
+		if(branchAndPrice.nodeCanBePruned(bapNode)) {
+			logger.debug("Pruning node {}. Bound: {}, best integer solution: {}", new Object[] {node.nodeID, bapNode.getBound(), branchAndPrice.getObjective()});
+		}else if(branchAndPrice.isInfeasible(bapNode.getSolution())) {
+			logger.debug("Node {} is infeasible", node.nodeID);
+		}else if(branchAndPrice.isIntegerNode(bapNode)) {
+			branchAndPrice.offerIncumbent(MathProgrammingUtil.doubleToInt(bapNode.getObjective()), bapNode.getSolution());
+		}else {
+			//Branch: the decisions are stored to be re-created on the worker processing each child
+			Map<Integer, Integer> nodeIDs = new HashMap<Integer, Integer>();
+			for(BAPNode<EVRPTW,Route> child: branchAndPrice.branchingRules.branch(bapNode)) {
+				int nodeID = getNewNodeID();
+				nodeIDs.put(child.nodeID, nodeID);
+				List<Decision> path = new ArrayList<Decision>(node.path);
+				path.add(Decision.of(child.getBranchingDecision()));
+				List<Integer> rootPath = new ArrayList<Integer>(node.rootPath);
+				rootPath.add(nodeID);
+				children.add(new Node(nodeID, path, rootPath, snapshot(child.getInitialColumns()), new ArrayList<AbstractInequality>(child.getInequalities()), child.getBound()));
+			}
+			branchAndPrice.branchingRules.relabelChildren(nodeIDs);
+		}
+
+		//Share the incumbent solution (it can also be found by the MIP at the root node)
+		offerIncumbent(branchAndPrice.getObjective(), branchAndPrice.getSolution());
+		synchronized(this) {
+			processedNodes++;
+			if(node.nodeID == 0) boundRootNode = bapNode.getBound();
+		}
+		return children;
+	}
+
+	/** Updates the shared incumbent solution if the given solution is better. */
+	private synchronized void offerIncumbent(int objective, List<Route> solution) {
+		if(objective<objectiveIncumbentSolution && solution != null) {
+			objectiveIncumbentSolution = objective;
+			incumbentSolution = new ArrayList<Route>(solution.size());
+			for(Route route: solution) {Route newRoute = route.clone(); newRoute.value = route.value; incumbentSolution.add(newRoute);}
+			SolverMonitor monitor = workers.get(0).branchAndPrice.getDataModel().monitor;
+			if(monitor != null) monitor.incumbentFound(objective, incumbentSolution);
+			logger.debug("New incumbent solution: {}", objective);
+		}
+	}
+
+	/** Returns a new (unique) node identifier. */
+	private synchronized int getNewNodeID() {
+		return nodeCounter++;
+	}
+
+	/** Returns copies of the (non-artificial) columns, so they are not modified by the master problem of the worker that created them. */
+	private static List<Route> snapshot(List<Route> columns) {
+		List<Route> copies = new ArrayList<Route>(columns.size());
+		for(Route column: columns)
+			if(!column.isArtificialColumn) {Route copy = column.clone(); copy.BBnode = column.BBnode; copies.add(copy);}
+		return copies;
+	}
+
+	/** Returns the incumbent solution. */
+	public synchronized List<Route> getSolution() {
+		return incumbentSolution;
+	}
+
+	/** Returns the objective of the incumbent solution. */
+	public synchronized int getObjective() {
+		return objectiveIncumbentSolution;
+	}
+
+	/** Returns true if a feasible solution has been found. */
+	public synchronized boolean hasSolution() {
+		return !incumbentSolution.isEmpty();
+	}
+
+	/** Returns true if the tree has been explored (the incumbent solution is optimal). */
+	public synchronized boolean isOptimal() {
+		return !timeLimitReached && failure == null && queue.isEmpty();
+	}
+
+	/** Returns the best bound (the smallest bound of the open nodes). */
+	public synchronized double getBound() {
+		double bound = objectiveIncumbentSolution;
+		for(Node node: queue) bound = Math.min(bound, node.bound);
+		for(Node node: nodesInProcess.values()) bound = Math.min(bound, node.bound);
+		return bound;
+	}
+
+	/** Returns the bound of the root node. */
+	public synchronized double getBoundRootNode() {
+		return boundRootNode;
+	}
+
+	/** Returns the number of processed nodes. */
+	public synchronized int getNumberOfProcessedNodes() {
+		return processedNodes;
+	}
+
+	/** Returns the time spent solving master problems (all workers). */
+	public long getMasterSolveTime() {
+		long time = 0;
+		for(Worker worker: workers) time+=worker.branchAndPrice.getMasterSolveTime();
+		return time;
+	}
+
+	/** Returns the time spent solving pricing problems (all workers). */
+	public long getPricingSolveTime() {
+		long time = 0;
+		for(Worker worker: workers) time+=worker.branchAndPrice.getPricingSolveTime();
+		return time;
+	}
+
+	/** Returns the total number of column generation iterations (all workers). */
+	public int getTotalNrIterations() {
+		int iterations = 0;
+		for(Worker worker: workers) iterations+=worker.branchAndPrice.getTotalNrIterations();
+		return iterations;
+	}
+
+	/** Returns the total running time (ms). */
+	public long getSolveTime() {
+		return runtime;
+	}
+
+	/** Closes the master and pricing problems of all the workers. */
+	public void close() {
+		for(Worker worker: workers) worker.branchAndPrice.close();
+	}
+
+	/** Class that represents a worker: a Branch-and-Price and the branching decisions currently performed on it. */
+	private final class Worker {
+		final BranchAndPrice branchAndPrice; 						//master problem, pricing solvers and branching rules of the worker
+		final List<BranchingDecision<EVRPTW,Route>> path; 			//decisions performed (from the root node)
+
+		Worker(BranchAndPrice branchAndPrice) {
+			this.branchAndPrice = branchAndPrice;
+			this.path = new ArrayList<BranchingDecision<EVRPTW,Route>>();
+		}
+
+		/**
+		 * Reverses the decisions currently performed and performs the ones of a node.
+		 * The master problem is rebuilt once, after all the decisions; only the last one adds the cuts of the node.
+		 */
+		void moveTo(Node node) {
+			if(path.isEmpty() && node.path.isEmpty()) return;
+			for (int k = path.size()-1; k >= 0; k--) branchAndPrice.reverseBranchingDecision(path.get(k));
+			path.clear();
+			for (int k = 0; k < node.path.size(); k++) {
+				List<AbstractInequality> cuts = (k == node.path.size()-1) ? node.inequalities : new ArrayList<AbstractInequality>();
+				path.add(node.path.get(k).create(branchAndPrice.pricingProblem, branchAndPrice.getDataModel(), cuts));
+			}
+			branchAndPrice.performBranchingDecisions(path);
+		}
+	}
+
+	/** Class that represents an open node of the tree (independent of the workers). */
+	static final class Node {
+		final int nodeID; 								//node identifier
+		final List<Decision> path; 						//branching decisions from the root node
+		final List<Integer> rootPath; 					//identifiers of the nodes from the root node
+		final List<Route> columns; 						//columns inherited from the parent
+		final List<AbstractInequality> inequalities; 	//cuts separated in the ancestors
+		final double bound; 							//bound of the parent
+
+		Node(int nodeID, List<Decision> path, List<Integer> rootPath, List<Route> columns, List<AbstractInequality> inequalities, double bound) {
+			this.nodeID = nodeID;
+			this.path = path;
+			this.rootPath = rootPath;
+			this.columns = columns;
+			this.inequalities = inequalities;
+			this.bound = bound;
+		}
+	}
+
+	/** Class that represents a branching decision independently of the instance and pricing problem of a worker. */
+	static final class Decision {
+		static final int VEHICLES_DOWN = 0, VEHICLES_UP = 1, REMOVE_ARC = 2, FIX_ARC = 3; 	//types of decisions
+		static final int INITIAL_CHARGING_TIME_DOWN = 4, INITIAL_CHARGING_TIME_UP = 5, END_CHARGING_TIME_DOWN = 6, END_CHARGING_TIME_UP = 7;
+		final int type; 				//type of decision
+		final int coefficient; 			//RHS of the branching constraint
+		final int index; 				//arc or timestep
+		final double flowValue; 		//flow of the arc (when branching on arcs)
+
+		Decision(int type, int coefficient, int index, double flowValue) {
+			this.type = type;
+			this.coefficient = coefficient;
+			this.index = index;
+			this.flowValue = flowValue;
+		}
+
+		/** Describes a branching decision. */
+		static Decision of(BranchingDecision<EVRPTW,Route> bd) {
+			if(bd instanceof BranchVehiclesDown) return new Decision(VEHICLES_DOWN, ((BranchVehiclesDown) bd).coefficient, -1, 0);
+			if(bd instanceof BranchVehiclesUp) return new Decision(VEHICLES_UP, ((BranchVehiclesUp) bd).coefficient, -1, 0);
+			if(bd instanceof RemoveArc) return new Decision(REMOVE_ARC, 0, ((RemoveArc) bd).arc, ((RemoveArc) bd).flowValue);
+			if(bd instanceof FixArc) return new Decision(FIX_ARC, 0, ((FixArc) bd).arc, ((FixArc) bd).flowValue);
+			if(bd instanceof BranchInitialChargingTimeDown) return new Decision(INITIAL_CHARGING_TIME_DOWN, ((BranchInitialChargingTimeDown) bd).coefficient, ((BranchInitialChargingTimeDown) bd).timestep, 0);
+			if(bd instanceof BranchInitialChargingTimeUp) return new Decision(INITIAL_CHARGING_TIME_UP, ((BranchInitialChargingTimeUp) bd).coefficient, ((BranchInitialChargingTimeUp) bd).timestep, 0);
+			if(bd instanceof BranchEndChargingTimeDown) return new Decision(END_CHARGING_TIME_DOWN, ((BranchEndChargingTimeDown) bd).coefficient, ((BranchEndChargingTimeDown) bd).timestep, 0);
+			if(bd instanceof BranchEndChargingTimeUp) return new Decision(END_CHARGING_TIME_UP, ((BranchEndChargingTimeUp) bd).coefficient, ((BranchEndChargingTimeUp) bd).timestep, 0);
+			throw new RuntimeException("Unknown branching decision: "+bd);
+		}
+
+		/** Creates the branching decision on the instance and pricing problem of a worker. */
+		BranchingDecision<EVRPTW,Route> create(PricingProblem pricingProblem, EVRPTW dataModel, List<AbstractInequality> cuts) {
+			switch(type) {
+			case VEHICLES_DOWN: return new BranchVehiclesDown(pricingProblem, coefficient, cuts);
+			case VEHICLES_UP: return new BranchVehiclesUp(pricingProblem, coefficient, cuts);
+			case REMOVE_ARC: return new RemoveArc(pricingProblem, index, dataModel, cuts, flowValue);
+			case FIX_ARC: return new FixArc(pricingProblem, index, dataModel, cuts, flowValue);
+			case INITIAL_CHARGING_TIME_DOWN: return new BranchInitialChargingTimeDown(pricingProblem, coefficient, cuts, index);
+			case INITIAL_CHARGING_TIME_UP: return new BranchInitialChargingTimeUp(pricingProblem, coefficient, cuts, index);
+			case END_CHARGING_TIME_DOWN: return new BranchEndChargingTimeDown(pricingProblem, coefficient, cuts, index);
+			default: return new BranchEndChargingTimeUp(pricingProblem, coefficient, cuts, index);
+			}
+		}
+	}
+}
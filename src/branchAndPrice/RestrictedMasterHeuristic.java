@@ -0,0 +1,194 @@
+package branchAndPrice;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import columnGeneration.CoveringSolutionRepair;
+import columnGeneration.Route;
+import ilog.concert.IloColumn;
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloObjective;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+import model.EVRPTW;
+
+/**
+ * Restricted master heuristic: the pool of columns generated so far is periodically solved as a MIP on a background thread,
+ * warm started with the incumbent solution and with the incumbent objective as cutoff. The improved solutions are collected by the
+ * Branch-and-Price (pollSolution) to update its incumbent. Only one MIP is solved at a time.
+ */
+public final class RestrictedMasterHeuristic {
+
+	public static int frequency = 20; 							//the MIP is solved at the root node and every frequency nodes (if the previous one has finished)
+	public static double timeLimit = 30.0; 						//time limit of each MIP (seconds)
+	public static int threads = 1; 								//threads used by the CPLEX of the MIP
+	public static int maximumAge = 5; 							//MIPs a column can be missing from the submitted columns before it is removed from the pool
+	public static int maximumPoolSize = 20000; 					//maximum number of columns in the pool (the oldest ones are discarded)
+	private final Logger logger = LoggerFactory.getLogger(RestrictedMasterHeuristic.class);
+
+	private final EVRPTW dataModel; 							//data model
+	private final CoveringSolutionRepair coveringRepair; 		//repairs over-covered solutions (set-covering master)
+	private final Map<Route, Integer> pool = new LinkedHashMap<Route, Integer>(); 	//pool of columns (copies, the values are not modified by the master) -> age (in order of submission)
+	private Thread thread; 										//thread solving the current MIP (null if none has been started)
+	private List<Route> solution; 								//improved solution not collected yet (null if none)
+	private int objective = Integer.MAX_VALUE; 				//objective of the best solution found by the MIPs
+	private volatile boolean closed = false; 					//if true, the solutions found are discarded
+	private final IloCplex.Aborter aborter = new IloCplex.Aborter(); 	//aborts the MIP running when the heuristic is closed
+
+	public RestrictedMasterHeuristic(EVRPTW dataModel) {
+		this.dataModel = dataModel;
+		this.coveringRepair = new CoveringSolutionRepair(dataModel);
+	}
+
+	/**
+	 * Adds the columns to the pool and starts a MIP on the pool (unless the previous MIP is still running).
+	 * The age of a column is the number of MIPs started since it was last submitted; the aged columns are removed before starting a MIP,
+	 * as well as the oldest ones above the maximum size, so the MIPs are solved on the columns of the recent nodes.
+	 * @param columns columns generated
+	 * @param incumbentObjective objective of the incumbent solution (cutoff)
+	 * @param incumbentSolution incumbent solution (MIP start)
+	 */
+	public void submit(List<Route> columns, int incumbentObjective, List<Route> incumbentSolution) {
+		for(Route column: columns) {
+			if(column.isArtificialColumn) continue;
+			Route copy = column.clone();
+			pool.remove(copy); //moved to the end (most recent)
+			pool.put(copy, 0);
+		}
+		if(thread != null && thread.isAlive()) return;
+
+		//Age the columns, and remove the aged ones and the oldest ones above the maximum size
+		int excess = pool.size()-maximumPoolSize;
+		for(Iterator<Map.Entry<Route, Integer>> iterator = pool.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Route, Integer> entry = iterator.next();
+			if(excess>0 || entry.getValue()>=maximumAge) {iterator.remove(); excess--;}
+			else entry.setValue(entry.getValue()+1);
+		}
+
+		List<Route> columnsMIP = new ArrayList<Route>(pool.keySet());
+		List<Route> start = new ArrayList<Route>();
+		if(incumbentSolution != null) for(Route route: incumbentSolution) if(!route.isArtificialColumn) start.add(route.clone());
+		thread = new Thread(() -> solve(columnsMIP, incumbentObjective, start), "BPC-restricted-master");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Solves the set-partitioning (covering) problem with the chargers capacity constraints on the given columns.
+	 */
+	private void solve(List<Route> columns, int incumbentObjective, List<Route> start) {
+		Map<Route, IloIntVar> variables = new LinkedHashMap<Route, IloIntVar>();
+		IloCplex cplex = null;
+		try {
+			cplex =new IloCplex(); 											//create CPLEX instance
+			cplex.setOut(null);												//disable CPLEX output
+			cplex.setParam(IloCplex.IntParam.Threads, threads); 			//set number of threads that may be used by the cplex
+			cplex.setParam(IloCplex.DoubleParam.TiLim, timeLimit); 		//set time limit in seconds
+			cplex.setParam(IloCplex.DoubleParam.CutUp, incumbentObjective); //objective cutoff
+			cplex.use(aborter); 											//abort the solve when the heuristic is closed
+			if(closed) return;
+
+			//Define the objective
+			IloObjective obj= cplex.addMinimize();
+			//Define partitioning constraints
+			IloRange[] visitCustomerConstraints=new IloRange[dataModel.C];
+			for(int i=0; i< dataModel.C; i++) {
+				if(dataModel.setCoveringFormulation) visitCustomerConstraints[i] = cplex.addGe(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+				else visitCustomerConstraints[i] = cplex.addEq(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+			}
+			//define constrains (capacitated station)
+			IloRange[]  chargersCapacityConstraints = new IloRange[dataModel.last_charging_period];
+			for (int t = 0; t < dataModel.last_charging_period; t++)
+				chargersCapacityConstraints[t] = cplex.addLe(cplex.linearIntExpr(), dataModel.B, "capacity_"+(t+1));
+
+			for(Route column: columns) addVariable(cplex, obj, visitCustomerConstraints, chargersCapacityConstraints, column, variables);
+			for(Route column: start) if(!variables.containsKey(column)) addVariable(cplex, obj, visitCustomerConstraints, chargersCapacityConstraints, column, variables);
+
+			//MIP start (incumbent solution)
+			if(!start.isEmpty()) {
+				IloNumVar[] startVariables = new IloNumVar[start.size()];
+				double[] startValues = new double[start.size()];
+				for (int k = 0; k < start.size(); k++) {startVariables[k] = variables.get(start.get(k)); startValues[k] = 1;}
+				cplex.addMIPStart(startVariables, startValues, IloCplex.MIPStartEffort.CheckFeas);
+			}
+
+			if(cplex.solve() && (cplex.getStatus()==IloCplex.Status.Optimal || cplex.getStatus()==IloCplex.Status.Feasible)) {
+				int newObjective = (int) (cplex.getObjValue()+0.05);
+				if(newObjective>=incumbentObjective) return;
+				//retrieve solution
+				List<Route> newSolution = new ArrayList<Route>();
+				for (Route route: variables.keySet()) {
+					if(cplex.getValue(variables.get(route))>=0.5){
+						Route newRoute = route.clone();
+						newRoute.value = 1;
+						newSolution.add(newRoute);
+					}
+				}
+				if(dataModel.setCoveringFormulation && coveringRepair.isOverCovered(newSolution)) { //turn it into a partition
+					newSolution = coveringRepair.repair(newSolution);
+					if(newSolution == null) return;
+					newObjective = 0;
+					for(Route route: newSolution) newObjective+=route.cost;
+				}
+				offer(newObjective, newSolution);
+			}
+		} catch (IloException e) {
+			e.printStackTrace();
+		} finally {
+			if(cplex != null) {cplex.close(); cplex.end();}
+		}
+	}
+
+	/** Creates the variable of a column in the MIP. */
+	private void addVariable(IloCplex cplex, IloObjective obj, IloRange[] visitCustomerConstraints, IloRange[] chargersCapacityConstraints, Route column, Map<Route, IloIntVar> variables) throws IloException {
+		//Register column with objective
+		IloColumn iloColumn= cplex.column(obj,column.cost);
+
+		//Register column with partitioning constraint
+		for(int i: column.route.keySet())
+			iloColumn=iloColumn.and(cplex.column(visitCustomerConstraints[i-1], column.route.get(i)));
+
+		//Register column with chargers capacity constraints
+		for (int t = column.initialChargingTime; t <= (column.initialChargingTime+ column.chargingTime-1); t++)
+			iloColumn=iloColumn.and(cplex.column(chargersCapacityConstraints[t-1], 1));
+
+		//Create the variable and store it
+		IloIntVar var= cplex.intVar(iloColumn, 0, 1);
+		cplex.add(var);
+		variables.put(column, var);
+	}
+
+	/** Stores a solution found by the MIP if it is the best one found so far. */
+	private synchronized void offer(int newObjective, List<Route> newSolution) {
+		if(closed || newObjective>=objective) return;
+		objective = newObjective;
+		solution = newSolution;
+		logger.debug("Restricted master heuristic found a solution: {}", newObjective);
+		if(dataModel.monitor != null) dataModel.monitor.incumbentFound(newObjective, newSolution);
+	}
+
+	/** Returns the improved solution found since the last call (null if none). */
+	public synchronized List<Route> pollSolution() {
+		List<Route> newSolution = solution;
+		solution = null;
+		return newSolution;
+	}
+
+	/** Aborts the MIP running (if any) and waits for its thread to end. */
+	public void close() {
+		closed = true;
+		aborter.abort();
+		if(thread == null) return;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
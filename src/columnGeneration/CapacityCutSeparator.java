@@ -0,0 +1,167 @@
+package columnGeneration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+/**
+ * This class separates rounded capacity inequalities on the (aggregated) fractional arc flows.
+ * The customers joined by a flow of one are shrunk into super-vertices. Then, the connected components of the support graph
+ * and the sets obtained by greedily growing each super-vertex (adding the most connected super-vertex) are checked.
+ */
+public class CapacityCutSeparator{
+
+	public static final double PRECISION=0.01; 			//precision considered for the cuts
+	public static int maximumNumberCuts = 20; 			//maximum number of cuts to add each iteration
+	private boolean capacityViolation=false; 			//if at least one violation has been found
+	private ArrayList<PreliminaryCut> cutSets; 			//customer sets
+	private EVRPTW dataModel; 							//original data which defines the mE-VRSPTW
+
+	/**
+	 * This method instantiates the capacity cuts separator.
+	 */
+	public CapacityCutSeparator(EVRPTW dataModel){
+		this.dataModel=dataModel;
+	}
+
+	/**
+	 * Starts the separation.
+	 */
+	public void separate(Map<Route, Double> routeValueMap){
+
+		//Aggregate arc flows (customer-based graph: 0 is the depot source)
+		int n = dataModel.C+1;
+		double[][] flow = new double[n][n];
+		for(Map.Entry<Route, Double> entry : routeValueMap.entrySet()) {
+			for(int a: entry.getKey().arcs) {
+				Arc arc = dataModel.arcs[a];
+				if(arc.head<n) flow[arc.tail][arc.head]+=entry.getValue();
+			}
+		}
+
+		//Shrink the customers joined by a flow of one
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++) parent[i] = i;
+		for (int i = 1; i < n; i++)
+			for (int j = i+1; j < n; j++)
+				if(flow[i][j]+flow[j][i]>=1-PRECISION) parent[find(parent, i)] = find(parent, j);
+		List<List<Integer>> superVertices = new ArrayList<List<Integer>>();
+		int[] superVertex = new int[n];
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		for (int i = 1; i < n; i++) {
+			int root = find(parent, i);
+			if(index[root]<0) {index[root] = superVertices.size(); superVertices.add(new ArrayList<Integer>());}
+			superVertex[i] = index[root];
+			superVertices.get(index[root]).add(i);
+		}
+
+		//Flows and loads of the super-vertices
+		int m = superVertices.size();
+		double[][] connection = new double[m][m]; 		//flow between two super-vertices (both directions)
+		double[] inflow = new double[m]; 				//flow entering each super-vertex
+		int[] load = new int[m];
+		for (int i = 1; i < n; i++) {
+			load[superVertex[i]]+=dataModel.vertices[i].load;
+			for (int j = 0; j < n; j++) {
+				if(j==0 || superVertex[j]!=superVertex[i]) inflow[superVertex[i]]+=flow[j][i];
+				if(j>0 && superVertex[j]!=superVertex[i]) connection[superVertex[i]][superVertex[j]]+=flow[j][i]+flow[i][j];
+			}
+		}
+
+		List<PreliminaryCut> preliminaryCutSet = new ArrayList<PreliminaryCut>();
+		Set<List<Integer>> evaluatedSets = new HashSet<List<Integer>>();
+
+		//Connected components of the support graph
+		boolean[] visited = new boolean[m];
+		for (int s = 0; s < m; s++) {
+			if(visited[s]) continue;
+			List<Integer> component = new ArrayList<Integer>();
+			component.add(s); visited[s] = true;
+			for (int k = 0; k < component.size(); k++)
+				for (int t = 0; t < m; t++)
+					if(!visited[t] && connection[component.get(k)][t]>PRECISION) {visited[t] = true; component.add(t);}
+			evaluate(component, superVertices, inflow, connection, load, evaluatedSets, preliminaryCutSet);
+		}
+
+		//Greedy growth of each super-vertex
+		for (int s = 0; s < m; s++) {
+			List<Integer> set = new ArrayList<Integer>();
+			boolean[] inSet = new boolean[m];
+			double[] connectionToSet = new double[m];
+			int current = s;
+			while(current>=0 && set.size()<m-1) {
+				set.add(current); inSet[current] = true;
+				for (int t = 0; t < m; t++) connectionToSet[t]+=connection[current][t];
+				evaluate(set, superVertices, inflow, connection, load, evaluatedSets, preliminaryCutSet);
+				current = -1;
+				double bestConnection = PRECISION;
+				for (int t = 0; t < m; t++)
+					if(!inSet[t] && connectionToSet[t]>bestConnection) {bestConnection = connectionToSet[t]; current = t;}
+			}
+		}
+
+		//Keep the most violated cuts
+		this.cutSets = new ArrayList<PreliminaryCut>(maximumNumberCuts);
+		Collections.sort(preliminaryCutSet, (cut1, cut2) -> Double.compare(cut2.violation, cut1.violation));
+		for (int k = 0; k < preliminaryCutSet.size() && k < maximumNumberCuts; k++) cutSets.add(preliminaryCutSet.get(k));
+		capacityViolation = !cutSets.isEmpty();
+	}
+
+	/** Evaluates the rounded capacity inequality on a set of super-vertices (x(δ-(S)) = Σ in(s) - x(S,S)). */
+	private void evaluate(List<Integer> set, List<List<Integer>> superVertices, double[] inflow, double[][] connection, int[] load, Set<List<Integer>> evaluatedSets, List<PreliminaryCut> preliminaryCutSet) {
+		double setInflow = 0;
+		int setLoad = 0;
+		List<Integer> customers = new ArrayList<Integer>();
+		for (int k = 0; k < set.size(); k++) {
+			int s = set.get(k);
+			setInflow+=inflow[s];
+			setLoad+=load[s];
+			customers.addAll(superVertices.get(s));
+			for (int l = k+1; l < set.size(); l++) setInflow-=connection[s][set.get(l)];
+		}
+		int rightHandSide = (int) Math.ceil((double) setLoad/dataModel.Q);
+		if(setInflow<rightHandSide-PRECISION) {
+			Collections.sort(customers);
+			if(!evaluatedSets.add(customers)) return;
+			int[] customerSet = new int[customers.size()];
+			for (int k = 0; k < customerSet.length; k++) customerSet[k] = customers.get(k);
+			preliminaryCutSet.add(new PreliminaryCut(customerSet, rightHandSide, rightHandSide-setInflow));
+		}
+	}
+
+	/** Returns the representative of a vertex (union-find). */
+	private int find(int[] parent, int i) {
+		while(parent[i]!=i) {parent[i] = parent[parent[i]]; i = parent[i];}
+		return i;
+	}
+
+	/** Returns whether a capacity cut violation exists in the fractional solution. */
+	public boolean capacityViolation(){
+		return capacityViolation;
+	}
+
+	/** Returns the sets of customers for which a capacity cut has been separated */
+	public ArrayList<PreliminaryCut> getCutSets(){
+		return cutSets;
+	}
+
+	/** Class that represent a preliminary cut that could be added */
+	public class PreliminaryCut{
+		public int[] customerSet; 				//customers in the cut
+		public int rightHandSide; 				//minimum number of vehicles
+		public double violation; 				//current violation of the cut
+
+		public PreliminaryCut(int[] customerSet, int rightHandSide, double violation) {
+			this.customerSet = customerSet;
+			this.rightHandSide = rightHandSide;
+			this.violation = violation;
+		}
+	}
+}
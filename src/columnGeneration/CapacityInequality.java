@@ -0,0 +1,66 @@
+package columnGeneration;
+import java.util.Arrays;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractCutGenerator;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import model.EVRPTW.Arc;
+
+/**
+ * This class represents a rounded capacity inequality on a subset of customers S:
+ * the routes must enter S at least ceil(q(S)/Q) times.
+ * It is a robust cut: its dual is collected on the arcs entering S.
+ */
+public final class CapacityInequality extends AbstractInequality {
+
+	public final int[] customerSet; 		//customers in the cut (sorted)
+	public final int rightHandSide; 		//minimum number of vehicles serving the customers
+	private final boolean[] inSet; 			//true if the vertex is in the cut (indexed by vertex)
+	public double violation; 				//current violation of the cut
+
+	public CapacityInequality(AbstractCutGenerator maintainingGenerator, int[] customerSet, int rightHandSide, double violation, int numberOfVertices) {
+		super(maintainingGenerator);
+		this.customerSet = customerSet;
+		this.rightHandSide = rightHandSide;
+		this.violation = violation;
+		this.inSet = new boolean[numberOfVertices];
+		for(int i: customerSet) inSet[i] = true;
+	}
+
+	/** Returns true if the arc enters the customer set. */
+	public boolean isEntering(Arc arc) {
+		return arc.head<inSet.length && inSet[arc.head] && (arc.tail>=inSet.length || !inSet[arc.tail]);
+	}
+
+	/**
+	 * Computes the coefficient of a route in the cut, i.e., the number of times it enters the customer set.
+	 * @param route for which the coefficient is calculated.
+	 * @param arcs arcs of the graph.
+	 */
+	public int getCoefficient(Route route, Arc[] arcs) {
+		int coefficient = 0;
+		for(int arc: route.arcs)
+			if(isEntering(arcs[arc])) coefficient++;
+		return coefficient;
+	}
+
+	/** The equals and hashCode methods are important (for the jORlib)**/
+	@Override
+	public boolean equals(Object o) {
+		if(this==o)
+			return true;
+		else if(!(o instanceof CapacityInequality))
+			return false;
+		CapacityInequality other=(CapacityInequality)o;
+		return Arrays.equals(this.customerSet, other.customerSet);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(customerSet);
+	}
+
+	/** String representation of the cut */
+	@Override
+	public String toString(){
+		return ""+Arrays.toString(this.customerSet)+" >= "+this.rightHandSide+", violation: " + Math.floor(10000*this.violation)/10000;
+	}
+}
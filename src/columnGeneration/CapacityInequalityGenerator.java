@@ -0,0 +1,104 @@
+package columnGeneration;
+
+import ilog.concert.IloException;
+
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
+import model.EVRPTW;
+import java.util.*;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractCutGenerator;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequality;
+import columnGeneration.CapacityCutSeparator.PreliminaryCut;
+
+
+/**
+ * This class checks for violated rounded capacity cuts in the master problem. 
+ * It also adds them to the master problem.
+ */
+public final class CapacityInequalityGenerator extends AbstractCutGenerator<EVRPTW, VRPMasterData> {
+
+	private final CapacityCutSeparator separator;		//class to separate the cuts
+
+	/** Creates a new capacity cuts generator. */
+	public CapacityInequalityGenerator(EVRPTW modelData) {
+		super(modelData, "Capacity Cuts Generator");
+		separator=new CapacityCutSeparator(dataModel); //creates a capacity cuts separator
+	}
+
+	/**
+	 * Generate inequalities using the data originating from the master problem.
+	 * @return Returns true if a violated inequality has been found.
+	 * When violated inequalities are found, they are added to the MP through the addCut method.
+	 */
+	@Override
+	public List<AbstractInequality> generateInqualities() {
+
+		//Check for violated capacity cuts. When found, generate an inequality
+		long startTime = System.currentTimeMillis();
+		separator.separate(masterData.routeValueMap);
+		if(separator.capacityViolation()){
+			List<AbstractInequality> cuts = new ArrayList<>(separator.getCutSets().size());
+			for(PreliminaryCut preliminaryCut: separator.getCutSets()) {
+				CapacityInequality inequality=new CapacityInequality(this, preliminaryCut.customerSet, preliminaryCut.rightHandSide, preliminaryCut.violation, dataModel.C+2);
+				if(masterData.capacityInequalities.containsKey(inequality)) continue;
+				this.addCut(inequality);
+				cuts.add(inequality);
+			}
+			long endTime = System.currentTimeMillis();
+			logger.debug("Time separating capacity cuts (s): " + Math.floor((endTime-startTime)*0.1)/100);
+			return cuts;
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * If a violated inequality has been found add it to the master problem.
+	 * @param capacityInequality
+	 * Handle the corresponding cplex object in the MasterData so that the Cut Generator Directly add a constraint. 
+	 */
+	private void addCut(CapacityInequality capacityInequality) {
+
+		if(masterData.capacityInequalities.containsKey(capacityInequality))
+			throw new RuntimeException("Error, duplicate capacity cut is being generated! This cut should already exist in the master problem: "+capacityInequality);
+		try {
+			logger.debug("Adding capacity cut: " +  capacityInequality);
+			IloLinearNumExpr expr=masterData.cplex.linearNumExpr();
+			//Register the columns with this constraint (only the columns entering the customer set).
+			for(Map.Entry<Route, Integer> entry: masterData.getCoefficients(capacityInequality, dataModel.arcs).entrySet()){
+				IloNumVar var=masterData.getRoutingVariable(entry.getKey());
+				expr.addTerm(entry.getValue(), var);
+			}
+			IloRange capacityConstraint = masterData.cplex.addGe(expr, capacityInequality.rightHandSide, "capacityCut_"+Arrays.toString(capacityInequality.customerSet));
+			masterData.capacityInequalities.put(capacityInequality, capacityConstraint);
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Add a capacity cut to the Master Problem
+	 * @param cut AbstractInequality
+	 */
+	@Override
+	public void addCut(AbstractInequality cut) {
+		if(!(cut instanceof CapacityInequality))
+			throw new IllegalArgumentException("This AbstractCutGenerator can ONLY add capacity cuts");
+		this.addCut((CapacityInequality) cut);
+	}
+
+	/**
+	 * List of inequalities that have been generated
+	 * @return generated inequalities
+	 */
+	@Override
+	public List<AbstractInequality> getCuts() {
+		return new ArrayList<>(masterData.capacityInequalities.keySet());
+	}
+
+	/**
+	 * Close the generator
+	 */
+	@Override
+	public void close() {} //Nothing to do here
+}
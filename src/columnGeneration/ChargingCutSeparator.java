@@ -0,0 +1,122 @@
+package columnGeneration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import model.EVRPTW;
+
+/**
+ * This class separates SRCs combined with the chargers capacity constraint of a period:
+ * with multipliers 1/2 on the rows of a set of customers S and on the capacity of period t (B chargers),
+ * sum_r floor((visits of r to S + [r charges at t])/2) x_r <= floor((|S|+B)/2).
+ * Only sets with |S|+B odd are considered (otherwise the cut is weaker than the rows it comes from),
+ * on periods where the chargers are (almost) fully used by the fractional solution.
+ */
+public class ChargingCutSeparator{
+
+	public static final double PRECISION=0.01; 			//precision considered for the cuts
+	public static int maximumNumberCuts = 20; 			//maximum number of cuts to add each iteration
+	public static int maximumCandidates = 12; 			//customers (by charging flow in the period) considered in each period
+	private boolean chargingViolation=false; 			//if at least one violation has been found
+	private ArrayList<PreliminaryCut> cutSets; 			//customer sets and periods
+	private EVRPTW dataModel; 							//original data which defines the mE-VRSPTW
+
+	/**
+	 * This method instantiates the separator.
+	 */
+	public ChargingCutSeparator(EVRPTW dataModel){
+		this.dataModel=dataModel;
+	}
+
+	/**
+	 * Starts the separation.
+	 */
+	public void separate(Map<Route, Double> routeValueMap){
+
+		List<PreliminaryCut> preliminaryCutSet = new ArrayList<PreliminaryCut>();
+		int setSize = (dataModel.B%2==1) ? 2 : 3; 			//|S|+B odd
+
+		//Customers visited in routes with a flow of 1 cannot be in a violated cut
+		boolean[] customersToDiscard = new boolean[dataModel.C+1];
+		List<Route> routes = new ArrayList<Route>();
+		for(Map.Entry<Route, Double> entry : routeValueMap.entrySet()) {
+			if(entry.getValue()>=0.999) for(int i: entry.getKey().route.keySet()) customersToDiscard[i] = true;
+			else routes.add(entry.getKey());
+		}
+
+		for (int t = 1; t <= dataModel.last_charging_period; t++) {
+
+			//Only (almost) tight periods can yield a violated cut
+			double chargersUsed = 0;
+			for(Map.Entry<Route, Double> entry : routeValueMap.entrySet())
+				if(charges(entry.getKey(), t)) chargersUsed+=entry.getValue();
+			if(chargersUsed<=dataModel.B-1+PRECISION) continue;
+
+			//Candidates: customers visited by the fractional routes charging in the period
+			double[] chargingFlow = new double[dataModel.C+1];
+			for(Route route: routes)
+				if(charges(route, t)) for(int i: route.route.keySet()) chargingFlow[i]+=routeValueMap.get(route);
+			List<Integer> candidates = new ArrayList<Integer>();
+			for (int i = 1; i <= dataModel.C; i++)
+				if(!customersToDiscard[i] && chargingFlow[i]>0) candidates.add(i);
+			final double[] flow = chargingFlow;
+			candidates.sort((i, j) -> Double.compare(flow[j], flow[i]));
+			if(candidates.size()>maximumCandidates) candidates = new ArrayList<Integer>(candidates.subList(0, maximumCandidates));
+			Collections.sort(candidates);
+
+			int n = candidates.size();
+			for (int a = 0; a < n; a++)
+				for (int b = a+1; b < n; b++) {
+					if(setSize==2) evaluate(new int[] {candidates.get(a), candidates.get(b)}, t, routes, routeValueMap, preliminaryCutSet);
+					else for (int c = b+1; c < n; c++) evaluate(new int[] {candidates.get(a), candidates.get(b), candidates.get(c)}, t, routes, routeValueMap, preliminaryCutSet);
+				}
+		}
+
+		//Keep the most violated cuts
+		this.cutSets = new ArrayList<PreliminaryCut>(maximumNumberCuts);
+		Collections.sort(preliminaryCutSet, (cut1, cut2) -> Double.compare(cut2.violation, cut1.violation));
+		for (int k = 0; k < preliminaryCutSet.size() && k < maximumNumberCuts; k++) cutSets.add(preliminaryCutSet.get(k));
+		chargingViolation = !cutSets.isEmpty();
+	}
+
+	/** Evaluates the cut on a set of customers and a period. */
+	private void evaluate(int[] cutSet, int period, List<Route> routes, Map<Route, Double> routeValueMap, List<PreliminaryCut> preliminaryCutSet) {
+		double lhs = 0;
+		for(Route route: routes) {
+			int state = charges(route, period) ? 1 : 0;
+			for(int i: cutSet) state+=route.route.getOrDefault(i, 0);
+			lhs+=(state/2)*routeValueMap.get(route);
+		}
+		int rightHandSide = (cutSet.length+dataModel.B)/2;
+		if(lhs>rightHandSide+PRECISION) preliminaryCutSet.add(new PreliminaryCut(cutSet, period, lhs-rightHandSide));
+	}
+
+	/** Returns true if the route charges during the period. */
+	private boolean charges(Route route, int period) {
+		return route.initialChargingTime<=period && period<=route.initialChargingTime+route.chargingTime-1;
+	}
+
+	/** Returns whether a violation exists in the fractional solution. */
+	public boolean chargingViolation(){
+		return chargingViolation;
+	}
+
+	/** Returns the sets of customers and periods for which a cut has been separated */
+	public ArrayList<PreliminaryCut> getCutSets(){
+		return cutSets;
+	}
+
+	/** Class that represent a preliminary cut that could be added */
+	public class PreliminaryCut{
+		public int[] cutSet; 					//customers in the cut
+		public int chargingPeriod; 				//period of the chargers capacity constraint
+		public double violation; 				//current violation of the cut
+
+		public PreliminaryCut(int[] cutSet, int chargingPeriod, double violation) {
+			this.cutSet = cutSet;
+			this.chargingPeriod = chargingPeriod;
+			this.violation = violation;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package columnGeneration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+/**
+ * Turns an integer solution of the set-covering master problem into a partition.
+ * Over-covered customers are removed from all but one route by shortcutting them (p,i),(i,s) -> (p,s).
+ * Only shortcuts that do not increase the cost are considered (triangle inequality on the min-cost arcs),
+ * and every shortened route is re-validated (load, time windows, energy, and charging interval).
+ */
+public final class CoveringSolutionRepair {
+
+	private final EVRPTW dataModel;			//data model
+
+	public CoveringSolutionRepair(EVRPTW dataModel) {
+		this.dataModel = dataModel;
+	}
+
+	/** Returns true if some customer is visited more than once in the (integer) solution. */
+	public boolean isOverCovered(List<Route> solution) {
+		int[] visits = getVisits(solution);
+		for (int i = 1; i <= dataModel.C; i++)
+			if(visits[i]>1) return true;
+		return false;
+	}
+
+	/**
+	 * Repairs an integer solution of the set-covering master problem.
+	 * @param solution routes with (integer) positive values.
+	 * @return a partition whose cost is not greater than the cost of the given solution, or null if it cannot be repaired.
+	 */
+	public List<Route> repair(List<Route> solution) {
+
+		//A copy of each route for each unit of its value
+		List<Route> routes = new ArrayList<Route>();
+		for(Route route: solution) {
+			if(route.isArtificialColumn) return null;
+			for (int k = 0; k < (int) Math.round(route.value); k++) {
+				Route newRoute = route.clone();
+				newRoute.value = 1;
+				routes.add(newRoute);
+			}
+		}
+
+		int[] visits = getVisits(routes);
+		for (int i = 1; i <= dataModel.C; i++) {
+			//remove the customer from the routes where it saves more
+			while(visits[i]>1) {
+				Route bestRoute = null; Route bestShortenedRoute = null; int bestSaving = -1;
+				for(Route route: routes) {
+					if(!route.route.containsKey(i)) continue;
+					Route shortenedRoute = removeCustomer(route, i);
+					if(shortenedRoute == null) continue;
+					int saving = route.cost - shortenedRoute.cost;
+					if(saving>bestSaving) {bestRoute = route; bestShortenedRoute = shortenedRoute; bestSaving = saving;}
+				}
+				if(bestRoute == null) return null;
+				routes.remove(bestRoute);
+				if(!bestShortenedRoute.route.isEmpty()) routes.add(bestShortenedRoute);
+				visits[i]--;
+			}
+		}
+		return routes;
+	}
+
+	/** Returns the number of visits to each customer. */
+	private int[] getVisits(List<Route> solution) {
+		int[] visits = new int[dataModel.C+1];
+		for(Route route: solution)
+			for(int i: route.route.keySet())
+				visits[i]+= route.route.get(i)*(int) Math.round(route.value);
+		return visits;
+	}
+
+	/**
+	 * Removes (one visit to) a customer from a route.
+	 * @return the shortened route (with no customers if the route only visited the customer), or null if there is no feasible shortcut.
+	 */
+	private Route removeCustomer(Route route, int customer) {
+		for (int k = 0; k < route.arcs.size()-1; k++) {
+			Arc incoming = dataModel.arcs[route.arcs.get(k)];
+			if(incoming.head != customer) continue;
+			Arc outgoing = dataModel.arcs[route.arcs.get(k+1)];
+			if(incoming.tail == 0 && outgoing.head == dataModel.C+1) //empty route
+				return new Route(route.creator, false, new HashMap<Integer, Integer>(), new int[0], route.associatedPricingProblem, 0, 0, 0, 0, 0.0, new ArrayList<Integer>(), 0, 0);
+
+			//Try the parallel arcs (p,s) that do not increase the cost
+			Route bestRoute = null;
+			for(Arc shortcut: dataModel.graph.getAllEdges(incoming.tail, outgoing.head)) {
+				if(shortcut.cost>incoming.cost+outgoing.cost) continue;
+				ArrayList<Integer> arcs = new ArrayList<Integer>(route.arcs);
+				arcs.remove(k+1);
+				arcs.set(k, shortcut.id);
+				Route newRoute = evaluate(route, arcs);
+				if(newRoute != null && (bestRoute == null || newRoute.cost<bestRoute.cost)) bestRoute = newRoute;
+			}
+			if(bestRoute != null) return bestRoute;
+		}
+		return null;
+	}
+
+	/**
+	 * Evaluates a sequence of arcs (backward, as in the labeling algorithms) keeping the charging interval of the original route.
+	 * The new charging interval starts at the same period and must not be longer than the original one (chargers capacity is preserved).
+	 * @return the new route or null if it is infeasible.
+	 */
+	private Route evaluate(Route originalRoute, ArrayList<Integer> arcs) {
+		int remainingTime = dataModel.vertices[dataModel.C+1].closing_tw;
+		int remainingEnergy = dataModel.E;
+		int load = 0; int cost = 0;
+		HashMap<Integer, Integer> route = new HashMap<Integer, Integer>(dataModel.C);
+		for (int k = arcs.size()-1; k >= 0; k--) {
+			Arc arc = dataModel.arcs[arcs.get(k)];
+			int source = arc.tail;
+			remainingTime-=arc.time;
+			if(remainingTime>dataModel.vertices[source].closing_tw) remainingTime = dataModel.vertices[source].closing_tw;
+			if(remainingTime<dataModel.vertices[source].opening_tw) return null;
+			remainingEnergy-=arc.energy;
+			if(remainingEnergy<0) return null;
+			load+=dataModel.vertices[source].load;
+			cost+=arc.cost;
+			if(source>=1 && source<=dataModel.C) route.put(source, route.getOrDefault(source, 0)+1);
+		}
+		if(load>dataModel.Q) return null;
+
+		//Charging interval
+		int departureTime = (int) (remainingTime/10);
+		int energy = dataModel.E-remainingEnergy;
+		int chargingTime = dataModel.f_inverse[energy];
+		if(chargingTime>originalRoute.chargingTime) return null;
+		int endChargingTime = originalRoute.initialChargingTime+chargingTime-1;
+		if(endChargingTime>=departureTime || endChargingTime>dataModel.last_charging_period) return null;
+
+		//Gets the route sequence (of customers)
+		int[] routeSequence = new int[arcs.size()-1];
+		for (int k = 0; k < routeSequence.length; k++)
+			routeSequence[k] = dataModel.arcs[arcs.get(k)].head;
+
+		Route newRoute = new Route(originalRoute.creator, false, route, routeSequence, originalRoute.associatedPricingProblem, cost, departureTime, energy, load, 0.0, arcs, originalRoute.initialChargingTime, chargingTime);
+		newRoute.value = 1;
+		return newRoute;
+	}
+}
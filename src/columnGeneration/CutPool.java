@@ -0,0 +1,83 @@
+package columnGeneration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of the separated SRCs (shared by all the nodes of the tree, as the cuts are globally valid).
+ * It keeps the age of the cuts in the MP, i.e., the number of consecutive MP solutions where the cut has a zero dual and a positive slack,
+ * and the cuts removed from the MP, which are checked for violation before separating new cuts.
+ */
+public final class CutPool {
+
+	public static int maximumAge = 5; 					//MP solutions a cut can be inactive before it is removed from the MP
+	public static int maximumPoolSize = 5000; 			//maximum number of removed cuts kept in the pool (the oldest ones are discarded)
+	private final Map<SubsetRowInequality, Integer> ages; 				//age of the cuts in the MP
+	private final LinkedHashSet<SubsetRowInequality> removedCuts; 		//cuts removed from the MP (in order of removal)
+
+	public CutPool() {
+		this.ages = new HashMap<SubsetRowInequality, Integer>();
+		this.removedCuts = new LinkedHashSet<SubsetRowInequality>();
+	}
+
+	/** Registers a cut added to the MP (it becomes active). */
+	public void activate(SubsetRowInequality cut) {
+		ages.put(cut, 0);
+		removedCuts.remove(cut);
+	}
+
+	/** Updates the age of a cut in the MP after solving it. */
+	public void update(SubsetRowInequality cut, boolean active) {
+		ages.put(cut, active ? 0 : ages.getOrDefault(cut, 0)+1);
+	}
+
+	/** Returns true if the cut has been inactive for too long. */
+	public boolean isAged(SubsetRowInequality cut) {
+		return ages.getOrDefault(cut, 0)>=maximumAge;
+	}
+
+	/** Registers a cut removed from the MP. */
+	public void deactivate(SubsetRowInequality cut) {
+		ages.remove(cut);
+		removedCuts.add(cut);
+		if(removedCuts.size()>maximumPoolSize) {
+			Iterator<SubsetRowInequality> iterator = removedCuts.iterator();
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Checks the removed cuts for violation.
+	 * @param routeValueMap (fractional) solution of the MP.
+	 * @param precision minimum violation.
+	 * @return removed cuts violated by the solution.
+	 */
+	public List<SubsetRowInequality> getViolatedCuts(Map<Route, Double> routeValueMap, double precision) {
+		List<SubsetRowInequality> violatedCuts = new ArrayList<SubsetRowInequality>();
+		for(SubsetRowInequality cut: removedCuts) {
+			double lhs = 0;
+			for(Map.Entry<Route, Double> entry: routeValueMap.entrySet())
+				lhs+=cut.getCoefficient(entry.getKey())*entry.getValue();
+			if(lhs>cut.rightHandSide+precision) {
+				cut.violation = lhs-cut.rightHandSide;
+				violatedCuts.add(cut);
+			}
+		}
+		return violatedCuts;
+	}
+
+	/** Returns the cuts removed from the MP (in order of removal). */
+	public List<SubsetRowInequality> getRemovedCuts() {
+		return new ArrayList<SubsetRowInequality>(removedCuts);
+	}
+
+	/** Returns the number of cuts removed from the MP. */
+	public int getNumberOfRemovedCuts() {
+		return removedCuts.size();
+	}
+}
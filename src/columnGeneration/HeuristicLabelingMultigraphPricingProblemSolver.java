@@ -26,6 +26,10 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 	public PriorityQueue<Vertex> nodesToProcess; 				//labels that need be processed
 	public final int numCols = 400; 							//maximum number of routes (columns) allowed
 	public boolean[] infeasibleArcs; 							//arcs that cannot be used by branching
+	private long labelsCreated = 0; 				//labels created by the extensions in the current call (trace)
+	private long labelsExtended = 0; 				//labels extended (not dominated)
+	private long labelsDominated = 0; 				//labels discarded by dominance
+	private int ngRestarts = 0; 					//restarts after enlarging the ng-sets
 	public final int similarityThreshold = 5; 					//for the disjoint columns diversification strategy
 
 
@@ -35,7 +39,7 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 	public HeuristicLabelingMultigraphPricingProblemSolver(EVRPTW dataModel, PricingProblem pricingProblem) {
 		super(dataModel, pricingProblem);
 		this.name="HeuristicLabelingSolver"; //Set a name for the solver
-		this.infeasibleArcs = new boolean[dataModel.numArcs];
+		this.infeasibleArcs = (dataModel.infeasibleArcs != null) ? dataModel.infeasibleArcs : new boolean[dataModel.numArcs]; //shared by the solvers in the parallel tree search
 		this.nodesToProcess = new PriorityQueue<Vertex>(dataModel.numVertices, new SortVertices());
 	}
 
@@ -44,30 +48,35 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 	 */
 	public void runLabeling() {
 		//Initialization
-		Label initialLabel = new Label(dataModel.C+1, -1, 0, -pricingProblem.dualCost, dataModel.Q, vertices[dataModel.C+1].closing_tw, dataModel.E, 0, new boolean[dataModel.C], new boolean[dataModel.C], new boolean[pricingProblem.subsetRowCuts.size()], new HashSet<Integer>(pricingProblem.subsetRowCuts.size()));
+		Label initialLabel = new Label(dataModel.C+1, -1, 0, -pricingProblem.dualCost, dataModel.Q, vertices[dataModel.C+1].closing_tw, dataModel.E, 0, new boolean[dataModel.C], new boolean[dataModel.C], new int[pricingProblem.subsetRowCuts.size()], new HashSet<Integer>(pricingProblem.subsetRowCuts.size()));
 		this.nodesToProcess.add(vertices[dataModel.C+1]);
 		initialLabel.index = 0;
 		vertices[dataModel.C+1].unprocessedLabels.add(initialLabel);
 
 		//Labeling algorithm 
+		SolverEvents.LabelingEvent event = new SolverEvents.LabelingEvent(); 		//JFR event of the run
+		long created = labelsCreated, extended = labelsExtended, dominated = labelsDominated;
+		event.begin();
 		long startTime = System.currentTimeMillis();
 		while (!nodesToProcess.isEmpty() && vertices[dataModel.V].unprocessedLabels.size()<= numCols && System.currentTimeMillis()<timeLimit) {
 			ArrayList<Label> labelsToProcessNext = labelsToProcessNext();
 			for(Label currentLabel: labelsToProcessNext) {
 				boolean isDominated = checkDominance(currentLabel);
-				if(isDominated) continue;
-				else {currentLabel.index = vertices[currentLabel.vertex].processedLabels.size(); vertices[currentLabel.vertex].processedLabels.add(currentLabel);}
+				if(isDominated) {labelsDominated++; continue;}
+				else {labelsExtended++; currentLabel.index = vertices[currentLabel.vertex].processedLabels.size(); vertices[currentLabel.vertex].processedLabels.add(currentLabel);}
 				for(Arc a: dataModel.graph.incomingEdgesOf(currentLabel.vertex)) {
 					if(infeasibleArcs[a.id]) continue;
 					Label extendedLabel;
 					if(a.tail<=dataModel.C) extendedLabel = extendLabel(currentLabel, a);
 					else extendedLabel = extendLabelChargingTime(currentLabel, a);
 					if (extendedLabel!=null) { //verifies if the extension is feasible
+						labelsCreated++;
 						updateNodesToProcess(extendedLabel);
 					}
 				}
 			}
 		}
+		event.commit(getClass().getSimpleName(), labelsCreated-created, labelsExtended-extended, labelsDominated-dominated);
 		long totalTime = System.currentTimeMillis()-startTime;
 		dataModel.heuristicPricingTime+=totalTime;
 		logger.debug("Time solving (heuristically) the pricing problem (s): " + getTimeInSeconds(totalTime)); 
@@ -91,6 +100,7 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 					if(isDominated) break;
 				}
 				if(!isDominated) labelsToProcessNext.add(currentLabel);
+				else labelsDominated++;
 			}
 			if(currentVertex.unprocessedLabels.isEmpty() || (currentVertex.id<=dataModel.C && currentVertex.unprocessedLabels.peek().remainingLoad<currentLabel.remainingLoad)) break;
 		}
@@ -121,16 +131,23 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 
 		double reducedCost = currentLabel.reducedCost+arc.modifiedCost;
 
-		boolean[] eta = currentLabel.eta.clone();
+		int[] eta = currentLabel.eta.clone();
 		HashSet<Integer> srcIndices = new HashSet<Integer>(currentLabel.srcIndices);
+		if(source>=1 && source<=dataModel.C) { //limited memory: the state is lost when visiting a customer outside the memory
+			for(int srcIndex: currentLabel.srcIndices) {
+				if(!pricingProblem.subsetRowCuts.get(srcIndex).inMemory(source)) {eta[srcIndex] = 0; srcIndices.remove(srcIndex);}
+			}
+		}
 		for(int srcIndex: vertices[source].SRCIndices) {
-			if(currentLabel.eta[srcIndex]) {
-				eta[srcIndex] = false;
+			SubsetRowInequality src = pricingProblem.subsetRowCuts.get(srcIndex);
+			eta[srcIndex]+=src.getMultiplier(source);
+			if(eta[srcIndex]>=src.denominator) {
+				eta[srcIndex]-=src.denominator;
 				int dualIndex = dataModel.C+dataModel.last_charging_period+srcIndex;
 				reducedCost-=pricingProblem.dualCosts[dualIndex];
-				srcIndices.remove(srcIndex);
 			}
-			else {eta[srcIndex]=true; srcIndices.add(srcIndex);}
+			if(eta[srcIndex]>0) srcIndices.add(srcIndex);
+			else srcIndices.remove(srcIndex);
 		}
 		reducedCost = Math.floor(reducedCost*10000)/10000;
 
@@ -185,6 +202,21 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 		if(source == dataModel.V && (currentLabel.chargingTime>0 || currentLabel.reducedCost>-dataModel.precision)) return null;
 
 		double reducedCost = currentLabel.reducedCost+arc.modifiedCost;
+		int[] eta = currentLabel.eta;
+		HashSet<Integer> srcIndices = currentLabel.srcIndices;
+		if(!vertices[source].SRCIndices.isEmpty()) { //SRCs combined with the chargers capacity of the period
+			eta = eta.clone();
+			srcIndices = new HashSet<Integer>(srcIndices);
+			for(int srcIndex: vertices[source].SRCIndices) {
+				eta[srcIndex]+=1;
+				if(eta[srcIndex]>=pricingProblem.subsetRowCuts.get(srcIndex).denominator) {
+					eta[srcIndex]-=pricingProblem.subsetRowCuts.get(srcIndex).denominator;
+					reducedCost-=pricingProblem.dualCosts[dataModel.C+dataModel.last_charging_period+srcIndex];
+				}
+				if(eta[srcIndex]>0) srcIndices.add(srcIndex);
+				else srcIndices.remove(srcIndex);
+			}
+		}
 		reducedCost = Math.floor(reducedCost*10000)/10000;
 		int chargingTime = currentLabel.chargingTime;
 		if(source!=dataModel.V) {
@@ -192,7 +224,7 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 			if(chargingTime<0) return null;
 		}
 
-		Label extendedLabel = new Label(source, arc.id, currentLabel.index, reducedCost, currentLabel.remainingLoad, currentLabel.remainingTime, currentLabel.remainingEnergy, chargingTime , currentLabel.unreachable, currentLabel.ng_path, currentLabel.eta, currentLabel.srcIndices);
+		Label extendedLabel = new Label(source, arc.id, currentLabel.index, reducedCost, currentLabel.remainingLoad, currentLabel.remainingTime, currentLabel.remainingEnergy, chargingTime , currentLabel.unreachable, currentLabel.ng_path, eta, srcIndices);
 		return extendedLabel;
 	}
 
@@ -223,6 +255,9 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 	@Override
 	protected List<Route> generateNewColumns() {
 
+		long startTime = System.currentTimeMillis();
+		labelsCreated = 0; labelsExtended = 0; labelsDominated = 0; ngRestarts = 0;
+
 		//Solve the problem and check the solution
 		this.runLabeling(); 									//runs the labeling algorithm
 		List<Route> newRoutes=new ArrayList<>(this.numCols);  	//list of routes
@@ -265,7 +300,10 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 			}
 		}
 		close(); //restart
-		return disjointBlocks(newRoutes);
+		newRoutes = disjointBlocks(newRoutes);
+		if(dataModel.monitor != null) dataModel.monitor.pricingSolved(getClass().getSimpleName(), System.currentTimeMillis()-startTime, labelsCreated);
+		if(dataModel.trace != null) pricingProblem.pricingRecords.add(new SolverTrace.PricingRecord(getClass().getSimpleName(), System.currentTimeMillis()-startTime, newRoutes.size(), labelsCreated, labelsExtended, labelsDominated, ngRestarts));
+		return newRoutes;
 	}
 
 	/**
@@ -323,6 +361,7 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 			if(isDominated(existingLabel, newLabel)) labelsToDelete.add(existingLabel);
 		}
 
+		labelsDominated+=labelsToDelete.size();
 		currentVertex.unprocessedLabels.removeAll(labelsToDelete);
 		if(currentVertex.unprocessedLabels.isEmpty()) nodesToProcess.remove(currentVertex);
 
@@ -342,7 +381,8 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 
 		if(L1.vertex>dataModel.C) { //charging time vertices
 			if (L2.chargingTime>L1.chargingTime) return false;
-			if (L2.reducedCost-L1.reducedCost>dataModel.precision) return false;
+			double reducedCostL2 = chargingCutsPenalty(L1, L2, L1.vertex-dataModel.V-1); //the next periods are the previous ones
+			if (L2.reducedCost-reducedCostL2-L1.reducedCost>dataModel.precision) return false;
 			return true;
 
 		}else { 					//customer vertices
@@ -352,12 +392,14 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 			if (L2.remainingEnergy<L1.remainingEnergy) return false; //energy
 
 			//reducedCost
-			double reducedCostL2 = 0;
+			double reducedCostL2 = (L1.vertex>0) ? 0 : chargingCutsPenalty(L1, L2, L1.remainingTime/10-1); //depot: periods before the departure
 			if (L1.vertex>0) {
 				for(int i: L2.srcIndices) {
-					if(!L1.eta[i]) {
+					if(L2.eta[i]>L1.eta[i]) {
 						SubsetRowInequality src = pricingProblem.subsetRowCuts.get(i);
-						if(!L2.unreachable[src.cutSet[0]-1] || !L2.unreachable[src.cutSet[1]-1] || !L2.unreachable[src.cutSet[2]-1]) {
+						boolean reachable = src.chargingPeriod>0; //the charging period may still be visited
+						for(int customer: src.cutSet) if(!L2.unreachable[customer-1]) {reachable = true; break;}
+						if(reachable) {
 							int dualIndex = dataModel.C+dataModel.last_charging_period+i;
 							reducedCostL2+=pricingProblem.dualCosts[dualIndex];
 						}
@@ -370,6 +412,22 @@ public final class HeuristicLabelingMultigraphPricingProblemSolver extends Abstr
 		}
 	}
 
+	/**
+	 * Dual costs of the SRCs on the chargers capacity whose counter (eta) is larger in L2 than in L1 and whose period may still be visited.
+	 * Charging periods are visited backwards, so a label at the depot or at a charging vertex can only visit the periods up to lastPeriod.
+	 * @param L1, L2 labels
+	 * @param lastPeriod last charging period that may still be visited
+	 */
+	private double chargingCutsPenalty(Label L1, Label L2, int lastPeriod) {
+		double penalty = 0;
+		for(int i: L2.srcIndices) {
+			if(L2.eta[i]<=L1.eta[i]) continue;
+			int period = pricingProblem.subsetRowCuts.get(i).chargingPeriod;
+			if(period>0 && period<=lastPeriod) penalty+=pricingProblem.dualCosts[dataModel.C+dataModel.last_charging_period+i];
+		}
+		return penalty;
+	}
+
 	/**
 	 * Listen to branching decisions. The pricing problem is changed by the branching decisions.
 	 * @param bd BranchingDecision
@@ -20,11 +20,11 @@ public class Label{
 	public int chargingTime; 				//time required to charge
 	public boolean[] unreachable; 			//customers that are not reachable by resource limitations
 	public boolean[] ng_path; 				//customers that visit them would violate the ng-path cycling restrictions
-	public boolean[] eta; 					//number of times modulo 2 that the label has visited customers in S (a triplet in a SRC)
-	public HashSet<Integer> srcIndices; 	//SRC indices for which \eta = 1
+	public int[] eta; 						//state of the label in each SRC: sum of the multipliers (numerators) modulo the denominator
+	public HashSet<Integer> srcIndices; 	//SRC indices for which \eta > 0
 
 	/** Creates a new Label.*/
-	public Label(int vertex, int nextArc, int nextLabelIndex, double reducedCost, int remainingLoad, int remainingTime, int remainingEnergy, int chargingTime, boolean[] unreachable, boolean[] ng_path, boolean[] eta, HashSet<Integer> srcIndices) {
+	public Label(int vertex, int nextArc, int nextLabelIndex, double reducedCost, int remainingLoad, int remainingTime, int remainingEnergy, int chargingTime, boolean[] unreachable, boolean[] ng_path, int[] eta, HashSet<Integer> srcIndices) {
 		this.vertex = vertex;
 		this.nextArc = nextArc;
 		this.nextLabelIndex = nextLabelIndex;
@@ -1,6 +1,7 @@
 package columnGeneration;
 
 import ilog.concert.IloColumn;
+import ilog.concert.IloConstraint;
 import ilog.concert.IloException;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
@@ -10,6 +11,7 @@ import ilog.cplex.IloCplex;
 import model.EVRPTW;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -30,6 +32,7 @@ import branchAndPrice.BranchVehiclesDown;
 import branchAndPrice.BranchVehiclesUp;
 import branchAndPrice.ChargingTimeInequality;
 import branchAndPrice.FixArc;
+import branchAndPrice.FixRoute;
 import branchAndPrice.NumberVehiclesInequalities;
 import branchAndPrice.RemoveArc;
 
@@ -43,15 +46,23 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 
 	private IloObjective obj; 						//objective
 	private IloRange[] visitCustomerConstraints; 	//partitioning constraints
-	private IloRange[] chargersCapacityConstraints; //capacity constraints
+	private IloRange[] chargersCapacityConstraints; //capacity constraints (balance constraints in the difference formulation)
+	private IloNumVar[] chargersOccupancy; 			//occupancy of the chargers per period (difference formulation)
 	private IloRange roundedCapacityInequality; 	//(weak) rounded capacity inequality
 	private int minimumNumberOfVehicles; 			//for the weak rounded capacity inequality
 	private List<Route> solutionKeeper; 			//stores the solution found
+	private CutPool cutPool; 						//pool of SRCs shared by the nodes (created when the first model is built)
+	public static double farkasScale = 100; 		//largest absolute value of the (scaled) Farkas duals
 
 	public Master(EVRPTW modelData, PricingProblem pricingProblem, CutHandler<EVRPTW, VRPMasterData> cutHandler) {
 		super(modelData, pricingProblem, cutHandler, OptimizationSense.MINIMIZE);
 	}
 
+	/** Returns the pool of SRCs (null if the cuts are never removed from the MP). */
+	public CutPool getCutPool() {
+		return cutPool;
+	}
+
 	/** Builds the CPLEX problem (a linear program). */
 	@Override
 	protected VRPMasterData buildModel() {
@@ -63,18 +74,32 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 			cplex.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Primal); //Primal Simplex
 
 			obj= cplex.addMinimize();		//objective
-			//Partitioning constraints
+			//Partitioning (or covering) constraints
 			int totalLoad = 0;
 			visitCustomerConstraints=new IloRange[dataModel.C];
 			for(int i=0; i< dataModel.C; i++) {
-				visitCustomerConstraints[i] = cplex.addEq(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+				if(dataModel.setCoveringFormulation) visitCustomerConstraints[i] = cplex.addGe(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
+				else visitCustomerConstraints[i] = cplex.addEq(cplex.linearNumExpr(), 1, "visitCustomer_"+(i+1));
 				totalLoad+=dataModel.vertices[i].load;
 			}
 
 			//Chargers capacity constraints
 			chargersCapacityConstraints = new IloRange[dataModel.last_charging_period];
-			for (int t = 0; t < dataModel.last_charging_period; t++)
-				chargersCapacityConstraints[t] = cplex.addLe(cplex.linearNumExpr(), dataModel.B, "capacity_"+(t+1));
+			if(dataModel.differenceCapacityFormulation) {
+				//Balance constraints: o_t - o_{t-1} - (routes starting at t) + (routes ending at t-1) = 0, with o_t <= B
+				for (int t = 0; t < dataModel.last_charging_period; t++)
+					chargersCapacityConstraints[t] = cplex.addEq(cplex.linearNumExpr(), 0, "balance_"+(t+1));
+				chargersOccupancy = new IloNumVar[dataModel.last_charging_period];
+				for (int t = 0; t < dataModel.last_charging_period; t++) {
+					IloColumn occupancyColumn = cplex.column(chargersCapacityConstraints[t], 1);
+					if(t+1 < dataModel.last_charging_period) occupancyColumn = occupancyColumn.and(cplex.column(chargersCapacityConstraints[t+1], -1));
+					chargersOccupancy[t] = cplex.numVar(occupancyColumn, -Double.MAX_VALUE, dataModel.B, "occupancy_"+(t+1)); //lower bound implied by the routes
+					cplex.add(chargersOccupancy[t]);
+				}
+			}else {
+				for (int t = 0; t < dataModel.last_charging_period; t++)
+					chargersCapacityConstraints[t] = cplex.addLe(cplex.linearNumExpr(), dataModel.B, "capacity_"+(t+1));
+			}
 
 			//Rounded capacity constraint
 			this.minimumNumberOfVehicles =  (int) Math.ceil((double) totalLoad/dataModel.Q);
@@ -89,24 +114,36 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 		varMap.put(pricingProblems.get(0),new OrderedBiMap<>());
 
 		//New data object which will hold data from the Master Problem (including the optimization engine).
-		return new VRPMasterData(cplex, pricingProblems.get(0), varMap);
+		VRPMasterData masterData = new VRPMasterData(cplex, pricingProblems.get(0), varMap, dataModel.C);
+		if(dataModel.cutPoolManagement) {
+			if(cutPool == null) cutPool = new CutPool();
+			masterData.cutPool = cutPool;
+		}
+		return masterData;
 	}
 
 	/** Solves the MP problem (through CPLEX) and returns whether it was solved to optimality. */
 	@Override
 	protected boolean solveMasterProblem(long timeLimit) throws TimeLimitExceededException {
+		SolverEvents.MasterSolveEvent event = new SolverEvents.MasterSolveEvent(); //JFR event of the solution
+		event.begin();
 		try {
 			solutionKeeper = new ArrayList<Route>();
+			masterData.infeasible = false;
 			double timeRemaining=Math.max(1,(timeLimit-System.currentTimeMillis())/1000.0);
 			masterData.cplex.setParam(IloCplex.DoubleParam.TiLim, timeRemaining); 				//set time limit in seconds
+			if(masterData.cutPool != null) removeInactiveCuts();
 			//solve the model
 			if(!masterData.cplex.solve() || masterData.cplex.getStatus()!=IloCplex.Status.Optimal){
 				if(masterData.cplex.getCplexStatus()==IloCplex.CplexStatus.AbortTimeLim) 		//Aborted due to time limit
 					throw new TimeLimitExceededException();
+				else if(dataModel.farkasPricing && (masterData.cplex.getStatus()==IloCplex.Status.Infeasible || masterData.cplex.getStatus()==IloCplex.Status.InfeasibleOrUnbounded))
+					computeFarkasDuals(); 																//price with the Farkas certificate
 				else
 					throw new RuntimeException("Master problem solve failed! Status: "+ masterData.cplex.getStatus());
 			}else{
 				masterData.objectiveValue= masterData.cplex.getObjValue();
+				if(masterData.cutPool != null) updateCutAges();
 				//Print solution
 				List<Route> solution=getSolution();
 				logger.debug("Objective: "+ masterData.objectiveValue);
@@ -117,10 +154,36 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 			}
 		} catch (IloException e) {
 			e.printStackTrace();
+		} finally {
+			event.commit(masterData.getNrColumns(), masterData.subsetRowInequalities.size(), masterData.objectiveValue);
 		}
 		return true;
 	}
 
+	/** Removes from the MP the SRCs that have been inactive for {@link CutPool#maximumAge} solutions (they are kept in the pool). */
+	private void removeInactiveCuts() throws IloException {
+		List<SubsetRowInequality> agedCuts = new ArrayList<SubsetRowInequality>();
+		for(SubsetRowInequality subsetRowInequality: masterData.subsetRowInequalities.keySet())
+			if(masterData.cutPool.isAged(subsetRowInequality)) agedCuts.add(subsetRowInequality);
+		for(SubsetRowInequality subsetRowInequality: agedCuts) {
+			masterData.cplex.remove(masterData.subsetRowInequalities.get(subsetRowInequality));
+			masterData.unregisterCut(subsetRowInequality);
+			masterData.cutPool.deactivate(subsetRowInequality);
+		}
+		if(!agedCuts.isEmpty()) logger.debug("SRCs removed from the MP: " + agedCuts.size() + " (cuts in the pool: " + masterData.cutPool.getNumberOfRemovedCuts() + ")");
+	}
+
+	/** Updates the age of the SRCs in the MP: a cut is active if it has a non-zero dual or it is binding. */
+	private void updateCutAges() throws IloException {
+		if(masterData.subsetRowInequalities.isEmpty()) return;
+		SubsetRowInequality[] cuts = masterData.subsetRowInequalities.keySet().toArray(new SubsetRowInequality[0]);
+		IloRange[] constraints = masterData.subsetRowInequalities.values().toArray(new IloRange[0]);
+		double[] duals = masterData.cplex.getDuals(constraints);
+		double[] slacks = masterData.cplex.getSlacks(constraints);
+		for (int i = 0; i < cuts.length; i++)
+			masterData.cutPool.update(cuts[i], duals[i]<-dataModel.precision || slacks[i]<dataModel.precision);
+	}
+
 	/**
 	 * We store the dual information in the pricing problem object.
 	 * This method is invoked after the MP has been solved. 
@@ -130,18 +193,22 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 		try {
 
 			pricingProblem.branchesOnChargingTimes = masterData.branchingChargingTimes.keySet();
-			double[] dualsPartition= masterData.cplex.getDuals(visitCustomerConstraints);
-			double[] dualsCapacity = masterData.cplex.getDuals(chargersCapacityConstraints);
+			pricingProblem.farkasPricing = masterData.infeasible;
+			double[] dualsPartition= getDuals(visitCustomerConstraints);
+			if(dataModel.setCoveringFormulation) //covering duals are non-negative (up to numerical noise)
+				for (int i = 0; i < dualsPartition.length; i++) dualsPartition[i] = Math.max(0, dualsPartition[i]);
+			double[] dualsCapacity = getChargersCapacityDuals();
 			double[] dualsSRC = new double[masterData.subsetRowInequalities.size()];
 
 			ArrayList<SubsetRowInequality> SRCToConsider = new ArrayList<SubsetRowInequality>();
 			int s = 0;
 			for(SubsetRowInequality subsetRowInequality: masterData.subsetRowInequalities.keySet()) {
-				double dual = masterData.cplex.getDual(masterData.subsetRowInequalities.get(subsetRowInequality));
+				double dual = getDual(masterData.subsetRowInequalities.get(subsetRowInequality));
 				if(dual<0) {
 					SRCToConsider.add(subsetRowInequality);
 					dualsSRC[s] = dual;
 					for(int i: subsetRowInequality.cutSet) dataModel.vertices[i].SRCIndices.add(s);
+					if(subsetRowInequality.chargingPeriod>0) dataModel.vertices[dataModel.V+subsetRowInequality.chargingPeriod].SRCIndices.add(s);
 					s++;
 				}
 			}
@@ -158,18 +225,28 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 
 			pricingProblem.subsetRowCuts = SRCToConsider;
 
+			//Rounded capacity cuts (robust: their duals are collected on the arcs)
+			pricingProblem.capacityCuts = new ArrayList<CapacityInequality>();
+			List<Double> dualsCapacityCuts = new ArrayList<Double>();
+			for(Map.Entry<CapacityInequality, IloRange> entry: masterData.capacityInequalities.entrySet()) {
+				double dual = getDual(entry.getValue());
+				if(dual>0) {pricingProblem.capacityCuts.add(entry.getKey()); dualsCapacityCuts.add(dual);}
+			}
+			pricingProblem.capacityCutsDuals = new double[dualsCapacityCuts.size()];
+			for (int k = 0; k < dualsCapacityCuts.size(); k++) pricingProblem.capacityCutsDuals[k] = dualsCapacityCuts.get(k);
+
 			int i = 0;
 			for(IloRange branching: masterData.branchingChargingTimes.values()) {
-				duals[dualsPartition.length+dualsCapacity.length+s+i] = masterData.cplex.getDual(branching);
+				duals[dualsPartition.length+dualsCapacity.length+s+i] = getDual(branching);
 				i++;
 			}
 
 			double dualConstant = 0; //constant dual values (not depending on the arc)
-			dualConstant+=masterData.cplex.getDual(roundedCapacityInequality);
+			dualConstant+=getDual(roundedCapacityInequality);
 
 			// branching on vehicles duals
 			for(NumberVehiclesInequalities branching: masterData.branchingNumberOfVehicles.keySet())
-				dualConstant+=masterData.cplex.getDual(masterData.branchingNumberOfVehicles.get(branching));
+				dualConstant+=getDual(masterData.branchingNumberOfVehicles.get(branching));
 
 			pricingProblem.initPricingProblem(duals, dualConstant);
 
@@ -178,74 +255,217 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 		}
 	}
 
+	/**
+	 * Obtains a Farkas certificate of the infeasible MP (a dual ray). It is scaled and used as duals by the pricing problem:
+	 * a route with negative (Farkas) reduced cost, i.e., zero cost minus the ray, cuts off the certificate.
+	 */
+	private void computeFarkasDuals() throws IloException {
+		//The certificate requires a dual simplex solve without presolve
+		masterData.cplex.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Dual);
+		masterData.cplex.setParam(IloCplex.BooleanParam.PreInd, false);
+		masterData.cplex.solve();
+		IloConstraint[] constraints = new IloConstraint[masterData.cplex.getNrows()];
+		double[] ray = new double[constraints.length];
+		masterData.cplex.dualFarkas(constraints, ray);
+		masterData.cplex.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Primal);
+		masterData.cplex.setParam(IloCplex.BooleanParam.PreInd, true);
+
+		double maxValue = 0;
+		for (int i = 0; i < ray.length; i++) maxValue = Math.max(maxValue, Math.abs(ray[i]));
+		double scale = (maxValue>0) ? farkasScale/maxValue : 1;
+		masterData.farkasDuals = new HashMap<IloConstraint, Double>();
+		for (int i = 0; i < ray.length; i++) masterData.farkasDuals.put(constraints[i], ray[i]*scale);
+		masterData.infeasible = true;
+		masterData.objectiveValue = Double.MAX_VALUE;
+		logger.debug("Infeasible master problem: Farkas pricing");
+	}
+
+	/** Returns the duals of the given constraints (the Farkas duals if the MP is infeasible). */
+	private double[] getDuals(IloRange[] constraints) throws IloException {
+		if(!masterData.infeasible) return masterData.cplex.getDuals(constraints);
+		double[] duals = new double[constraints.length];
+		for (int i = 0; i < constraints.length; i++) duals[i] = getDual(constraints[i]);
+		return duals;
+	}
+
+	/** Returns the dual of the given constraint (the Farkas dual if the MP is infeasible). */
+	private double getDual(IloRange constraint) throws IloException {
+		if(!masterData.infeasible) return masterData.cplex.getDual(constraint);
+		return masterData.farkasDuals.getOrDefault(constraint, 0.0);
+	}
+
+	/**
+	 * Returns the duals of the chargers capacity constraints (one per period).
+	 * In the difference formulation, the duals of the balance constraints (nu) are mapped back to the
+	 * capacity duals: mu_t = nu_{t+1} - nu_t (with nu_{T+1} = 0). Thus, the pricing problem remains unchanged.
+	 */
+	private double[] getChargersCapacityDuals() throws IloException {
+		double[] dualsCapacity = getDuals(chargersCapacityConstraints);
+		if(!dataModel.differenceCapacityFormulation) return dualsCapacity;
+		double[] dualsBalance = dualsCapacity;
+		dualsCapacity = new double[dualsBalance.length];
+		for (int t = 0; t < dualsBalance.length; t++)
+			dualsCapacity[t] = ((t+1 < dualsBalance.length) ? dualsBalance[t+1] : 0) - dualsBalance[t];
+		return dualsCapacity;
+	}
+
 	/**
 	 * Function that adds a new column to the CPLEX problem.
 	 * This method is invoked when a Pricing Problem generated a new column.
 	 */
 	@Override
 	public void addColumn(Route column) {
+		if(dataModel.farkasPricing && column.isArtificialColumn) return; //infeasible masters are handled by Farkas pricing
+		if(dataModel.decomposedChargingFormulation && !column.isArtificialColumn) {
+			addDecomposedColumn(column);
+			return;
+		}
 		try {
 
 			// register column with objective
 			IloColumn iloColumn= masterData.cplex.column(obj,column.cost);
 
-			// register column with partitioning constraint
-			for(int i: column.route.keySet())
-				iloColumn=iloColumn.and(masterData.cplex.column(visitCustomerConstraints[i-1], column.route.get(i)));
+			// register column with the routing and charging constraints
+			iloColumn = registerRouting(iloColumn, column);
+			iloColumn = registerCharging(iloColumn, column);
 
-			// register column with chargers capacity constraints
-			for (int t = column.initialChargingTime; t <= (column.initialChargingTime+ column.chargingTime-1); t++)
-				iloColumn=iloColumn.and(masterData.cplex.column(chargersCapacityConstraints[t-1], 1));
+			// create the variable and store it
+			IloNumVar var= masterData.cplex.numVar(iloColumn, masterData.fixedRoutes.contains(column) ? 1 : 0, Double.MAX_VALUE, "x_"+masterData.getNrColumns());
+			masterData.cplex.add(var);
+			masterData.addColumn(column, var);
+			if(!column.isArtificialColumn) masterData.registerColumn(column);
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+	}
 
-			// register (artificial) column with rounded capacity inequality and branching decisions (vehicles)
-			if(column.isArtificialColumn) {
-				iloColumn=iloColumn.and(masterData.cplex.column(roundedCapacityInequality, this.minimumNumberOfVehicles));
-				for (NumberVehiclesInequalities branch: masterData.branchingNumberOfVehicles.keySet()) {
-					IloRange branchConstraint = masterData.branchingNumberOfVehicles.get(branch);
-					if(!branch.lessThanOrEqual) iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint,branch.coefficient));
-				}
+	/**
+	 * Adds a column in the decomposed formulation: a routing variable x_r (with the routing constraints) and
+	 * one charging-assignment variable y_{r,a} per feasible initial charging time a (with the charging constraints; only one if the route does not charge),
+	 * linked through x_r - sum_a y_{r,a} = 0. The assignment variables are the columns stored in the master data.
+	 */
+	private void addDecomposedColumn(Route column) {
+		if(masterData.routingVariables.containsKey(column.arcs)) { //the charging alternatives of this route are already in the MP
+			logger.debug("Routing variable already exists: " + column);
+			return;
+		}
+		try {
+			// linking constraint
+			IloRange linkingConstraint = masterData.cplex.addEq(masterData.cplex.linearNumExpr(), 0, "linking_"+masterData.routingVariables.size());
+
+			// routing variable
+			IloColumn iloColumn= masterData.cplex.column(obj,column.cost);
+			iloColumn = registerRouting(iloColumn, column);
+			iloColumn = iloColumn.and(masterData.cplex.column(linkingConstraint, 1));
+			IloNumVar routingVar= masterData.cplex.numVar(iloColumn, isFixed(column) ? 1 : 0, Double.MAX_VALUE, "r_"+masterData.routingVariables.size());
+			masterData.cplex.add(routingVar);
+			masterData.routingVariables.put(column.arcs, routingVar);
+			masterData.registerColumn(column);
+
+			// charging-assignment variables (the charging interval must end before the departure and within the charging horizon)
+			// a route without charging has a single assignment (its alternatives would be identical columns)
+			int earliestInitialChargingTime = (column.chargingTime == 0) ? column.initialChargingTime : 1;
+			int latestInitialChargingTime = (column.chargingTime == 0) ? column.initialChargingTime : Math.min(column.departureTime, dataModel.last_charging_period+1)-column.chargingTime;
+			for (int a = earliestInitialChargingTime; a <= latestInitialChargingTime; a++) {
+				Route assignment = column.clone();
+				assignment.initialChargingTime = a;
+				assignment.BBnode = column.BBnode;
+				IloColumn assignmentColumn = masterData.cplex.column(obj, 0);
+				assignmentColumn = registerCharging(assignmentColumn, assignment);
+				assignmentColumn = assignmentColumn.and(masterData.cplex.column(linkingConstraint, -1));
+				IloNumVar var= masterData.cplex.numVar(assignmentColumn, 0, Double.MAX_VALUE, "x_"+masterData.getNrColumns());
+				masterData.cplex.add(var);
+				masterData.addColumn(assignment, var);
 			}
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+	}
 
-			if(!column.isArtificialColumn) {
+	/**
+	 * Returns true if the routing of the column has been fixed (diving heuristic).
+	 */
+	private boolean isFixed(Route column) {
+		for(Route route: masterData.fixedRoutes) if(route.arcs.equals(column.arcs)) return true;
+		return false;
+	}
 
-				// register column with rounded capacity inequality
-				iloColumn=iloColumn.and(masterData.cplex.column(roundedCapacityInequality, 1));
+	/**
+	 * Registers a column with the routing constraints: partitioning, rounded capacity, SRCs and branching on the number of vehicles.
+	 */
+	private IloColumn registerRouting(IloColumn iloColumn, Route column) throws IloException {
+
+		// register column with partitioning constraint
+		for(int i: column.route.keySet())
+			iloColumn=iloColumn.and(masterData.cplex.column(visitCustomerConstraints[i-1], column.route.get(i)));
+
+		// register (artificial) column with rounded capacity inequality and branching decisions (vehicles)
+		if(column.isArtificialColumn) {
+			iloColumn=iloColumn.and(masterData.cplex.column(roundedCapacityInequality, this.minimumNumberOfVehicles));
+			for(Map.Entry<CapacityInequality, IloRange> entry: masterData.capacityInequalities.entrySet())
+				iloColumn=iloColumn.and(masterData.cplex.column(entry.getValue(), entry.getKey().rightHandSide));
+			for (NumberVehiclesInequalities branch: masterData.branchingNumberOfVehicles.keySet()) {
+				IloRange branchConstraint = masterData.branchingNumberOfVehicles.get(branch);
+				if(!branch.lessThanOrEqual) iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint,branch.coefficient));
+			}
+		}
 
+		if(!column.isArtificialColumn) {
 
-				// register the column with Subset Row Inequalities Constraints
-				for(SubsetRowInequality subsetRowInequality: masterData.subsetRowInequalities.keySet()) {
-					// check the number of visits to the customers in the triplet
-					int coeff = getCoefficient(column, subsetRowInequality);
-					if(coeff>0){
-						IloRange subsetRowInequalityConstraint=masterData.subsetRowInequalities.get(subsetRowInequality);
-						iloColumn = iloColumn.and(masterData.cplex.column(subsetRowInequalityConstraint, coeff));
-					}
-				}
+			// register column with rounded capacity inequality
+			iloColumn=iloColumn.and(masterData.cplex.column(roundedCapacityInequality, 1));
 
-				// register the column with the branching decision (number of vehicles)
-				for (NumberVehiclesInequalities branch: masterData.branchingNumberOfVehicles.keySet()) {
-					IloRange branchConstraint = masterData.branchingNumberOfVehicles.get(branch);
-					iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint,1));
-				}
+			// register the column with the rounded capacity cuts (number of times it enters the customer set)
+			for(Map.Entry<CapacityInequality, IloRange> entry: masterData.capacityInequalities.entrySet()) {
+				int coefficient = entry.getKey().getCoefficient(column, dataModel.arcs);
+				if(coefficient>0) iloColumn = iloColumn.and(masterData.cplex.column(entry.getValue(), coefficient));
+			}
 
-				// register the column with branching decision (charging time)
-				for (ChargingTimeInequality branch: masterData.branchingChargingTimes.keySet()) {
-					IloRange branchConstraint = masterData.branchingChargingTimes.get(branch);
-					if(branch.startCharging && column.initialChargingTime==branch.timestep) {
-						iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint, 1));
-					}else if(!branch.startCharging && (column.initialChargingTime+column.chargingTime-1)==branch.timestep) {
-						iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint, 1));
-					}
-				}
+			// register the column with Subset Row Inequalities Constraints (only the cuts sharing customers with the column)
+			for(Map.Entry<SubsetRowInequality, Integer> entry: masterData.getCoefficients(column).entrySet()) {
+				IloRange subsetRowInequalityConstraint=masterData.subsetRowInequalities.get(entry.getKey());
+				iloColumn = iloColumn.and(masterData.cplex.column(subsetRowInequalityConstraint, entry.getValue()));
 			}
 
-			// create the variable and store it
-			IloNumVar var= masterData.cplex.numVar(iloColumn, 0, Double.MAX_VALUE, "x_"+masterData.getNrColumns());
-			masterData.cplex.add(var);
-			masterData.addColumn(column, var);
-		} catch (IloException e) {
-			e.printStackTrace();
+			// register the column with the branching decision (number of vehicles)
+			for (NumberVehiclesInequalities branch: masterData.branchingNumberOfVehicles.keySet()) {
+				IloRange branchConstraint = masterData.branchingNumberOfVehicles.get(branch);
+				iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint,1));
+			}
 		}
+		return iloColumn;
+	}
+
+	/**
+	 * Registers a column with the charging constraints: chargers capacity and branching on charging times.
+	 */
+	private IloColumn registerCharging(IloColumn iloColumn, Route column) throws IloException {
+
+		// register column with chargers capacity constraints
+		if(dataModel.differenceCapacityFormulation) {
+			// start event at the initial charging time and end event right after the last charging period
+			int endChargingTime = column.initialChargingTime+ column.chargingTime-1;
+			if(column.chargingTime>0) {
+				iloColumn=iloColumn.and(masterData.cplex.column(chargersCapacityConstraints[column.initialChargingTime-1], -1));
+				if(endChargingTime < dataModel.last_charging_period) iloColumn=iloColumn.and(masterData.cplex.column(chargersCapacityConstraints[endChargingTime], 1));
+			}
+		}else {
+			for (int t = column.initialChargingTime; t <= (column.initialChargingTime+ column.chargingTime-1); t++)
+				iloColumn=iloColumn.and(masterData.cplex.column(chargersCapacityConstraints[t-1], 1));
+		}
+
+		if(!column.isArtificialColumn) {
+			// register the column with branching decision (charging time)
+			for (ChargingTimeInequality branch: masterData.branchingChargingTimes.keySet()) {
+				IloRange branchConstraint = masterData.branchingChargingTimes.get(branch);
+				if(branch.startCharging && column.initialChargingTime==branch.timestep) {
+					iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint, 1));
+				}else if(!branch.startCharging && (column.initialChargingTime+column.chargingTime-1)==branch.timestep) {
+					iloColumn = iloColumn.and(masterData.cplex.column(branchConstraint, 1));
+				}
+			}
+		}
+		return iloColumn;
 	}
 
 
@@ -260,40 +480,60 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 		// create the inequality in CPLEX
 		try {
 			IloLinearNumExpr expr=masterData.cplex.linearNumExpr();
-			// register the columns with this constraint.
-			for(Route route: masterData.getColumnsForPricingProblemAsList(masterData.pricingProblem)){
-				if(route.isArtificialColumn) continue;
-				// check the number of visits to the customers in the triplet
-				int coeff = getCoefficient(route, subsetRowInequality);
-				if(coeff>0){
-					IloNumVar var=masterData.getVar(masterData.pricingProblem,route);
-					expr.addTerm(coeff, var);
-				}
+			// register the columns with this constraint (only the columns visiting customers in the triplet)
+			for(Map.Entry<Route, Integer> entry: masterData.getCoefficients(subsetRowInequality).entrySet()){
+				IloNumVar var=masterData.getRoutingVariable(entry.getKey());
+				expr.addTerm(entry.getValue(), var);
+			}
+			IloRange subsetRowConstraint = masterData.cplex.addLe(expr, subsetRowInequality.rightHandSide, "subsetRow_"+Arrays.toString(subsetRowInequality.cutSet));
+			masterData.registerCut(subsetRowInequality, subsetRowConstraint);
+
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** If a violated rounded capacity inequality has been found add it to the MP. */
+	private void addCut(CapacityInequality capacityInequality){
+
+		if(masterData.capacityInequalities.containsKey(capacityInequality))
+			throw new RuntimeException("Error, duplicate capacity cut is being generated! This cut should already exist in the master problem: "+capacityInequality);
+		// create the inequality in CPLEX
+		try {
+			IloLinearNumExpr expr=masterData.cplex.linearNumExpr();
+			// register the columns with this constraint (only the columns entering the customer set)
+			for(Map.Entry<Route, Integer> entry: masterData.getCoefficients(capacityInequality, dataModel.arcs).entrySet()){
+				IloNumVar var=masterData.getRoutingVariable(entry.getKey());
+				expr.addTerm(entry.getValue(), var);
 			}
-			IloRange subsetRowConstraint = masterData.cplex.addLe(expr, 1, "subsetRow_"+Arrays.toString(subsetRowInequality.cutSet));
-			masterData.subsetRowInequalities.put(subsetRowInequality, subsetRowConstraint);
+			IloRange capacityConstraint = masterData.cplex.addGe(expr, capacityInequality.rightHandSide, "capacityCut_"+Arrays.toString(capacityInequality.customerSet));
+			masterData.capacityInequalities.put(capacityInequality, capacityConstraint);
 
 		} catch (IloException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/** Adds an inequality separated in an ancestor node to the MP. */
+	private void addInequality(AbstractInequality inequality){
+		if(inequality instanceof CapacityInequality) addCut((CapacityInequality) inequality);
+		else addCut((SubsetRowInequality) inequality);
+	}
+
 	/**
 	 * Computes the coefficient of a route in SRC.
 	 * @param route for which the coefficient is calculated.
 	 * @param subsetRowInequality considered.
 	 */
 	public int getCoefficient(Route route, SubsetRowInequality subsetRowInequality) {
-		int visits = 0;
-		for(int i: subsetRowInequality.cutSet)
-			visits+=route.route.getOrDefault(i, 0);
-		return (int) Math.floor(0.5*visits);
+		return subsetRowInequality.getCoefficient(route);
 	}
 
 	/** Returns the solution, i.e columns with non-zero values in the CPLEX problem. */
 	@Override
 	public List<Route> getSolution() {
 		List<Route> solution=new ArrayList<>();
+		if(masterData.infeasible) return solution; //no primal solution
 		if(!solutionKeeper.isEmpty()) return solutionKeeper;
 		try {
 			Route[] routes=masterData.getVarMap().getKeysAsArray(new Route[masterData.getNrColumns()]);
@@ -345,6 +585,16 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 			System.out.println(r);
 	}
 
+	/** Returns the number of columns in the master problem. */
+	public int getNumberOfColumns() {
+		return masterData.getNrColumns();
+	}
+
+	/** Returns the number of SRCs in the master problem. */
+	public int getNumberOfSubsetRowCuts() {
+		return masterData.subsetRowInequalities.size();
+	}
+
 	/**
 	 * Checks whether there are any violated SR inequalities, thereby invoking the cut handler.
 	 * @return true if violated inequalities have been found (and added to the master problem).
@@ -360,6 +610,15 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 		}
 		if(isInteger) return false;
 
+		//Re-activate the violated cuts of the pool before separating new ones
+		if(masterData.cutPool != null) {
+			List<SubsetRowInequality> violatedCuts = masterData.cutPool.getViolatedCuts(masterData.routeValueMap, SubsetRowSeparator.PRECISION);
+			if(!violatedCuts.isEmpty()) {
+				logger.debug("SRCs re-added from the pool: " + violatedCuts.size());
+				for(SubsetRowInequality subsetRowInequality: violatedCuts) addCut(subsetRowInequality);
+				return true;
+			}
+		}
 		return super.hasNewCuts();
 	}
 
@@ -368,54 +627,78 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 	 */
 	@Override
 	public void branchingDecisionPerformed(BranchingDecision bd) {
+		branchingDecisionsPerformed(Collections.singletonList(bd));
+	}
+
+	/**
+	 * Performs several branching decisions (in order) with a single rebuild of the master problem, e.g., the path of a node of the parallel tree search.
+	 * @param bds branching decisions
+	 */
+	public void branchingDecisionsPerformed(List<? extends BranchingDecision> bds) {
 		// for simplicity, we simply destroy the master problem and rebuild it. Of course, something more sophisticated may be used which retains the master problem.
+		SolverEvents.BranchingRebuildEvent event = new SolverEvents.BranchingRebuildEvent(); //JFR event of the rebuild
+		event.begin();
 		Set<NumberVehiclesInequalities> vehiclesInequalities = masterData.branchingNumberOfVehicles.keySet(); 	//keep branching decisions
 		Set<ChargingTimeInequality> chargingInequalities = masterData.branchingChargingTimes.keySet(); 			//keep branching decisions
+		Set<Route> fixedRoutes = masterData.fixedRoutes; 														//keep fixed routes (diving heuristic)
 
 		this.close(); 																							//close the old CPLEX model
 		masterData=this.buildModel(); 																			//create a new model without any columns
 		cutHandler.setMasterData(masterData); 																	//inform the cutHandler about the new master model
 		for(NumberVehiclesInequalities inequality: vehiclesInequalities) addBranchingOnVehichlesInequality(inequality);
 		for(ChargingTimeInequality inequality: chargingInequalities) addChargingTimeInequality(inequality);
+		masterData.fixedRoutes.addAll(fixedRoutes);
 
+		for(BranchingDecision bd: bds) addBranchingDecision(bd);
+		event.commit(bds.isEmpty() ? "none" : bds.get(bds.size()-1).getClass().getSimpleName());
+	}
 
+	/**
+	 * Adds the constraints and the cuts of a branching decision to the master problem.
+	 */
+	private void addBranchingDecision(BranchingDecision bd) {
 		if (bd instanceof BranchVehiclesDown) {
 			BranchVehiclesDown branching = (BranchVehiclesDown) bd;
 			addBranchingOnVehichlesInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 		else if (bd instanceof BranchVehiclesUp) {
 			BranchVehiclesUp branching = (BranchVehiclesUp) bd;
 			addBranchingOnVehichlesInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 		else if(bd instanceof FixArc) {
 			FixArc fixArcDecision = (FixArc) bd;
-			for(AbstractInequality src: fixArcDecision.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: fixArcDecision.poolOfCuts) addInequality(src);
 		}
 		else if(bd instanceof RemoveArc) {
 			RemoveArc removeArcDecision= (RemoveArc) bd;
-			for(AbstractInequality src: removeArcDecision.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: removeArcDecision.poolOfCuts) addInequality(src);
+		}
+		else if(bd instanceof FixRoute) {
+			FixRoute fixRouteDecision = (FixRoute) bd;
+			masterData.fixedRoutes.add(fixRouteDecision.route);
+			for(AbstractInequality src: fixRouteDecision.poolOfCuts) addInequality(src);
 		}
 		else if (bd instanceof BranchInitialChargingTimeDown) {
 			BranchInitialChargingTimeDown branching = (BranchInitialChargingTimeDown) bd;
 			addChargingTimeInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 		else if (bd instanceof BranchInitialChargingTimeUp) {
 			BranchInitialChargingTimeUp branching = (BranchInitialChargingTimeUp) bd;
 			addChargingTimeInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 		else if (bd instanceof BranchEndChargingTimeDown) {
 			BranchEndChargingTimeDown branching = (BranchEndChargingTimeDown) bd;
 			addChargingTimeInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 		else if (bd instanceof BranchEndChargingTimeUp) {
 			BranchEndChargingTimeUp branching = (BranchEndChargingTimeUp) bd;
 			addChargingTimeInequality(branching.inequality);
-			for(AbstractInequality src: branching.poolOfCuts) addCut((SubsetRowInequality) src);
+			for(AbstractInequality src: branching.poolOfCuts) addInequality(src);
 		}
 	}
 
@@ -448,6 +731,10 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 			BranchEndChargingTimeUp branching = (BranchEndChargingTimeUp) bd;
 			masterData.branchingChargingTimes.remove(branching.inequality);
 		}
+		else if (bd instanceof FixRoute) {
+			FixRoute fixRouteDecision = (FixRoute) bd;
+			masterData.fixedRoutes.remove(fixRouteDecision.route);
+		}
 	}
 
 	/**
@@ -491,6 +778,9 @@ public final class Master extends AbstractMaster<EVRPTW, Route, PricingProblem,
 	public double getBoundComponent() {
 		if(pricingProblems.get(0).bestReducedCost==-Double.MAX_VALUE) { //do nothing
 			return 0;
+		}else if(masterData.infeasible) { //no bound from Farkas pricing
+			pricingProblems.get(0).bestReducedCost = -Double.MAX_VALUE;
+			return 0;
 		}else {
 			int maxK = dataModel.C;
 			for (NumberVehiclesInequalities branching: masterData.branchingNumberOfVehicles.keySet())
@@ -1,6 +1,7 @@
 package columnGeneration;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import org.jorlib.frameworks.columnGeneration.pricing.AbstractPricingProblem;
 import branchAndPrice.ChargingTimeInequality;
@@ -13,9 +14,13 @@ import model.EVRPTW;
 public final class PricingProblem extends AbstractPricingProblem<EVRPTW> {
 
 	public ArrayList<SubsetRowInequality> subsetRowCuts; 				//subset row cuts considered
+	public ArrayList<CapacityInequality> capacityCuts = new ArrayList<CapacityInequality>(); //rounded capacity cuts with a positive dual
+	public double[] capacityCutsDuals = new double[0]; 				//duals of the rounded capacity cuts considered
 	public Set<ChargingTimeInequality> branchesOnChargingTimes;			//branching on charging times
 	public double bestReducedCost = -Double.MAX_VALUE; 					//best reduced cost found by the exact labeling
 	public double reducedCostThreshold = 0; 							//minimum reduced cost when arriving at the depot source
+	public boolean farkasPricing = false; 								//the duals are a Farkas certificate (routes are priced with zero cost)
+	public final List<SolverTrace.PricingRecord> pricingRecords = new ArrayList<SolverTrace.PricingRecord>(); //calls to the pricing solvers in the current CG iteration (trace)
 
 	public PricingProblem(EVRPTW modelData, String name) {
 		super(modelData, name);
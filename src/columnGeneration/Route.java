@@ -74,6 +74,11 @@ public final class Route extends AbstractColumn<EVRPTW, PricingProblem> {
 
 	/** Clones the route. */
 	public Route clone() {
-		return new Route(this.creator, this.isArtificialColumn, (HashMap<Integer, Integer>) this.route.clone(), (int[]) this.routeSequence.clone(), this.associatedPricingProblem, this.cost, this.departureTime, this.energy, this.load, this.reducedCost, (ArrayList<Integer>) this.arcs.clone(), this.initialChargingTime, this.chargingTime);
+		return clone(this.associatedPricingProblem);
+	}
+
+	/** Clones the route and associates it with another pricing problem (e.g., of another worker of the parallel tree search). */
+	public Route clone(PricingProblem pricingProblem) {
+		return new Route(this.creator, this.isArtificialColumn, (HashMap<Integer, Integer>) this.route.clone(), (int[]) this.routeSequence.clone(), pricingProblem, this.cost, this.departureTime, this.energy, this.load, this.reducedCost, (ArrayList<Integer>) this.arcs.clone(), this.initialChargingTime, this.chargingTime);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package columnGeneration;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the solver phases (pricing, master problem, separation and branching), so they can be lined up with
+ * the allocation and GC profiles of a recording (e.g., java -XX:StartFlightRecording=filename=run.jfr ...).
+ * Each event is created and begun at the start of its phase and committed at its end; the fields are only set when the event is
+ * enabled ({@link Event#shouldCommit()}), so the overhead is negligible when the recorder is off.
+ */
+public final class SolverEvents {
+
+	private SolverEvents() {}
+
+	/** A call to runLabeling() of a pricing solver. */
+	@Name("evrptw.Labeling")
+	@Label("Labeling")
+	@Category({"EVRPTW", "Pricing"})
+	@Description("Run of the labeling algorithm of a pricing solver")
+	@StackTrace(false)
+	static final class LabelingEvent extends Event {
+		@Label("Solver")
+		String solver;
+		@Label("Labels Created")
+		long labelsCreated;
+		@Label("Labels Extended")
+		long labelsExtended;
+		@Label("Labels Pruned")
+		@Description("Labels discarded by dominance")
+		long labelsPruned;
+
+		void commit(String solver, long labelsCreated, long labelsExtended, long labelsPruned) {
+			if(!shouldCommit()) return;
+			this.solver = solver;
+			this.labelsCreated = labelsCreated;
+			this.labelsExtended = labelsExtended;
+			this.labelsPruned = labelsPruned;
+			commit();
+		}
+	}
+
+	/** A restart of the labeling after enlarging the ng-neighborhoods. */
+	@Name("evrptw.NgRestart")
+	@Label("ng-Restart")
+	@Category({"EVRPTW", "Pricing"})
+	@Description("Restart of the labeling after enlarging the ng-neighborhoods")
+	@StackTrace(false)
+	static final class NgRestartEvent extends Event {
+		@Label("Solver")
+		String solver;
+		@Label("Non-elementary Routes")
+		int nonElementaryRoutes;
+
+		void commit(String solver, int nonElementaryRoutes) {
+			if(!shouldCommit()) return;
+			this.solver = solver;
+			this.nonElementaryRoutes = nonElementaryRoutes;
+			commit();
+		}
+	}
+
+	/** A solution of the master problem (Master.solveMasterProblem). */
+	@Name("evrptw.MasterSolve")
+	@Label("Master Solve")
+	@Category({"EVRPTW", "Master"})
+	@Description("Solution of the restricted master problem")
+	@StackTrace(false)
+	static final class MasterSolveEvent extends Event {
+		@Label("Columns")
+		int columns;
+		@Label("Subset-row Cuts")
+		int subsetRowCuts;
+		@Label("Objective")
+		double objective;
+
+		void commit(int columns, int subsetRowCuts, double objective) {
+			if(!shouldCommit()) return;
+			this.columns = columns;
+			this.subsetRowCuts = subsetRowCuts;
+			this.objective = objective;
+			commit();
+		}
+	}
+
+	/** A separation of subset-row cuts (SubsetRowSeparator.separateRow). */
+	@Name("evrptw.Separation")
+	@Label("SRC Separation")
+	@Category({"EVRPTW", "Master"})
+	@Description("Separation of subset-row cuts by enumeration")
+	@StackTrace(false)
+	static final class SeparationEvent extends Event {
+		@Label("Fractional Routes")
+		int fractionalRoutes;
+		@Label("Violated Sets")
+		int violatedSets;
+		@Label("Cuts")
+		int cuts;
+
+		void commit(int fractionalRoutes, int violatedSets, int cuts) {
+			if(!shouldCommit()) return;
+			this.fractionalRoutes = fractionalRoutes;
+			this.violatedSets = violatedSets;
+			this.cuts = cuts;
+			commit();
+		}
+	}
+
+	/** A rebuild of the master problem for a branching decision (Master.branchingDecisionPerformed). */
+	@Name("evrptw.BranchingRebuild")
+	@Label("Branching Rebuild")
+	@Category({"EVRPTW", "Branching"})
+	@Description("Rebuild of the master problem after a branching decision")
+	@StackTrace(false)
+	static final class BranchingRebuildEvent extends Event {
+		@Label("Decision")
+		String decision;
+
+		void commit(String decision) {
+			if(!shouldCommit()) return;
+			this.decision = decision;
+			commit();
+		}
+	}
+}
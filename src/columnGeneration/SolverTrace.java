@@ -0,0 +1,139 @@
+package columnGeneration;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Structured trace of the solver (./results/trace/instanceName.jsonl): a JSON object per line for each column generation iteration
+ * and for each node of the tree. The pricing solvers keep plain counters of their labels (always on) and report them in the pricing problem
+ * of their worker ({@link PricingProblem#pricingRecords}); the CG writes them with the record of its iteration.
+ * The trace is shared by the workers of the parallel tree search (the records carry the node, not the worker).
+ */
+public final class SolverTrace {
+
+	private final PrintWriter out; 						//trace file
+	private final long startTime; 						//creation time (records are timestamped from it)
+
+	public SolverTrace(String instanceName) throws IOException {
+		File file = new File("./results/trace/"+instanceName+".jsonl");
+		file.getParentFile().mkdirs();
+		this.out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Statistics of a call to a pricing solver.
+	 */
+	public static final class PricingRecord {
+		final String solver; 							//solver (class name)
+		final long time; 								//running time (ms)
+		final int columns; 								//columns returned
+		final long labelsCreated; 						//labels created by the extensions
+		final long labelsExtended; 						//labels extended (not dominated)
+		final long labelsDominated; 					//labels discarded by dominance
+		final int ngRestarts; 							//restarts after enlarging the ng-sets
+
+		public PricingRecord(String solver, long time, int columns, long labelsCreated, long labelsExtended, long labelsDominated, int ngRestarts) {
+			this.solver = solver;
+			this.time = time;
+			this.columns = columns;
+			this.labelsCreated = labelsCreated;
+			this.labelsExtended = labelsExtended;
+			this.labelsDominated = labelsDominated;
+			this.ngRestarts = ngRestarts;
+		}
+	}
+
+	/**
+	 * Writes the record of a column generation iteration.
+	 * @param nodeID node of the tree (-1 if unknown)
+	 * @param depth depth of the node
+	 * @param truncated the CG is truncated (strong branching or diving)
+	 * @param iteration iteration of the CG
+	 * @param masterTime time solving the master problem and separating cuts (ms)
+	 * @param pricing calls to the pricing solvers (in order)
+	 * @param columns columns added to the master problem
+	 * @param subsetRowCuts SRCs separated (or re-added from the pool)
+	 * @param objective objective of the master problem
+	 * @param bound bound on the master problem objective
+	 */
+	public void iteration(int nodeID, int depth, boolean truncated, int iteration, long masterTime, List<PricingRecord> pricing, int columns, int subsetRowCuts, double objective, double bound) {
+		StringBuilder record = begin("iteration", nodeID, depth);
+		record.append(",\"truncated\":").append(truncated);
+		record.append(",\"iteration\":").append(iteration);
+		record.append(",\"masterTime\":").append(masterTime);
+		record.append(",\"pricing\":[");
+		for (int k = 0; k < pricing.size(); k++) {
+			PricingRecord solver = pricing.get(k);
+			record.append((k>0) ? "," : "").append("{\"solver\":\"").append(solver.solver).append('"');
+			record.append(",\"time\":").append(solver.time);
+			record.append(",\"columns\":").append(solver.columns);
+			record.append(",\"labelsCreated\":").append(solver.labelsCreated);
+			record.append(",\"labelsExtended\":").append(solver.labelsExtended);
+			record.append(",\"labelsDominated\":").append(solver.labelsDominated);
+			record.append(",\"ngRestarts\":").append(solver.ngRestarts).append('}');
+		}
+		record.append(']');
+		record.append(",\"columns\":").append(columns);
+		record.append(",\"subsetRowCuts\":").append(subsetRowCuts);
+		appendNumber(record.append(",\"objective\":"), objective);
+		appendNumber(record.append(",\"bound\":"), bound);
+		write(record.append('}'), false);
+	}
+
+	/**
+	 * Writes the record of a node (after its column generation).
+	 * @param nodeID node of the tree
+	 * @param depth depth of the node
+	 * @param iterations CG iterations
+	 * @param masterTime time solving the master problem (ms)
+	 * @param pricingTime time solving the pricing problem (ms)
+	 * @param columns columns generated
+	 * @param cuts cuts of the node
+	 * @param objective objective of the master problem
+	 * @param bound bound of the node
+	 */
+	public void node(int nodeID, int depth, int iterations, long masterTime, long pricingTime, int columns, int cuts, double objective, double bound) {
+		StringBuilder record = begin("node", nodeID, depth);
+		record.append(",\"iterations\":").append(iterations);
+		record.append(",\"masterTime\":").append(masterTime);
+		record.append(",\"pricingTime\":").append(pricingTime);
+		record.append(",\"columns\":").append(columns);
+		record.append(",\"cuts\":").append(cuts);
+		appendNumber(record.append(",\"objective\":"), objective);
+		appendNumber(record.append(",\"bound\":"), bound);
+		write(record.append('}'), true);
+	}
+
+	/** Closes the trace file. */
+	public synchronized void close() {
+		out.close();
+	}
+
+	/** Starts a record with its type, timestamp, thread and node. */
+	private StringBuilder begin(String type, int nodeID, int depth) {
+		StringBuilder record = new StringBuilder(256);
+		record.append("{\"type\":\"").append(type).append('"');
+		record.append(",\"time\":").append(System.currentTimeMillis()-startTime);
+		record.append(",\"thread\":\"").append(Thread.currentThread().getName()).append('"');
+		record.append(",\"node\":").append(nodeID);
+		record.append(",\"depth\":").append(depth);
+		return record;
+	}
+
+	/** Appends a number (null if it is not finite, which JSON does not support). */
+	private void appendNumber(StringBuilder record, double value) {
+		if(Double.isNaN(value) || Double.isInfinite(value)) record.append("null");
+		else record.append(value);
+	}
+
+	/** Writes a record (the node records are flushed, so the trace survives an interrupted run). */
+	private synchronized void write(StringBuilder record, boolean flush) {
+		out.println(record);
+		if(flush) out.flush();
+	}
+}
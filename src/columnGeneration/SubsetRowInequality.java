@@ -5,19 +5,96 @@ import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractInequ
 
 /**
  * This class represents a SubsetRowInequality (See Jepsen et al. 2008)
- * It considers customer sets of size three
+ * It considers customer sets of size three (multipliers 1/2), and rank-1 cuts on four and five customers
+ * with the optimal multipliers of Pecin et al. (2017) and limited (node) memory.
+ * A triplet or pair can also be combined with the chargers capacity constraint of a period (multiplier 1/2 on all the rows).
  */
 public final class SubsetRowInequality extends AbstractInequality {
 
-	public final int[] cutSet; 				//customer triplets
+	public final int[] cutSet; 				//customers in the cut
+	public final int[] multipliers; 		//numerators of the multipliers (aligned with the cutSet)
+	public final int denominator; 			//denominator of the multipliers
+	public final int rightHandSide; 		//floor of the sum of the multipliers (times the right-hand sides of the rows)
+	public final boolean[] memory; 			//customers in the memory of the cut (null if the memory is complete)
+	public final int chargingPeriod; 		//period whose chargers capacity constraint is in the cut (0 if none)
 	public double violation; 				//current violation of the cut
 
+	/** Creates a SRC on a customer triplet (multipliers 1/2). */
 	public SubsetRowInequality(AbstractCutGenerator maintainingGenerator, int[] cutSet, double violation) {
+		this(maintainingGenerator, cutSet, new int[] {1, 1, 1}, 2, null, violation);
+	}
+
+	/** Creates a rank-1 cut with the given multipliers (numerators/denominator) and memory. */
+	public SubsetRowInequality(AbstractCutGenerator maintainingGenerator, int[] cutSet, int[] multipliers, int denominator, boolean[] memory, double violation) {
+		this(maintainingGenerator, cutSet, multipliers, denominator, memory, 0, sum(multipliers)/denominator, violation);
+	}
+
+	/** Creates a SRC on a set of customers and the chargers capacity constraint of a period (multipliers 1/2, B chargers). */
+	public SubsetRowInequality(AbstractCutGenerator maintainingGenerator, int[] cutSet, int chargingPeriod, int chargers, double violation) {
+		this(maintainingGenerator, cutSet, ones(cutSet.length), 2, null, chargingPeriod, (cutSet.length+chargers)/2, violation);
+	}
+
+	private SubsetRowInequality(AbstractCutGenerator maintainingGenerator, int[] cutSet, int[] multipliers, int denominator, boolean[] memory, int chargingPeriod, int rightHandSide, double violation) {
 		super(maintainingGenerator);
 		this.cutSet=cutSet;
+		this.multipliers = multipliers;
+		this.denominator = denominator;
+		this.rightHandSide = rightHandSide;
+		this.memory = memory;
+		this.chargingPeriod = chargingPeriod;
 		this.violation = violation;
 	}
 
+	/** Returns the sum of the multipliers. */
+	private static int sum(int[] multipliers) {
+		int sum = 0;
+		for(int multiplier: multipliers) sum+=multiplier;
+		return sum;
+	}
+
+	/** Returns an array of ones. */
+	private static int[] ones(int length) {
+		int[] ones = new int[length];
+		Arrays.fill(ones, 1);
+		return ones;
+	}
+
+	/** Returns true if the route charges during the period of the cut. */
+	public boolean chargesInPeriod(Route route) {
+		return chargingPeriod>0 && route.initialChargingTime<=chargingPeriod && chargingPeriod<=route.initialChargingTime+route.chargingTime-1;
+	}
+
+	/** Returns the numerator of the multiplier of a customer (0 if the customer is not in the cut). */
+	public int getMultiplier(int customer) {
+		for (int k = 0; k < cutSet.length; k++)
+			if(cutSet[k]==customer) return multipliers[k];
+		return 0;
+	}
+
+	/** Returns true if the customer is in the memory of the cut. */
+	public boolean inMemory(int customer) {
+		return memory == null || memory[customer-1] || getMultiplier(customer)>0;
+	}
+
+	/**
+	 * Computes the coefficient of a route in the cut. The route sequence is traversed accumulating the multipliers;
+	 * each time the state reaches the denominator the coefficient increases, and the state is reset when a customer outside the memory is visited.
+	 * @param route for which the coefficient is calculated.
+	 */
+	public int getCoefficient(Route route) {
+		int state = chargesInPeriod(route) ? 1 : 0; //the charging period is combined with full memory
+		int coefficient = 0;
+		for(int customer: route.routeSequence) {
+			int multiplier = getMultiplier(customer);
+			if(multiplier>0) {
+				state+=multiplier;
+				if(state>=denominator) {coefficient++; state-=denominator;}
+			}
+			else if(!inMemory(customer)) state = 0;
+		}
+		return coefficient;
+	}
+
 	/** The equals and hashCode methods are important (for the jORlib)**/
 	@Override
 	public boolean equals(Object o) { //Important for jORlib
@@ -26,24 +103,26 @@ public final class SubsetRowInequality extends AbstractInequality {
 		else if(!(o instanceof SubsetRowInequality))
 			return false;
 		SubsetRowInequality other=(SubsetRowInequality)o;
-		return Arrays.equals(this.cutSet, other.cutSet);
+		return Arrays.equals(this.cutSet, other.cutSet) && Arrays.equals(this.multipliers, other.multipliers) && this.denominator == other.denominator && Arrays.equals(this.memory, other.memory) && this.chargingPeriod == other.chargingPeriod;
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(cutSet);
+		return 31*(31*Arrays.hashCode(cutSet)+Arrays.hashCode(multipliers))+chargingPeriod;
 	}
 
 	/** String representation of the SRC */
 	@Override
 	public String toString(){
-		return ""+Arrays.toString(this.cutSet)+", violation: " + Math.floor(10000*this.violation)/10000;
+		if(chargingPeriod>0) return ""+Arrays.toString(this.cutSet)+" + period "+this.chargingPeriod+", violation: " + Math.floor(10000*this.violation)/10000;
+		if(cutSet.length==3 && denominator==2) return ""+Arrays.toString(this.cutSet)+", violation: " + Math.floor(10000*this.violation)/10000;
+		return ""+Arrays.toString(this.cutSet)+" "+Arrays.toString(this.multipliers)+"/"+this.denominator+", violation: " + Math.floor(10000*this.violation)/10000;
 	}
 
 	/** Copy of the SRC */
 	@Override
 	public SubsetRowInequality clone() {
-		return new SubsetRowInequality(maintainingGenerator, this.cutSet.clone(), this.violation);
+		return new SubsetRowInequality(maintainingGenerator, this.cutSet.clone(), this.multipliers.clone(), this.denominator, (this.memory == null) ? null : this.memory.clone(), this.chargingPeriod, this.rightHandSide, this.violation);
 	}
 
-}
\ No newline at end of file
+}
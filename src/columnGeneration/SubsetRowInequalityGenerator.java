@@ -19,11 +19,13 @@ import columnGeneration.SubsetRowSeparator.PreliminaryCut;
 public final class SubsetRowInequalityGenerator extends AbstractCutGenerator<EVRPTW, VRPMasterData> {
 
 	private final SubsetRowSeparator separator;		//class to separate the cuts
+	private final ChargingCutSeparator chargingSeparator; //class to separate the SRCs combined with the chargers capacity
 
 	/** Creates a new SRCs generator. */
 	public SubsetRowInequalityGenerator(EVRPTW modelData) {
 		super(modelData, "SRC Generator");
 		separator=new SubsetRowSeparator(dataModel); //creates a SRC separator
+		chargingSeparator=new ChargingCutSeparator(dataModel);
 	}
 
 	/**
@@ -40,7 +42,7 @@ public final class SubsetRowInequalityGenerator extends AbstractCutGenerator<EVR
 		if(separator.SRCViolation()){
 			List<AbstractInequality> cuts = new ArrayList<>(separator.getCutSets().size());
 			for(PreliminaryCut preliminaryCut: separator.getCutSets()) {
-				SubsetRowInequality inequality=new SubsetRowInequality(this, preliminaryCut.cutSet, preliminaryCut.violation);
+				SubsetRowInequality inequality=new SubsetRowInequality(this, preliminaryCut.cutSet, preliminaryCut.multipliers, preliminaryCut.denominator, preliminaryCut.memory, preliminaryCut.violation);
 				try {
 					this.addCut(inequality);
 				} catch (IloException e) {
@@ -53,6 +55,27 @@ public final class SubsetRowInequalityGenerator extends AbstractCutGenerator<EVR
 			logger.debug("Time separating cuts (s): " + getTimeInSeconds(endTime-startTime));
 			return cuts;
 		}
+
+		//Check for violated SRCs on the chargers capacity (not in the decomposed formulation: the coefficients depend on the charging assignment)
+		if(dataModel.chargingCuts && !dataModel.decomposedChargingFormulation) {
+			chargingSeparator.separate(masterData.routeValueMap);
+			if(chargingSeparator.chargingViolation()) {
+				List<AbstractInequality> cuts = new ArrayList<>(chargingSeparator.getCutSets().size());
+				for(ChargingCutSeparator.PreliminaryCut preliminaryCut: chargingSeparator.getCutSets()) {
+					SubsetRowInequality inequality=new SubsetRowInequality(this, preliminaryCut.cutSet, preliminaryCut.chargingPeriod, dataModel.B, preliminaryCut.violation);
+					if(masterData.subsetRowInequalities.containsKey(inequality)) continue;
+					try {
+						this.addCut(inequality);
+					} catch (IloException e) {
+						e.printStackTrace();
+					}
+					cuts.add(inequality);
+				}
+				long endTime = System.currentTimeMillis();
+				logger.debug("Time separating charging cuts (s): " + getTimeInSeconds(endTime-startTime));
+				return cuts;
+			}
+		}
 		return Collections.emptyList();
 	}
 
@@ -69,18 +92,13 @@ public final class SubsetRowInequalityGenerator extends AbstractCutGenerator<EVR
 		try {
 			logger.debug("Adding SRC: " +  subsetRowInequality);
 			IloLinearNumExpr expr=masterData.cplex.linearNumExpr();
-			//Register the columns with this constraint.
-			for(Route route: masterData.getColumnsForPricingProblemAsList(masterData.pricingProblem)){
-				if(route.isArtificialColumn) continue;
-				//Check the number of visits to the customers in the triplet
-				int coeff = getCoefficient(route, subsetRowInequality);
-				if(coeff>0){
-					IloNumVar var=masterData.getVar(masterData.pricingProblem,route);
-					expr.addTerm(coeff, var);
-				}
+			//Register the columns with this constraint (only the columns visiting customers in the triplet).
+			for(Map.Entry<Route, Integer> entry: masterData.getCoefficients(subsetRowInequality).entrySet()){
+				IloNumVar var=masterData.getRoutingVariable(entry.getKey());
+				expr.addTerm(entry.getValue(), var);
 			}
-			IloRange subsetRowConstraint = masterData.cplex.addLe(expr, 1, "subsetRow_"+Arrays.toString(subsetRowInequality.cutSet));
-			masterData.subsetRowInequalities.put(subsetRowInequality, subsetRowConstraint);
+			IloRange subsetRowConstraint = masterData.cplex.addLe(expr, subsetRowInequality.rightHandSide, "subsetRow_"+Arrays.toString(subsetRowInequality.cutSet));
+			masterData.registerCut(subsetRowInequality, subsetRowConstraint);
 		} catch (IloException e) {
 			e.printStackTrace();
 		}
@@ -92,10 +110,7 @@ public final class SubsetRowInequalityGenerator extends AbstractCutGenerator<EVR
 	 * @param subsetRowInequality considered
 	 */
 	public int getCoefficient(Route route, SubsetRowInequality subsetRowInequality) {
-		int visits = 0;
-		for(int i: subsetRowInequality.cutSet)
-			visits+=route.route.getOrDefault(i, 0);
-		return (int) Math.floor(0.5*visits);
+		return subsetRowInequality.getCoefficient(route);
 	}
 
 
@@ -1,14 +1,19 @@
 package columnGeneration;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import model.EVRPTW;
 
 /**
- * This class separates subset-row inequalities by complete enumeration.
+ * This class separates subset-row inequalities by enumeration.
+ * Only triplets where a fractional route has a positive coefficient are evaluated, in parallel.
+ * Optionally, rank-1 cuts on four and five customers are enumerated among the closest neighbors of each customer.
  */
 public class SubsetRowSeparator{
 
@@ -16,6 +21,10 @@ public class SubsetRowSeparator{
 	public static double minimumThreshold = 0.1; 		//minimum violation for the cut with largest violation
 	public static int maximumNumberCuts = 30; 			//maximum number of cuts to add each iteration
 	public static int maxCutsPerCustomer = 5; 			//maximum cuts where a customer appears (diversification)
+	public static boolean higherRankCuts = false; 		//separates rank-1 cuts on four and five customers
+	public static int higherRankNeighbors = 8; 			//neighbors (by co-visit weight) of each customer considered for the 4- and 5-row cuts
+	private static final List<int[]> FOUR_ROW_MULTIPLIERS = permutations(new int[][] {{3, 2,1,1,1}}); //{denominator, multipliers} (Pecin et al. 2017)
+	private static final List<int[]> FIVE_ROW_MULTIPLIERS = permutations(new int[][] {{3, 1,1,1,1,1}, {4, 2,2,1,1,1}, {5, 3,2,2,1,1}, {3, 2,2,1,1,1}, {4, 3,1,1,1,1}});
 	private boolean SRCViolation=false; 				//if at least one violation has been found
 	private ArrayList<PreliminaryCut> cutSets; 			//customers triplets
 	private EVRPTW dataModel; 							//original data which defines the mE-VRSPTW
@@ -31,6 +40,8 @@ public class SubsetRowSeparator{
 	 * Starts the SR separation.
 	 */
 	public void separateRow(Map<Route, Double> routeValueMap){
+		SolverEvents.SeparationEvent event = new SolverEvents.SeparationEvent(); //JFR event of the separation
+		event.begin();
 
 		//candidate for cuts
 		ArrayList<PreliminaryCut> preliminaryCutSet = new ArrayList<PreliminaryCut>(2*maximumNumberCuts);
@@ -44,29 +55,48 @@ public class SubsetRowSeparator{
 			}
 		}
 
-		//Find by enumeration the SRC violations
+		//Sparse customer x (fractional) route incidence
+		List<Route> routes = new ArrayList<Route>(routeValueMap.size());
+		for(Map.Entry<Route, Double> entry : routeValueMap.entrySet())
+			if(entry.getValue()<0.999) routes.add(entry.getKey());
+		double[] values = new double[routes.size()];
+		List<List<int[]>> incidence = new ArrayList<List<int[]>>(dataModel.C); //customer -> {route index, visits}
+		for (int i = 0; i < dataModel.C; i++) incidence.add(new ArrayList<int[]>());
+		boolean[][] sharedRoute = new boolean[dataModel.C][dataModel.C]; 		//customers visited by a common fractional route
+		double[][] weight = new double[dataModel.C][dataModel.C]; 				//co-visit weight (flow of the fractional routes visiting both customers)
+		boolean[] repeatedVisits = new boolean[dataModel.C]; 					//customers visited more than once by a fractional route
+		for (int r = 0; r < routes.size(); r++) {
+			Route route = routes.get(r);
+			values[r] = routeValueMap.get(route);
+			for(int i: route.route.keySet()) {
+				int visits = route.route.get(i);
+				incidence.get(i-1).add(new int[] {r, visits});
+				if(visits>1) repeatedVisits[i-1] = true;
+				for(int j: route.route.keySet()) if(i!=j) {sharedRoute[i-1][j-1] = true; weight[i-1][j-1]+=values[r];}
+			}
+		}
+
+		//Find by enumeration the SRC violations (only triplets where some route has a positive coefficient)
+		List<ForkJoinTask<List<PreliminaryCut>>> tasks = new ArrayList<ForkJoinTask<List<PreliminaryCut>>>(dataModel.C);
 		for (int i = 0; i < dataModel.C; i++) {
 			if(customersToDiscard[i]) continue;
-			for (int j = i+1; j < dataModel.C; j++) {
-				if(customersToDiscard[j]) continue;
-				for (int k = j+1; k < dataModel.C; k++) {
-					if(customersToDiscard[k]) continue;
-					double coeff = 0;
-					for(Map.Entry<Route, Double> entry : routeValueMap.entrySet()){
-						coeff+= Math.floor(0.5*(entry.getKey().route.getOrDefault(i+1, 0)+entry.getKey().route.getOrDefault(j+1, 0)+entry.getKey().route.getOrDefault(k+1, 0)))*entry.getValue();
-					}
-					if (coeff>1+PRECISION) {
-						int[] customerTriplet = new int[3];
-						customerTriplet[0]=i+1;customerTriplet[1]=j+1; customerTriplet[2]=k+1;
-						preliminaryCutSet.add(new PreliminaryCut(customerTriplet, coeff-1));
-					}
-				}
+			final int first = i;
+			tasks.add(getPool().submit(() -> separateTriplets(first, customersToDiscard, sharedRoute, repeatedVisits, incidence, values)));
+		}
+		if(higherRankCuts) {
+			for (int i = 0; i < dataModel.C; i++) {
+				if(customersToDiscard[i]) continue;
+				final int first = i;
+				tasks.add(getPool().submit(() -> separateHigherRank(first, customersToDiscard, weight, incidence, values)));
 			}
 		}
+		for(ForkJoinTask<List<PreliminaryCut>> task: tasks)
+			preliminaryCutSet.addAll(task.join()); //same order as the sequential enumeration
+
 		//Diversify the cuts
 		this.cutSets = new ArrayList<PreliminaryCut>(maximumNumberCuts);
 		Collections.sort(preliminaryCutSet, new SortByViolation());
-		if(preliminaryCutSet.size()==0 || preliminaryCutSet.get(0).violation<minimumThreshold) {SRCViolation=false; return;}
+		if(preliminaryCutSet.size()==0 || preliminaryCutSet.get(0).violation<minimumThreshold) {SRCViolation=false; event.commit(routes.size(), preliminaryCutSet.size(), 0); return;}
 		else SRCViolation = true;
 		int[] cutsWithCustomer = new int[dataModel.C];
 		for(PreliminaryCut cut: preliminaryCutSet) {
@@ -75,9 +105,178 @@ public class SubsetRowSeparator{
 			if (add) {
 				for(int i: cut.cutSet) cutsWithCustomer[i-1]+=1;
 				cutSets.add(cut);
-				if(cutSets.size()>=maximumNumberCuts) return;
+				if(cutSets.size()>=maximumNumberCuts) break;
+			}
+		}
+
+		//Limited memory of the 4- and 5-row cuts
+		for(PreliminaryCut cut: cutSets)
+			if(cut.cutSet.length>3) cut.memory = getMemory(cut, routes);
+		event.commit(routes.size(), preliminaryCutSet.size(), cutSets.size());
+	}
+
+	/**
+	 * Enumerates the triplets whose first (smallest) customer is given.
+	 * The coefficients are computed on the sparse incidence, with a scratch array local to the task.
+	 */
+	private List<PreliminaryCut> separateTriplets(int i, boolean[] customersToDiscard, boolean[][] sharedRoute, boolean[] repeatedVisits, List<List<int[]>> incidence, double[] values) {
+		List<PreliminaryCut> cuts = new ArrayList<PreliminaryCut>();
+		int[] visits = new int[values.length]; 					//visits of each route to the triplet
+		int[] touchedRoutes = new int[values.length]; 			//routes with positive visits to the triplet
+		for (int j = i+1; j < dataModel.C; j++) {
+			if(customersToDiscard[j]) continue;
+			for (int k = j+1; k < dataModel.C; k++) {
+				if(customersToDiscard[k]) continue;
+				if(!sharedRoute[i][j] && !sharedRoute[i][k] && !sharedRoute[j][k] && !repeatedVisits[i] && !repeatedVisits[j] && !repeatedVisits[k]) continue;
+				int touched = 0;
+				for(int customer: new int[] {i, j, k}) {
+					for(int[] entry: incidence.get(customer)) {
+						if(visits[entry[0]]==0) touchedRoutes[touched++] = entry[0];
+						visits[entry[0]]+=entry[1];
+					}
+				}
+				double coeff = 0;
+				for (int t = 0; t < touched; t++) {
+					int r = touchedRoutes[t];
+					coeff+= Math.floor(0.5*visits[r])*values[r];
+					visits[r] = 0;
+				}
+				if (coeff>1+PRECISION) {
+					int[] customerTriplet = new int[3];
+					customerTriplet[0]=i+1;customerTriplet[1]=j+1; customerTriplet[2]=k+1;
+					cuts.add(new PreliminaryCut(customerTriplet, coeff-1));
+				}
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * Enumerates the 4- and 5-row cuts whose first (smallest) customer is given.
+	 * The other customers are taken from the neighbors with the largest co-visit weight, and only the most violated multipliers of each set are kept.
+	 */
+	private List<PreliminaryCut> separateHigherRank(int i, boolean[] customersToDiscard, double[][] weight, List<List<int[]>> incidence, double[] values) {
+		List<PreliminaryCut> cuts = new ArrayList<PreliminaryCut>();
+		List<Integer> neighbors = new ArrayList<Integer>();
+		for (int j = i+1; j < dataModel.C; j++)
+			if(!customersToDiscard[j] && weight[i][j]>0) neighbors.add(j);
+		neighbors.sort((j, k) -> Double.compare(weight[i][k], weight[i][j]));
+		if(neighbors.size()>higherRankNeighbors) neighbors = new ArrayList<Integer>(neighbors.subList(0, higherRankNeighbors));
+		Collections.sort(neighbors);
+
+		int[][] visits = new int[values.length][5]; 			//visits of each route to each customer in the set
+		int[] touchedRoutes = new int[values.length]; 			//routes with positive visits to the set
+		boolean[] isTouched = new boolean[values.length];
+		int n = neighbors.size();
+		for (int a = 0; a < n; a++) {
+			for (int b = a+1; b < n; b++) {
+				for (int c = b+1; c < n; c++) {
+					int[] fourSet = {i, neighbors.get(a), neighbors.get(b), neighbors.get(c)};
+					PreliminaryCut cut = evaluateSet(fourSet, FOUR_ROW_MULTIPLIERS, incidence, values, visits, touchedRoutes, isTouched);
+					if(cut != null) cuts.add(cut);
+					for (int d = c+1; d < n; d++) {
+						int[] fiveSet = {i, neighbors.get(a), neighbors.get(b), neighbors.get(c), neighbors.get(d)};
+						cut = evaluateSet(fiveSet, FIVE_ROW_MULTIPLIERS, incidence, values, visits, touchedRoutes, isTouched);
+						if(cut != null) cuts.add(cut);
+					}
+				}
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * Evaluates all the multipliers of a set of customers (full memory).
+	 * @return the most violated cut on the set, or null if no cut is violated.
+	 */
+	private PreliminaryCut evaluateSet(int[] set, List<int[]> allMultipliers, List<List<int[]>> incidence, double[] values, int[][] visits, int[] touchedRoutes, boolean[] isTouched) {
+		int touched = 0;
+		for (int p = 0; p < set.length; p++) {
+			for(int[] entry: incidence.get(set[p])) {
+				if(!isTouched[entry[0]]) {isTouched[entry[0]] = true; touchedRoutes[touched++] = entry[0];}
+				visits[entry[0]][p]+=entry[1];
 			}
 		}
+		int[] bestMultipliers = null; double bestViolation = PRECISION;
+		for(int[] multipliers: allMultipliers) {
+			int denominator = multipliers[0];
+			int sum = 0;
+			for (int p = 0; p < set.length; p++) sum+=multipliers[p+1];
+			double lhs = 0;
+			for (int t = 0; t < touched; t++) {
+				int r = touchedRoutes[t];
+				int dot = 0;
+				for (int p = 0; p < set.length; p++) dot+=visits[r][p]*multipliers[p+1];
+				lhs+= (dot/denominator)*values[r];
+			}
+			double violation = lhs-sum/denominator;
+			if(violation>bestViolation) {bestViolation = violation; bestMultipliers = multipliers;}
+		}
+		for (int t = 0; t < touched; t++) {
+			int r = touchedRoutes[t];
+			isTouched[r] = false;
+			for (int p = 0; p < set.length; p++) visits[r][p] = 0;
+		}
+		if(bestMultipliers == null) return null;
+		int[] cutSet = new int[set.length];
+		for (int p = 0; p < set.length; p++) cutSet[p] = set[p]+1;
+		return new PreliminaryCut(cutSet, Arrays.copyOfRange(bestMultipliers, 1, bestMultipliers.length), bestMultipliers[0], bestViolation);
+	}
+
+	/**
+	 * Computes the (node) memory of a cut: the customers visited by the contributing fractional routes between their first and last visit to the cut set.
+	 * The coefficients of these routes are the same as with full memory.
+	 */
+	private boolean[] getMemory(PreliminaryCut cut, List<Route> routes) {
+		boolean[] memory = new boolean[dataModel.C];
+		for(Route route: routes) {
+			int sum = 0; int first = -1; int last = -1;
+			for (int k = 0; k < route.routeSequence.length; k++) {
+				for (int p = 0; p < cut.cutSet.length; p++) {
+					if(cut.cutSet[p]==route.routeSequence[k]) {
+						sum+=cut.multipliers[p];
+						if(first<0) first = k;
+						last = k;
+					}
+				}
+			}
+			if(sum<cut.denominator) continue; //the route does not contribute to the cut
+			for (int k = first; k <= last; k++) memory[route.routeSequence[k]-1] = true;
+		}
+		return memory;
+	}
+
+	/** Returns the distinct permutations of the multipliers of each {denominator, multipliers} vector. */
+	private static List<int[]> permutations(int[][] vectors) {
+		List<int[]> permutations = new ArrayList<int[]>();
+		for(int[] vector: vectors) {
+			int[] multipliers = Arrays.copyOfRange(vector, 1, vector.length);
+			Arrays.sort(multipliers);
+			do {
+				int[] permutation = new int[vector.length];
+				permutation[0] = vector[0];
+				System.arraycopy(multipliers, 0, permutation, 1, multipliers.length);
+				permutations.add(permutation);
+			} while(nextPermutation(multipliers));
+		}
+		return permutations;
+	}
+
+	/** Rearranges the array into the next lexicographic permutation; returns false if it is the last one. */
+	private static boolean nextPermutation(int[] array) {
+		int i = array.length-2;
+		while(i>=0 && array[i]>=array[i+1]) i--;
+		if(i<0) return false;
+		int j = array.length-1;
+		while(array[j]<=array[i]) j--;
+		int aux = array[i]; array[i] = array[j]; array[j] = aux;
+		for (int k = i+1, l = array.length-1; k < l; k++, l--) {aux = array[k]; array[k] = array[l]; array[l] = aux;}
+		return true;
+	}
+
+	/** Returns the pool used to separate the cuts in parallel (the common pool: its daemon threads need no shutdown). */
+	private static ForkJoinPool getPool() {
+		return ForkJoinPool.commonPool();
 	}
 
 	/** Returns whether a SRC violation exists in the fractional solution. */
@@ -92,12 +291,21 @@ public class SubsetRowSeparator{
 
 	/** Class that represent a preliminary cut that could be added */
 	public class PreliminaryCut{
-		public int[] cutSet; 					//customer triplet
+		public int[] cutSet; 					//customers in the cut
+		public int[] multipliers; 				//numerators of the multipliers
+		public int denominator; 				//denominator of the multipliers
+		public boolean[] memory; 				//memory of the cut (null if the memory is complete)
 		public double violation; 				//current violation of the cut
 		List<Route> contributingRoutes; 		//routes contributing to the cut
 
 		public PreliminaryCut(int[] cutSet, double violation) {
+			this(cutSet, new int[] {1, 1, 1}, 2, violation);
+		}
+
+		public PreliminaryCut(int[] cutSet, int[] multipliers, int denominator, double violation) {
 			this.cutSet = cutSet;
+			this.multipliers = multipliers;
+			this.denominator = denominator;
 			this.violation = violation;
 		}
 	}
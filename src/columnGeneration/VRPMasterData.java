@@ -1,18 +1,24 @@
 package columnGeneration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.jorlib.frameworks.columnGeneration.master.MasterData;
 import org.jorlib.frameworks.columnGeneration.util.OrderedBiMap;
 
 import branchAndPrice.ChargingTimeInequality;
 import branchAndPrice.NumberVehiclesInequalities;
+import ilog.concert.IloConstraint;
 import ilog.concert.IloNumVar;
 import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
 import model.EVRPTW;
+import model.EVRPTW.Arc;
 
 /**
  * Class that stores the information for the Master Problem (MP).
@@ -22,17 +28,123 @@ public final class VRPMasterData extends MasterData<EVRPTW, Route, PricingProble
 	public final IloCplex cplex;												//CPLEX instance
 	public final PricingProblem pricingProblem;									//list of pricing problems
 	public HashMap<SubsetRowInequality, IloRange> subsetRowInequalities;		//mapping of the Subset row inequalities to constraints in the CPLEX model
+	public Map<CapacityInequality, IloRange> capacityInequalities;				//mapping of the rounded capacity inequalities to constraints in the CPLEX model
 	public Map<NumberVehiclesInequalities, IloRange> branchingNumberOfVehicles;	//mapping of branching decisions on the number of vehicles
 	public Map<ChargingTimeInequality, IloRange> branchingChargingTimes;		//mapping of branching decisions on the charging times
 	public Map<Route, Double> routeValueMap;									//routes used (only non-zero routes are considered) 
+	public List<List<SubsetRowInequality>> cutsPerCustomer;						//inverted index: customer -> SRCs in the model containing it
+	public List<Map<Route, Integer>> columnsPerCustomer;						//inverted index: customer -> columns visiting it (and number of visits)
+	public boolean infeasible;													//the last solved MP was infeasible (Farkas pricing)
+	public Map<IloConstraint, Double> farkasDuals;								//(scaled) Farkas certificate of the infeasible MP
+	public Map<List<Integer>, IloNumVar> routingVariables;						//routing variables of the decomposed formulation (indexed by the arcs of the route)
+	public CutPool cutPool;														//pool of SRCs (null if the cuts are never removed from the MP)
+	public Set<Route> fixedRoutes;												//routes fixed to one (diving heuristic)
 
-	public VRPMasterData(IloCplex cplex, PricingProblem pricingProblem, Map<PricingProblem, OrderedBiMap<Route, IloNumVar>> varMap) {
+	public VRPMasterData(IloCplex cplex, PricingProblem pricingProblem, Map<PricingProblem, OrderedBiMap<Route, IloNumVar>> varMap, int numberOfCustomers) {
 		super(varMap);
 		this.cplex = cplex;
 		this.pricingProblem = pricingProblem;
 		this.subsetRowInequalities = new LinkedHashMap<>();
+		this.capacityInequalities = new LinkedHashMap<>();
 		this.routeValueMap = new HashMap<>();
 		this.branchingNumberOfVehicles = new HashMap<NumberVehiclesInequalities, IloRange>();
 		this.branchingChargingTimes = new HashMap<ChargingTimeInequality, IloRange>();
+		this.infeasible = false;
+		this.farkasDuals = new HashMap<IloConstraint, Double>();
+		this.routingVariables = new HashMap<List<Integer>, IloNumVar>();
+		this.fixedRoutes = new HashSet<Route>();
+		this.cutsPerCustomer = new ArrayList<List<SubsetRowInequality>>(numberOfCustomers+1);
+		this.columnsPerCustomer = new ArrayList<Map<Route, Integer>>(numberOfCustomers+1);
+		for(int i = 0; i <= numberOfCustomers; i++) {
+			cutsPerCustomer.add(new ArrayList<SubsetRowInequality>());
+			columnsPerCustomer.add(new LinkedHashMap<Route, Integer>());
+		}
+	}
+
+	/** Registers a (non-artificial) column in the customer-indexed incidence. */
+	public void registerColumn(Route route) {
+		for(int i: route.route.keySet())
+			columnsPerCustomer.get(i).put(route, route.route.get(i));
+	}
+
+	/** Registers a SRC (and its constraint in the CPLEX model) in the customer-indexed incidence. */
+	public void registerCut(SubsetRowInequality subsetRowInequality, IloRange constraint) {
+		subsetRowInequalities.put(subsetRowInequality, constraint);
+		for(int i: subsetRowInequality.cutSet)
+			cutsPerCustomer.get(i).add(subsetRowInequality);
+		if(cutPool != null) cutPool.activate(subsetRowInequality);
+	}
+
+	/** Removes a SRC from the customer-indexed incidence (its constraint must be removed from the CPLEX model). */
+	public void unregisterCut(SubsetRowInequality subsetRowInequality) {
+		subsetRowInequalities.remove(subsetRowInequality);
+		for(int i: subsetRowInequality.cutSet)
+			cutsPerCustomer.get(i).remove(subsetRowInequality);
+	}
+
+	/**
+	 * Returns the variable carrying the routing rows (partitioning, SRCs) of a column.
+	 * In the decomposed formulation it is the routing variable, otherwise the column variable itself.
+	 */
+	public IloNumVar getRoutingVariable(Route route) {
+		IloNumVar routingVariable = routingVariables.get(route.arcs);
+		return (routingVariable != null) ? routingVariable : getVar(pricingProblem, route);
+	}
+
+	/**
+	 * Computes the (non-zero) coefficients of a route in the SRCs of the model.
+	 * Only the cuts sharing at least one customer with the route are visited.
+	 * @param route for which the coefficients are calculated.
+	 * @return mapping of the SRCs with a positive coefficient to that coefficient.
+	 */
+	public Map<SubsetRowInequality, Integer> getCoefficients(Route route) {
+		Map<SubsetRowInequality, Integer> coefficients = new LinkedHashMap<SubsetRowInequality, Integer>();
+		for(int i: route.route.keySet()) {
+			for(SubsetRowInequality subsetRowInequality: cutsPerCustomer.get(i)) {
+				if(coefficients.containsKey(subsetRowInequality)) continue;
+				coefficients.put(subsetRowInequality, subsetRowInequality.getCoefficient(route));
+			}
+		}
+		coefficients.values().removeIf(coeff -> coeff <= 0);
+		return coefficients;
+	}
+
+	/**
+	 * Computes the (non-zero) coefficients of the columns of the model in a SRC.
+	 * Only the columns visiting at least one customer of the cut are visited.
+	 * @param subsetRowInequality considered.
+	 * @return mapping of the columns with a positive coefficient to that coefficient.
+	 */
+	public Map<Route, Integer> getCoefficients(SubsetRowInequality subsetRowInequality) {
+		Map<Route, Integer> coefficients = new LinkedHashMap<Route, Integer>();
+		for(int i: subsetRowInequality.cutSet) {
+			for(Route route: columnsPerCustomer.get(i).keySet()) {
+				if(coefficients.containsKey(route)) continue;
+				coefficients.put(route, subsetRowInequality.getCoefficient(route));
+			}
+		}
+		coefficients.values().removeIf(coeff -> coeff <= 0);
+		return coefficients;
+	}
+
+	/**
+	 * Computes the (non-zero) coefficients of the columns of the model in a rounded capacity inequality.
+	 * Only the columns visiting at least one customer of the cut are visited; the artificial columns cover the right-hand side.
+	 * @param capacityInequality considered.
+	 * @param arcs arcs of the graph.
+	 * @return mapping of the columns with a positive coefficient to that coefficient.
+	 */
+	public Map<Route, Integer> getCoefficients(CapacityInequality capacityInequality, Arc[] arcs) {
+		Map<Route, Integer> coefficients = new LinkedHashMap<Route, Integer>();
+		for(int i: capacityInequality.customerSet) {
+			for(Route route: columnsPerCustomer.get(i).keySet()) {
+				if(coefficients.containsKey(route)) continue;
+				coefficients.put(route, capacityInequality.getCoefficient(route, arcs));
+			}
+		}
+		for(Route route: getColumnsForPricingProblem(pricingProblem))
+			if(route.isArtificialColumn) coefficients.put(route, capacityInequality.rightHandSide);
+		coefficients.values().removeIf(coeff -> coeff <= 0);
+		return coefficients;
 	}
 }
\ No newline at end of file
@@ -19,6 +19,12 @@ public class customCG extends ColGen<EVRPTW, Route, PricingProblem> {
 
 	public ArrayList<Route> incumbentSolution = new ArrayList<Route>(); 	//stores the incumbent solution found throughout the CG
 	public int incumbentSolutionObjective = (int) Double.MAX_VALUE; 		// stores the incumbent solution objective found throughout the CG
+	private final CoveringSolutionRepair coveringRepair = new CoveringSolutionRepair(dataModel); //repairs over-covered solutions (set-covering master)
+	public int maximumIterations = Integer.MAX_VALUE; 					//maximum number of iterations (truncated CG, e.g., strong branching)
+	public boolean separateCuts = true; 								//if false, no cuts are separated (even if they are enabled)
+	public int nodeID = -1; 											//node of the tree solved by the CG (trace)
+	public int nodeDepth = 0; 											//depth of the node (trace)
+	private int subsetRowCutsSeparated; 								//SRCs separated in the current iteration (trace)
 
 	public customCG(EVRPTW dataModel, AbstractMaster<EVRPTW, Route, PricingProblem, ? extends MasterData> master,
 			PricingProblem pricingProblem,
@@ -84,50 +90,76 @@ public class customCG extends ColGen<EVRPTW, Route, PricingProblem> {
 		do{
 			nrOfColGenIterations++;
 			hasNewCuts=false;
-
-			//Solve the master
-			this.invokeMaster(timeLimit);
-			if(objectiveMasterProblem<boundOnMasterObjective-dataModel.precision) {
-				System.out.println("Check problems with LB!");
-				System.exit(-1);
-			}
-
-			//We can stop when the optimality gap is closed. We still need to check for violated inequalities though.
-			if(Math.abs(objectiveMasterProblem - boundOnMasterObjective)<config.PRECISION){
-				//Check whether there are inequalities. Otherwise potentially an infeasible integer solution (e.g. TSP solution with subtours) might be returned.
-				if(config.CUTSENABLED){
-					long time=System.currentTimeMillis();
-					hasNewCuts=master.hasNewCuts();
-					masterSolveTime+=(System.currentTimeMillis()-time); //Generating inequalities is considered part of the master problem
-					if(hasNewCuts)
-						continue;
-					else
+			long iterationMasterTime=masterSolveTime; long iterationColumns=nrGeneratedColumns; subsetRowCutsSeparated=0;
+			if(dataModel.trace != null) for(PricingProblem pricingProblem: pricingProblems) pricingProblem.pricingRecords.clear();
+			try {
+				//Solve the master
+				this.invokeMaster(timeLimit);
+				if(objectiveMasterProblem<boundOnMasterObjective-dataModel.precision && !dataModel.cutPoolManagement) { //the MP is a relaxation when cuts are removed
+					throw new RuntimeException("Check problems with LB! (master objective below the bound)");
+				}
+
+				//We can stop when the optimality gap is closed. We still need to check for violated inequalities though.
+				if(Math.abs(objectiveMasterProblem - boundOnMasterObjective)<config.PRECISION){
+					//Check whether there are inequalities. Otherwise potentially an infeasible integer solution (e.g. TSP solution with subtours) might be returned.
+					if(config.CUTSENABLED && separateCuts){
+						long time=System.currentTimeMillis();
+						hasNewCuts=this.separateNewCuts();
+						masterSolveTime+=(System.currentTimeMillis()-time); //Generating inequalities is considered part of the master problem
+						if(hasNewCuts)
+							continue;
+						else
+							break;
+					}else
 						break;
-				}else
-					break;
-			}
+				}
 
-			//Solve the pricing problem and possibly update the bound on the master problem objective
-			List<Route> newColumns=this.invokePricingProblems(timeLimit); //List containing new columns generated by the pricing problem
-			foundNewColumns=!newColumns.isEmpty();
+				//Solve the pricing problem and possibly update the bound on the master problem objective
+				List<Route> newColumns=this.invokePricingProblems(timeLimit); //List containing new columns generated by the pricing problem
+				foundNewColumns=!newColumns.isEmpty();
 
-			//Check whether the boundOnMasterObjective exceeds the cutoff value
-			if(boundOnMasterExceedsCutoffValue())
-				break;
-			else if(System.currentTimeMillis() >= timeLimit){ 		//check whether we are still within the timeLimit
-				notifier.fireTimeLimitExceededEvent();
-				throw new TimeLimitExceededException();
-			}else if(config.CUTSENABLED && !foundNewColumns){ 		//check for inequalities. This can only be done if the master problem hasn't changed (no columns can be added).
-				long time=System.currentTimeMillis();
-				hasNewCuts=master.hasNewCuts();
-				masterSolveTime+=(System.currentTimeMillis()-time); //generating inequalities is considered part of the master problem
+				//Check whether the boundOnMasterObjective exceeds the cutoff value
+				if(boundOnMasterExceedsCutoffValue())
+					break;
+				else if(System.currentTimeMillis() >= timeLimit || (dataModel.monitor != null && dataModel.monitor.isStopRequested())){ 		//check whether we are still within the timeLimit (or a termination has been requested)
+					notifier.fireTimeLimitExceededEvent();
+					throw new TimeLimitExceededException();
+				}else if(nrOfColGenIterations>=maximumIterations){ 		//truncated CG
+					break;
+				}else if(config.CUTSENABLED && separateCuts && !foundNewColumns){ 		//check for inequalities. This can only be done if the master problem hasn't changed (no columns can be added).
+					long time=System.currentTimeMillis();
+					hasNewCuts=this.separateNewCuts();
+					masterSolveTime+=(System.currentTimeMillis()-time); //generating inequalities is considered part of the master problem
+				}
+			} finally {
+				if(dataModel.trace != null) traceIteration(masterSolveTime-iterationMasterTime, (int) (nrGeneratedColumns-iterationColumns));
 			}
-
 		}while(foundNewColumns || hasNewCuts);
 		colGenSolveTime=System.currentTimeMillis()-colGenSolveTime;
 		notifier.fireFinishCGEvent();
 	}
 
+	/**
+	 * Checks for violated inequalities (counting the SRCs separated for the trace).
+	 * @return true if violated inequalities have been added to the master problem.
+	 */
+	private boolean separateNewCuts() {
+		if(dataModel.trace == null || !(master instanceof Master)) return master.hasNewCuts();
+		int subsetRowCuts = ((Master) master).getNumberOfSubsetRowCuts();
+		boolean hasNewCuts = master.hasNewCuts();
+		subsetRowCutsSeparated += ((Master) master).getNumberOfSubsetRowCuts()-subsetRowCuts;
+		return hasNewCuts;
+	}
+
+	/**
+	 * Writes the record of the current iteration in the trace: master problem, calls to the pricing solvers, columns and SRCs.
+	 */
+	private void traceIteration(long masterTime, int columns) {
+		List<SolverTrace.PricingRecord> pricing = new ArrayList<SolverTrace.PricingRecord>();
+		for(PricingProblem pricingProblem: pricingProblems) pricing.addAll(pricingProblem.pricingRecords);
+		dataModel.trace.iteration(nodeID, nodeDepth, maximumIterations<Integer.MAX_VALUE, nrOfColGenIterations, masterTime, pricing, columns, subsetRowCutsSeparated, objectiveMasterProblem, boundOnMasterObjective);
+	}
+
 	/**
 	 * Invokes the solve method of the Master Problem, fires corresponding events and queries the results.
 	 * @param timeLimit Future point in time by which the Master Problem must be finished
@@ -139,6 +171,8 @@ public class customCG extends ColGen<EVRPTW, Route, PricingProblem> {
 		master.solve(timeLimit);
 		objectiveMasterProblem =master.getObjective();
 		masterSolveTime+=(System.currentTimeMillis()-time);
+		if(dataModel.monitor != null && master instanceof Master)
+			dataModel.monitor.masterSolved(System.currentTimeMillis()-time, ((Master) master).getNumberOfColumns(), ((Master) master).getNumberOfSubsetRowCuts());
 
 		//Check if we have found an integer solution
 		boolean isInteger = true;
@@ -147,13 +181,22 @@ public class customCG extends ColGen<EVRPTW, Route, PricingProblem> {
 
 		//Update incumbent solution
 		if(isInteger && this.cutoffValue>master.getObjective()) {
-			this.incumbentSolution = new ArrayList<>();
-			this.cutoffValue = (int) (master.getObjective()+0.5);
-			this.incumbentSolutionObjective = this.cutoffValue;
-			for(Route route: master.getSolution()) {
-				Route newRoute = route.clone();
-				newRoute.value = route.value;
-				this.incumbentSolution.add(newRoute);
+			List<Route> integerSolution = master.getSolution();
+			int objective = (int) (master.getObjective()+0.5);
+			if(dataModel.setCoveringFormulation && coveringRepair.isOverCovered(integerSolution)) { //turn it into a partition
+				integerSolution = coveringRepair.repair(integerSolution);
+				objective = 0;
+				if(integerSolution != null) for(Route route: integerSolution) objective+=route.cost;
+			}
+			if(integerSolution != null && this.cutoffValue>objective) {
+				this.incumbentSolution = new ArrayList<>();
+				this.cutoffValue = objective;
+				this.incumbentSolutionObjective = this.cutoffValue;
+				for(Route route: integerSolution) {
+					Route newRoute = route.clone();
+					newRoute.value = route.value;
+					this.incumbentSolution.add(newRoute);
+				}
 			}
 		}
 		notifier.fireFinishMasterEvent();
@@ -191,7 +234,7 @@ public class customCG extends ColGen<EVRPTW, Route, PricingProblem> {
 			exact = true;
 		}
 
-		if(exact) 
+		if(exact && solvers.size()>1) //a truncated CG (heuristic solver only) does not prove a bound
 			if(!newColumns.isEmpty()) this.boundOnMasterObjective =(optimizationSenseMaster == OptimizationSense.MINIMIZE ? Math.max(boundOnMasterObjective,this.calculateBoundOnMasterObjective(solvers.get(1))) : Math.min(boundOnMasterObjective,this.calculateBoundOnMasterObjective(solvers.get(1))));
 			else this.boundOnMasterObjective = master.getObjective(); //update the bound before adding cuts
 
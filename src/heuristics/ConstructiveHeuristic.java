@@ -0,0 +1,117 @@
+package heuristics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import columnGeneration.Route;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+/**
+ * Constructive heuristic for the mE-VRSPTW (initial columns and upper bound).
+ * The routes are built with the savings algorithm over the customer sequences, each one evaluated on the multigraph (RouteEvaluator).
+ * Then, the charging intervals are assigned by list scheduling under the chargers capacity: routes with the latest
+ * end of charging first, each one as late as possible.
+ */
+public final class ConstructiveHeuristic {
+
+	private final EVRPTW dataModel; 				//data model
+	private final RouteEvaluator evaluator; 		//evaluation of the sequences (choice of the parallel arcs)
+
+	public ConstructiveHeuristic(EVRPTW dataModel, RouteEvaluator evaluator) {
+		this.dataModel = dataModel;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Builds a solution.
+	 * @return routes with their charging intervals, or null if no feasible solution has been found.
+	 */
+	public List<Route> solve() {
+
+		//Single-customer routes
+		List<List<Integer>> sequences = new ArrayList<List<Integer>>();
+		List<Route> routes = new ArrayList<Route>();
+		int[] routeOf = new int[dataModel.C+1]; 		//sequence of each customer
+		for (int i = 1; i <= dataModel.C; i++) {
+			List<Integer> sequence = new ArrayList<Integer>();
+			sequence.add(i);
+			Route route = evaluator.evaluate(sequence);
+			if(route == null) return null;
+			routeOf[i] = sequences.size();
+			sequences.add(sequence);
+			routes.add(route);
+		}
+
+		//Savings (with the minimum-cost arcs)
+		List<int[]> savings = new ArrayList<int[]>();
+		for (int i = 1; i <= dataModel.C; i++)
+			for (int j = 1; j <= dataModel.C; j++) {
+				if(i==j || !dataModel.graph.containsEdge(i, j)) continue;
+				int saving = getMinimumCost(i, dataModel.C+1)+getMinimumCost(0, j)-getMinimumCost(i, j);
+				if(saving>0) savings.add(new int[] {i, j, saving});
+			}
+		Collections.sort(savings, (saving1, saving2) -> Integer.compare(saving2[2], saving1[2]));
+
+		//Merge the sequence ending at i with the sequence starting at j
+		for(int[] saving: savings) {
+			int first = routeOf[saving[0]], second = routeOf[saving[1]];
+			if(first == second) continue;
+			List<Integer> sequence1 = sequences.get(first), sequence2 = sequences.get(second);
+			if(sequence1.get(sequence1.size()-1) != saving[0] || sequence2.get(0) != saving[1]) continue;
+			if(routes.get(first).load+routes.get(second).load>dataModel.Q) continue;
+			List<Integer> sequence = new ArrayList<Integer>(sequence1);
+			sequence.addAll(sequence2);
+			Route route = evaluator.evaluate(sequence);
+			if(route == null || route.cost>=routes.get(first).cost+routes.get(second).cost) continue;
+			sequences.set(first, sequence);
+			routes.set(first, route);
+			sequences.set(second, null);
+			routes.set(second, null);
+			for(int i: sequence2) routeOf[i] = first;
+		}
+		List<Route> solution = new ArrayList<Route>();
+		for(Route route: routes) if(route != null) solution.add(route);
+
+		return scheduleCharging(solution) ? solution : null;
+	}
+
+	/**
+	 * Assigns the charging intervals (list scheduling): the routes with the latest end of charging are scheduled first, each one as late as possible
+	 * without exceeding the number of chargers.
+	 * @return true if all the routes have been scheduled.
+	 */
+	public boolean scheduleCharging(List<Route> routes) {
+		List<Route> sortedRoutes = new ArrayList<Route>(routes);
+		Collections.sort(sortedRoutes, (route1, route2) -> {
+			int latestEnd1 = Math.min(route1.departureTime-1, dataModel.last_charging_period);
+			int latestEnd2 = Math.min(route2.departureTime-1, dataModel.last_charging_period);
+			if(latestEnd1 != latestEnd2) return Integer.compare(latestEnd2, latestEnd1);
+			return Integer.compare(route2.chargingTime, route1.chargingTime);
+		});
+
+		int[] chargersUsed = new int[dataModel.last_charging_period+1];
+		for(Route route: sortedRoutes) {
+			int latestEnd = Math.min(route.departureTime-1, dataModel.last_charging_period);
+			boolean scheduled = false;
+			for (int end = latestEnd; end >= route.chargingTime && !scheduled; end--) {
+				boolean available = true;
+				for (int t = end-route.chargingTime+1; t <= end && available; t++)
+					if(chargersUsed[t]>=dataModel.B) available = false;
+				if(!available) continue;
+				for (int t = end-route.chargingTime+1; t <= end; t++) chargersUsed[t]++;
+				route.initialChargingTime = end-route.chargingTime+1;
+				scheduled = true;
+			}
+			if(!scheduled) return false;
+		}
+		return true;
+	}
+
+	/** Returns the cost of the cheapest arc between two vertices. */
+	private int getMinimumCost(int tail, int head) {
+		int cost = Integer.MAX_VALUE/2;
+		for(Arc arc: dataModel.graph.getAllEdges(tail, head)) cost = Math.min(cost, arc.cost);
+		return cost;
+	}
+}
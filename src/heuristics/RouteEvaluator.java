@@ -0,0 +1,247 @@
+package heuristics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import model.EVRPTW;
+import model.EVRPTW.Arc;
+
+/**
+ * Evaluates customer sequences on the multigraph: the parallel arcs between consecutive vertices are chosen with a small DP that keeps
+ * the non-dominated segments (cost, energy, and time: duration, earliest and latest start, as in the concatenation of time windows).
+ * The prefixes (from the depot source) and suffixes (to the depot sink) of a sequence are cached, so inserting or removing a customer
+ * is evaluated by concatenating three segments, independently of the length of the route. The evaluations of whole sequences are memoized.
+ * An evaluator is not thread-safe (each heuristic thread uses its own one).
+ */
+public final class RouteEvaluator {
+
+	public static int memoSize = 100000; 					//maximum number of sequences memoized (least recently used are discarded)
+
+	private final EVRPTW dataModel; 						//data model
+	private final PricingProblem pricingProblem; 			//pricing problem (of the routes created)
+	private final String creator; 							//creator of the routes
+	private final List<Segment>[] vertexSegments; 			//segment of each vertex (alone)
+	private final Map<List<Integer>, SequenceData> memo; 	//memoized sequences
+	private final Map<Long, Arc[]> arcs = new HashMap<Long, Arc[]>(); //parallel arcs between two vertices
+	private long evaluations = 0; 							//sequences evaluated (not memoized)
+
+	@SuppressWarnings("unchecked")
+	public RouteEvaluator(EVRPTW dataModel, PricingProblem pricingProblem, String creator) {
+		this.dataModel = dataModel;
+		this.pricingProblem = pricingProblem;
+		this.creator = creator;
+		this.vertexSegments = new List[dataModel.C+2];
+		for (int i = 0; i <= dataModel.C+1; i++) {
+			List<Segment> segments = new ArrayList<Segment>(1);
+			segments.add(new Segment(0, 0, 0, dataModel.vertices[i].opening_tw, dataModel.vertices[i].closing_tw, i, i, null, null, null));
+			vertexSegments[i] = segments;
+		}
+		this.memo = new LinkedHashMap<List<Integer>, SequenceData>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Integer>, SequenceData> eldest) {
+				return size()>memoSize;
+			}
+		};
+	}
+
+	/**
+	 * Evaluates a sequence of customers.
+	 * @return the cheapest route (a new object) whose charging can be completed before its departure, or null if the sequence is infeasible.
+	 * Its charging interval ends as late as possible.
+	 */
+	public Route evaluate(List<Integer> sequence) {
+		SequenceData data = getData(sequence);
+		return (data.route == null) ? null : data.route.clone();
+	}
+
+	/**
+	 * Returns the cost of the cheapest feasible route after inserting a customer in a sequence (Integer.MAX_VALUE if it is infeasible).
+	 * @param position position of the customer in the new sequence.
+	 */
+	public int getInsertionCost(List<Integer> sequence, int position, int customer) {
+		SequenceData data = getData(sequence);
+		if(data.load+dataModel.vertices[customer].load>dataModel.Q) return Integer.MAX_VALUE;
+		Segment best = getBest(concatenate(concatenate(data.getPrefix(position), vertexSegments[customer]), data.getSuffix(position)));
+		return (best == null) ? Integer.MAX_VALUE : best.cost;
+	}
+
+	/**
+	 * Returns the cost of the cheapest feasible route after removing a customer from a sequence (Integer.MAX_VALUE if it is infeasible, 0 if the sequence becomes empty).
+	 * @param position position of the customer removed.
+	 */
+	public int getRemovalCost(List<Integer> sequence, int position) {
+		if(sequence.size() == 1) return 0;
+		SequenceData data = getData(sequence);
+		Segment best = getBest(concatenate(data.getPrefix(position), data.getSuffix(position+1)));
+		return (best == null) ? Integer.MAX_VALUE : best.cost;
+	}
+
+	/** Returns the number of sequences evaluated (not memoized). */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/** Returns the (memoized) evaluation of a sequence. */
+	private SequenceData getData(List<Integer> sequence) {
+		SequenceData data = memo.get(sequence);
+		if(data == null) {
+			data = new SequenceData(new ArrayList<Integer>(sequence));
+			memo.put(data.sequence, data);
+			evaluations++;
+		}
+		return data;
+	}
+
+	/**
+	 * Concatenates two sets of segments through the parallel arcs between the last vertex of the first one and the first vertex of the second one.
+	 * Only the feasible (time windows, energy) and non-dominated segments are kept.
+	 */
+	private List<Segment> concatenate(List<Segment> first, List<Segment> second) {
+		List<Segment> segments = new ArrayList<Segment>();
+		if(first.isEmpty() || second.isEmpty()) return segments;
+		for(Arc arc: getArcs(first.get(0).last, second.get(0).first)) {
+			for(Segment segment1: first) {
+				for(Segment segment2: second) {
+					int energy = segment1.energy+arc.energy+segment2.energy;
+					if(energy>dataModel.E) continue;
+					int delta = segment1.duration+arc.time;
+					if(segment1.earliest+delta>segment2.latest) continue; 					//time window violated
+					int waiting = Math.max(segment2.earliest-delta-segment1.latest, 0);
+					Segment segment = new Segment(segment1.cost+arc.cost+segment2.cost, energy, segment1.duration+arc.time+segment2.duration+waiting,
+							Math.max(segment2.earliest-delta, segment1.earliest)-waiting, Math.min(segment2.latest-delta, segment1.latest),
+							segment1.first, segment2.last, segment1, arc, segment2);
+					boolean dominated = false;
+					for (int l = segments.size()-1; l >= 0 && !dominated; l--) {
+						if(segments.get(l).dominates(segment)) dominated = true;
+						else if(segment.dominates(segments.get(l))) segments.remove(l);
+					}
+					if(!dominated) segments.add(segment);
+				}
+			}
+		}
+		return segments;
+	}
+
+	/** Returns the cheapest complete segment (depot to depot) whose charging can be completed before the departure (ties: latest departure). */
+	private Segment getBest(List<Segment> segments) {
+		Segment best = null;
+		for(Segment segment: segments) {
+			if(dataModel.f_inverse[segment.energy]>getLatestEndCharging(segment.latest)) continue;
+			if(best == null || segment.cost<best.cost || (segment.cost == best.cost && segment.latest>best.latest)) best = segment;
+		}
+		return best;
+	}
+
+	/** Returns the latest period in which the charging can end (before the departure and within the charging horizon). */
+	private int getLatestEndCharging(int departure) {
+		return Math.min((int) (departure/10)-1, dataModel.last_charging_period);
+	}
+
+	/** Returns the parallel arcs between two vertices (empty if there is no arc). */
+	private Arc[] getArcs(int tail, int head) {
+		long key = (long) tail*(dataModel.C+2)+head;
+		Arc[] parallelArcs = arcs.get(key);
+		if(parallelArcs == null) {
+			parallelArcs = dataModel.graph.containsEdge(tail, head) ? dataModel.graph.getAllEdges(tail, head).toArray(new Arc[0]) : new Arc[0];
+			arcs.put(key, parallelArcs);
+		}
+		return parallelArcs;
+	}
+
+	/** Evaluation of a sequence: prefixes and suffixes (computed when needed) and best route. */
+	private final class SequenceData {
+		final List<Integer> sequence; 			//customers
+		final int load; 						//load
+		final List<Segment>[] prefixes; 		//segments from the depot source to the k-th vertex of the sequence (excluded)
+		final List<Segment>[] suffixes; 		//segments from the k-th vertex of the sequence to the depot sink
+		final Route route; 						//best route (null if infeasible)
+
+		@SuppressWarnings("unchecked")
+		SequenceData(List<Integer> sequence) {
+			this.sequence = sequence;
+			int totalLoad = 0;
+			for(int i: sequence) totalLoad+=dataModel.vertices[i].load;
+			this.load = totalLoad;
+			this.prefixes = new List[sequence.size()+1];
+			this.suffixes = new List[sequence.size()+1];
+			Segment best = (load>dataModel.Q) ? null : getBest(concatenate(getPrefix(sequence.size()), vertexSegments[dataModel.C+1]));
+			this.route = (best == null) ? null : createRoute(best);
+		}
+
+		/** Segments from the depot source to the position (excluded). */
+		List<Segment> getPrefix(int position) {
+			if(prefixes[position] == null)
+				prefixes[position] = (position == 0) ? vertexSegments[0] : concatenate(getPrefix(position-1), vertexSegments[sequence.get(position-1)]);
+			return prefixes[position];
+		}
+
+		/** Segments from the position to the depot sink. */
+		List<Segment> getSuffix(int position) {
+			if(suffixes[position] == null)
+				suffixes[position] = (position == sequence.size()) ? vertexSegments[dataModel.C+1] : concatenate(vertexSegments[sequence.get(position)], getSuffix(position+1));
+			return suffixes[position];
+		}
+
+		/** Creates the route of a complete segment. */
+		Route createRoute(Segment segment) {
+			HashMap<Integer, Integer> route = new HashMap<Integer, Integer>(dataModel.C);
+			int[] routeSequence = new int[sequence.size()];
+			for (int k = 0; k < sequence.size(); k++) {
+				routeSequence[k] = sequence.get(k);
+				route.put(sequence.get(k), route.getOrDefault(sequence.get(k), 0)+1);
+			}
+			ArrayList<Integer> routeArcs = new ArrayList<Integer>(sequence.size()+1);
+			segment.addArcs(routeArcs);
+			int departureTime = (int) (segment.latest/10);
+			int chargingTime = dataModel.f_inverse[segment.energy];
+			int initialChargingTime = getLatestEndCharging(segment.latest)-chargingTime+1;
+			return new Route(creator, false, route, routeSequence, pricingProblem, segment.cost, departureTime, segment.energy, load, 0.0, routeArcs, initialChargingTime, chargingTime);
+		}
+	}
+
+	/**
+	 * Segment of a route with its arcs chosen. The completion time when it starts at s is max(s, earliest)+duration, and it is feasible if s &lt;= latest.
+	 * The arcs are stored as a tree of the concatenated segments (they are only listed for the best route).
+	 */
+	private static final class Segment {
+		final int cost; 						//cost
+		final int energy; 						//energy consumed
+		final int duration; 					//minimum duration
+		final int earliest; 					//earliest start with the minimum duration
+		final int latest; 						//latest start
+		final int first, last; 					//first and last vertices
+		final Segment left, right; 				//concatenated segments (null for a vertex)
+		final Arc arc; 							//arc between the concatenated segments
+
+		Segment(int cost, int energy, int duration, int earliest, int latest, int first, int last, Segment left, Arc arc, Segment right) {
+			this.cost = cost;
+			this.energy = energy;
+			this.duration = duration;
+			this.earliest = earliest;
+			this.latest = latest;
+			this.first = first;
+			this.last = last;
+			this.left = left;
+			this.arc = arc;
+			this.right = right;
+		}
+
+		/** Returns true if this segment dominates the other one (same first and last vertices). */
+		boolean dominates(Segment other) {
+			return cost<=other.cost && energy<=other.energy && duration<=other.duration && earliest+duration<=other.earliest+other.duration && latest>=other.latest;
+		}
+
+		/** Adds the ids of the arcs of the segment (in order). */
+		void addArcs(List<Integer> arcs) {
+			if(arc == null) return;
+			left.addArcs(arcs);
+			arcs.add(arc.id);
+			right.addArcs(arcs);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a set of instances (in ./data) on a bounded pool of threads in a single JVM.
+ * Each instance has its own solver (and CPLEX environments) and its own log file (./results/log): the standard output is replaced once
+ * by a stream that forwards the output of each thread (and of the threads it creates) to the log file of the instance being solved.
+ * The results are appended to ./results/output.txt as usual.
+ */
+public final class BatchRunner {
+
+	private static final InheritableThreadLocal<PrintStream> log = new InheritableThreadLocal<PrintStream>(); //log of the instance solved by the current thread
+	private static final PrintStream console = System.out; 				//original standard output (progress of the batch)
+
+	/** Main class.
+	 *  The args are instance names or glob patterns (e.g., "R1*-25"), optionally preceded by "-threads n" (number of instances solved in parallel).
+	 *  The instance files need to be in ./data
+	 * */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		//Arguments
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> patterns = new ArrayList<String>();
+		for (int k = 0; k < args.length; k++) {
+			if(args[k].equals("-threads")) threads = Integer.parseInt(args[++k]);
+			else patterns.add(args[k]);
+		}
+		if(patterns.isEmpty()) patterns.add("*");
+		List<String> instances = getInstances(patterns);
+
+		//Larger instances first (better balance of the workload)
+		instances.sort((instance1, instance2) -> Integer.compare(getSize(instance2), getSize(instance1)));
+		console.println(" - Solving " + instances.size() + " instances with " + threads + " threads");
+
+		//Route the standard output (and error) of each thread to its log file
+		System.setOut(new PrintStream(new LogStream(console), true));
+		System.setErr(new PrintStream(new LogStream(System.err), true));
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		AtomicInteger solved = new AtomicInteger();
+		long startTime = System.currentTimeMillis();
+		for(String instanceName: instances) {
+			pool.execute(() -> {
+				long time = solve(instanceName);
+				console.println(" - " + instanceName + ((time>=0) ? " solved in " + time/1000 + " s" : " failed (see its log file)")
+						+ " [" + solved.incrementAndGet() + "/" + instances.size() + "]");
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		console.println(" - Batch finished in " + (System.currentTimeMillis()-startTime)/1000 + " s");
+	}
+
+	/** Solves an instance (with its own log file). Returns the running time in milliseconds or -1 if the solver failed. */
+	private static long solve(String instanceName) {
+		long startTime = System.currentTimeMillis();
+		try (PrintStream instanceLog = new PrintStream(new FileOutputStream("./results/log/"+instanceName+".log"), true)) {
+			log.set(instanceLog);
+			try {
+				EVRPTW evrptw = new EVRPTW(instanceName, false);
+				new EVRPTWSolver(evrptw);
+				return System.currentTimeMillis()-startTime;
+			} catch (Exception | Error e) {
+				e.printStackTrace(instanceLog);
+				return -1;
+			} finally {
+				log.remove();
+			}
+		} catch (IOException e) {
+			e.printStackTrace(console);
+			return -1;
+		}
+	}
+
+	/** Returns the instances (files in ./data) that match at least one of the patterns. */
+	private static List<String> getInstances(List<String> patterns) {
+		List<PathMatcher> matchers = new ArrayList<PathMatcher>();
+		for(String pattern: patterns) matchers.add(FileSystems.getDefault().getPathMatcher("glob:"+pattern));
+		List<String> instances = new ArrayList<String>();
+		File[] files = new File("./data").listFiles((directory, name) -> name.endsWith(".xml"));
+		if(files == null) return instances;
+		for(File file: files) {
+			String instanceName = file.getName().substring(0, file.getName().length()-4);
+			for(PathMatcher matcher: matchers)
+				if(matcher.matches(Paths.get(instanceName))) {instances.add(instanceName); break;}
+		}
+		return instances;
+	}
+
+	/** Returns the number of customers of an instance (last two characters of its name). */
+	private static int getSize(String instanceName) {
+		return Integer.parseInt(instanceName.substring(Math.max(instanceName.length() - 2, 0)));
+	}
+
+	/** Stream that writes to the log of the current thread (or to the default stream when the thread is not solving an instance). */
+	private static final class LogStream extends OutputStream {
+
+		private final OutputStream defaultStream; 						//stream used outside the instances
+
+		private LogStream(OutputStream defaultStream) {
+			this.defaultStream = defaultStream;
+		}
+
+		private OutputStream target() {
+			PrintStream instanceLog = log.get();
+			return (instanceLog != null) ? instanceLog : defaultStream;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target().flush();
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package model;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -9,18 +8,12 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.PriorityQueue;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 import org.jorlib.frameworks.columnGeneration.model.ModelInterface;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import columnGeneration.Label;
+import columnGeneration.SolverTrace;
 
 /**
  * The Electric Vehicle Routing and Overnight Charging Scheduling Problem on a Multigraph
@@ -61,6 +54,30 @@ public final class EVRPTW implements ModelInterface {
 	public int cutsRootNode = 0; 							//cuts separated at the root node
 	public boolean[] infeasibleArcs; 						//infeasible arcs in the pricing problem
 
+	//Master problem formulation
+	public boolean differenceCapacityFormulation = false; 	//chargers capacity modeled with start/end events and occupancy variables (two non-zeros per column)
+	public boolean decomposedChargingFormulation = false; 	//routing variables linked to charging-assignment variables (one per feasible initial charging time)
+	public boolean setCoveringFormulation = false; 			//covering (>= 1) constraints for the customers (integer solutions are repaired into partitions)
+	public boolean farkasPricing = false; 					//Farkas pricing on infeasible restricted masters (instead of the artificial column)
+	public boolean cutPoolManagement = false; 				//inactive SRCs are removed from the MP and kept in a pool (re-added when violated)
+	public boolean capacityCuts = false; 					//rounded capacity cuts on customer subsets (robust: their duals are collected on the arcs)
+	public boolean chargingCuts = false; 					//SRCs combined with the chargers capacity constraint of a period
+
+	//Branching
+	public boolean reliabilityBranching = false; 			//candidates are evaluated by strong branching until their pseudocosts are reliable
+	public boolean compactNodeStorage = false; 				//nodes store only the columns and cuts added since their parent (materialized when solved)
+	public boolean constructiveHeuristic = false; 			//initial columns and upper bound from a savings heuristic with list scheduling of the charging intervals
+	public boolean divingHeuristic = false; 				//CG-based diving heuristic (fixing routes) at the root node and periodically in the tree
+	public boolean restrictedMasterHeuristic = false; 		//the column pool is periodically solved as a MIP on a background thread (instead of the MIP at the root node)
+	public boolean adaptiveLargeNeighborhoodSearch = false; //ALNS on a background thread (its solutions and routes are shared with the Branch-and-Price)
+	public boolean warmStart = false; 						//initial columns and upper bound from the saved solution (./results/solution) and column pool (./results/pool)
+	public int numberOfWorkers = 1; 						//workers exploring the tree in parallel (each one with its own copy of the instance)
+	public boolean checkpointing = false; 					//the search is saved periodically in ./results/checkpoint (and resumed from it)
+	public boolean solverTrace = false; 					//a record per CG iteration and node is written to ./results/trace
+	public SolverTrace trace; 								//trace shared by the workers (null unless solverTrace is enabled)
+	public boolean monitoring = false; 						//progress and metrics of the solvers exposed through JMX (SolverMonitor)
+	public SolverMonitor monitor; 							//monitor shared by the workers (null unless monitoring is enabled)
+
 
 	/**
 	 * Constructs a new mE-VRSPTW instance. 
@@ -68,6 +85,16 @@ public final class EVRPTW implements ModelInterface {
 	 * @throws IOException Throws IO exception when the instance cannot be found.
 	 */
 	public EVRPTW(String instanceName) throws IOException {
+		this(instanceName, true);
+	}
+
+	/**
+	 * Constructs a new mE-VRSPTW instance.
+	 * @param instanceName input instance.
+	 * @param redirectOutput whether the standard output is redirected to the log file of the instance.
+	 * @throws IOException Throws IO exception when the instance cannot be found.
+	 */
+	public EVRPTW(String instanceName, boolean redirectOutput) throws IOException {
 		this.instanceName = instanceName;
 		this.Delta = (instanceName.substring(0, 2).equals("R1") || instanceName.substring(0, 2).equals("C1") || 
 				instanceName.substring(0, 3).equals("RC1")) ? 7 : 12;
@@ -78,8 +105,10 @@ public final class EVRPTW implements ModelInterface {
 		this.numArcs = 0;
 
 		//create a new file output stream.
-		PrintStream fileOut = new PrintStream("./results/log/"+this.getName()+".log");
-		System.setOut(fileOut);
+		if(redirectOutput) {
+			PrintStream fileOut = new PrintStream("./results/log/"+this.getName()+".log");
+			System.setOut(fileOut);
+		}
 
 		//read the instance
 		readData();
@@ -88,6 +117,40 @@ public final class EVRPTW implements ModelInterface {
 		System.out.println(" - Full recharging time: " + this.f_inverse[this.E]);
 	}
 
+	/**
+	 * Returns an independent copy of the instance (read again) with the same settings.
+	 * The graph, vertices and arcs are modified by the pricing problems, so each worker of the parallel tree search needs its own copy.
+	 */
+	public EVRPTW copy() throws IOException {
+		EVRPTW copy = new EVRPTW(instanceName, false);
+		copy.differenceCapacityFormulation = differenceCapacityFormulation;
+		copy.decomposedChargingFormulation = decomposedChargingFormulation;
+		copy.setCoveringFormulation = setCoveringFormulation;
+		copy.farkasPricing = farkasPricing;
+		copy.cutPoolManagement = cutPoolManagement;
+		copy.capacityCuts = capacityCuts;
+		copy.chargingCuts = chargingCuts;
+		copy.reliabilityBranching = reliabilityBranching;
+		copy.compactNodeStorage = compactNodeStorage;
+		copy.constructiveHeuristic = constructiveHeuristic;
+		copy.divingHeuristic = divingHeuristic;
+		copy.restrictedMasterHeuristic = restrictedMasterHeuristic;
+		copy.adaptiveLargeNeighborhoodSearch = adaptiveLargeNeighborhoodSearch;
+		copy.warmStart = warmStart;
+		copy.numberOfWorkers = numberOfWorkers;
+		copy.checkpointing = checkpointing;
+		copy.solverTrace = solverTrace;
+		copy.trace = trace;
+		copy.monitoring = monitoring;
+		copy.monitor = monitor;
+		return copy;
+	}
+
+	/** Returns true if the tree is explored by the parallel tree search (several workers or checkpoints of the open nodes). */
+	public boolean usesParallelTreeSearch() {
+		return numberOfWorkers>1 || checkpointing;
+	}
+
 	/** Name of the current instance */
 	@Override
 	public String getName() {
@@ -97,6 +160,7 @@ public final class EVRPTW implements ModelInterface {
 	/**
 	 * Reads an instance.
 	 * The file must be stored in ./data/instances and following the guidelines of the VRPREP. 
+	 * The parsed data is cached in ./data/.cache (see {@link InstanceFile}).
 	 */
 	private void readData() {
 		try {
@@ -105,32 +169,27 @@ public final class EVRPTW implements ModelInterface {
 			System.out.println(" - ================ LOADING INSTANCE ================");
 			System.out.println(" - Instance: " + this.getName());
 
-			File xmlFile = new File("./data/"+this.getName()+".xml");
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document doc = builder.parse(xmlFile);
+			InstanceFile instance = InstanceFile.read(this.getName());
 
 			//Load initial information
-			loadInitialInformation(doc);
+			loadInitialInformation(instance);
 
 			//we need T_tilde first
-			Element vehicleProfileElement = (Element) doc.getElementsByTagName("vehicle_profile").item(0);
-			Element customElements = (Element) vehicleProfileElement.getElementsByTagName("custom").item(0);
-			this.last_charging_period = Integer.parseInt(customElements.getElementsByTagName("last_charging_period").item(0).getTextContent())+1;
+			this.last_charging_period = instance.lastChargingPeriod+1;
 
 			//Load vertices
 			this.numVertices = V+last_charging_period+1;
 			this.vertices = new Vertex[numVertices];
-			loadVertices(doc);
+			loadVertices(instance);
 			this.T_min = vertices[0].opening_tw;
 
 			//Load arcs
 			int auxNumArcs = 2*(V*V-V)+3*last_charging_period;
 			arcs = new Arc[auxNumArcs];
-			loadArcs(doc);
+			loadArcs(instance);
 
 			//Load fleet (vehicle profile and charging information)
-			loadFleet(doc);
+			loadFleet(instance);
 
 			/** Neighborhoods (ng-path). **/
 			for (int i = 1; i <= this.C; i++) {
@@ -192,101 +251,55 @@ public final class EVRPTW implements ModelInterface {
 	}
 
 	/** Defines some parameters (according to the information in the .xml file). */
-	public void loadInitialInformation(Document doc) {
-		Element infoElement = (Element) doc.getElementsByTagName("info").item(0);
+	public void loadInitialInformation(InstanceFile instance) {
 		//number of chargers, number of arcs, two alternatives pairs, and average number of alternatives
-		this.B = Integer.parseInt(infoElement.getElementsByTagName("num_chargers").item(0).getTextContent());
-		this.numArcsRoadNetwork = Integer.parseInt(infoElement.getElementsByTagName("num_arcs").item(0).getTextContent());
-		this.twoAlternativesPairs = Integer.parseInt(infoElement.getElementsByTagName("two_alternatives_pairs").item(0).getTextContent());
-		this.avgAlternatives = Double.parseDouble(infoElement.getElementsByTagName("avg_alternatives").item(0).getTextContent());
+		this.B = instance.chargers;
+		this.numArcsRoadNetwork = instance.numArcs;
+		this.twoAlternativesPairs = instance.twoAlternativesPairs;
+		this.avgAlternatives = instance.avgAlternatives;
 	}
 
 	/** Defines the vertices (according to the information in the .xml file) */
-	public void loadVertices(Document doc) {
-
-		NodeList nodeNodes = doc.getElementsByTagName("node");
-		for (int i = 0; i < nodeNodes.getLength(); i++) {
-
-			Node node = nodeNodes.item(i);
-			Element nodeElement = (Element) node;
-
-			//id, coordx, coordy, and load
-			int id = Integer.parseInt(nodeElement.getAttribute("id"));
-			int coordx = Integer.parseInt(nodeElement.getElementsByTagName("cx").item(0).getTextContent());
-			int coordy = Integer.parseInt(nodeElement.getElementsByTagName("cy").item(0).getTextContent());
-			int load = Integer.parseInt(nodeElement.getElementsByTagName("load").item(0).getTextContent());
-
-			//time windows
-			Element timeWindowsElement = (Element) nodeElement.getElementsByTagName("tw").item(0);
-			int opening_tw = Integer.parseInt(timeWindowsElement.getElementsByTagName("start").item(0).getTextContent());
-			int closing_tw = Integer.parseInt(timeWindowsElement.getElementsByTagName("end").item(0).getTextContent());
+	public void loadVertices(InstanceFile instance) {
 
-			vertices[id] = new Vertex(id, coordx, coordy, load, opening_tw, closing_tw);
+		for (int[] node: instance.nodes) {
+			//id, coordx, coordy, load, and time windows
+			int id = node[0];
+			vertices[id] = new Vertex(id, node[1], node[2], node[3], node[4], node[5]);
 			graph.addVertex(id);
 		}
 	}
 
 
 	/** Defines the arcs (according to the information in the .xml file). */
-	public void loadArcs(Document doc) {
+	public void loadArcs(InstanceFile instance) {
 
-		NodeList linkNodes = doc.getElementsByTagName("link");
-		this.numArcsRoadNetwork = linkNodes.getLength();
+		this.numArcsRoadNetwork = instance.links.length;
 
-		for (int i = 0; i < linkNodes.getLength(); i++) {
+		for (int[] link: instance.links) {
 			this.numArcs++;
-			Node link = linkNodes.item(i);
-			Element linkElement = (Element) link;
-
-			//id, head and tail
-			int id = Integer.parseInt(linkElement.getAttribute("id"));
-			int tail = Integer.parseInt(linkElement.getAttribute("tail"));
-			int head = Integer.parseInt(linkElement.getAttribute("head"));
-
-			//travel cost and travel time
-			int cost = Integer.parseInt(linkElement.getElementsByTagName("travel_cost").item(0).getTextContent());
-			int time = Integer.parseInt(linkElement.getElementsByTagName("travel_time").item(0).getTextContent());
-
-			//custom elements (energy and minimum values)
-			Element customElements = (Element) linkElement.getElementsByTagName("custom").item(0);
-			int energy = Integer.parseInt(customElements.getElementsByTagName("energy_consumption").item(0).getTextContent());
-			int minimumCost = Integer.parseInt(customElements.getElementsByTagName("min_cost").item(0).getTextContent());
-			int minimumTime = Integer.parseInt(customElements.getElementsByTagName("min_time").item(0).getTextContent());
-			int minimumEnergy = Integer.parseInt(customElements.getElementsByTagName("min_energy").item(0).getTextContent());
-			boolean minCostAlternative = Boolean.parseBoolean(customElements.getElementsByTagName("is_min_cost").item(0).getTextContent());
-
-			Arc newArc = new Arc(id, tail, head, cost, time, energy, minimumCost, minimumTime,
-					minimumEnergy, minCostAlternative);
+
+			//id, tail, head, travel cost, travel time, energy, minimum values, and min. cost alternative
+			int id = link[0];
+			int tail = link[1];
+			int head = link[2];
+			Arc newArc = new Arc(id, tail, head, link[3], link[4], link[5], link[6], link[7],
+					link[8], link[9]==1);
 			arcs[id] = newArc;
 			graph.addEdge(tail, head, newArc);
 		}
 	}
 
-	/** Defines the arcs (according to the information in the .xml file). */
-	public void loadFleet(Document doc) {
-
-		Element vehicleProfileElement = (Element) doc.getElementsByTagName("vehicle_profile").item(0);
-		//vehicles' load capacity
-		this.Q = Integer.parseInt(vehicleProfileElement.getElementsByTagName("capacity").item(0).getTextContent());
+	/** Defines the fleet (according to the information in the .xml file). */
+	public void loadFleet(InstanceFile instance) {
 
-		//custom elements (last charging time and energy capacity)
-		Element customElements = (Element) vehicleProfileElement.getElementsByTagName("custom").item(0);
-		//		this.T_tilde = Integer.parseInt(customElements.getElementsByTagName("last_charging_time").item(0).getTextContent())+1;
-		this.E = Integer.parseInt(customElements.getElementsByTagName("energy_capacity").item(0).getTextContent());
+		//vehicles' load capacity and energy capacity
+		this.Q = instance.capacity;
+		this.E = instance.energyCapacity;
 
 		//inverse recharging function
 		this.f_inverse= new int[E+1]; //piecewise-linear function (rounded up)
-		Element inverseChargingFunctionElement = (Element) customElements.getElementsByTagName("inverse_recharging_function").item(0);
-		NodeList breakpointNodes = inverseChargingFunctionElement.getElementsByTagName("breakpoint");
-		for (int i = 0; i < breakpointNodes.getLength(); i++) {
-			Node breakpoint = breakpointNodes.item(i);
-			Element breakpointElement = (Element) breakpoint;
-			int energyLevel = Integer.parseInt(breakpointElement.getElementsByTagName("energy_level").item(0).getTextContent());
-			int timesteps = Integer.parseInt(breakpointElement.getElementsByTagName("periods").item(0).getTextContent());
-			f_inverse[energyLevel] = timesteps;
-		}
-
-
+		for (int[] breakpoint: instance.breakpoints) f_inverse[breakpoint[0]] = breakpoint[1];
 	}
 	/** Class that represents a vertex. */
 	public class Vertex{
@@ -1,15 +1,17 @@
 package model;
 
 import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.AbstractBranchAndPrice;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.AbstractBranchCreator;
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.BAPNode;
@@ -21,11 +23,15 @@ import org.jorlib.frameworks.columnGeneration.branchAndPrice.EventHandling.Proce
 import org.jorlib.frameworks.columnGeneration.branchAndPrice.EventHandling.PruneNodeEvent;
 import org.jorlib.frameworks.columnGeneration.colgenMain.AbstractColumn;
 import org.jorlib.frameworks.columnGeneration.io.SimpleDebugger;
+import org.jorlib.frameworks.columnGeneration.master.cutGeneration.AbstractCutGenerator;
 import org.jorlib.frameworks.columnGeneration.master.cutGeneration.CutHandler;
 import org.jorlib.frameworks.columnGeneration.pricing.AbstractPricingProblemSolver;
 import org.jorlib.frameworks.columnGeneration.util.Configuration;
+import alns.ALNS;
 import branchAndPrice.BranchAndPrice;
 import branchAndPrice.BranchingRules;
+import branchAndPrice.ParallelBranchAndPrice;
+import columnGeneration.CapacityInequalityGenerator;
 import columnGeneration.ExactLabelingMultigraphPricingProblemSolver;
 import columnGeneration.HeuristicMinCostLabelingPricingProblemSolver;
 import columnGeneration.HeuristicLabelingMultigraphPricingProblemSolver;
@@ -33,80 +39,142 @@ import columnGeneration.HeuristicLabelingPricingProblemSolver;
 import columnGeneration.Master;
 import columnGeneration.PricingProblem;
 import columnGeneration.Route;
+import columnGeneration.SolverTrace;
 import columnGeneration.SubsetRowInequalityGenerator;
 import columnGeneration.VRPMasterData;
-import model.EVRPTW.Arc;
+import heuristics.ConstructiveHeuristic;
+import heuristics.RouteEvaluator;
 
 /**
  * Solver class for the mE-VRSPTW (BPC algorithm).
  */
 public final class EVRPTWSolver {
 
+	private static final Object outputLock = new Object(); 	//lock on ./results/output.txt (instances may be solved in parallel)
 	private final EVRPTW dataModel;  		//information about the instance
 	private int upperBound; 				//upper bound on column generation solution (stronger is better).
 
-	public EVRPTWSolver(EVRPTW dataModel) throws FileNotFoundException{
+	public EVRPTWSolver(EVRPTW dataModel) throws IOException{
 
 		this.dataModel = dataModel;
 
 		//Properties
 		Properties properties = new Properties();
-		properties.setProperty("MAXTHREADS", "1"); //only one thread
+		properties.setProperty("MAXTHREADS", "1"); //only one thread (per worker)
 		Configuration.readFromFile(properties);
 
-		//Create a cutHandler, then create a SRC AbstractInequality Generator and add it to the handler
-		CutHandler<EVRPTW, VRPMasterData> cutHandler=new CutHandler<>();
-		SubsetRowInequalityGenerator cutGen = new SubsetRowInequalityGenerator(dataModel);
-		cutHandler.addCutGenerator(cutGen);
-
-		//Create the pricing problem
-		PricingProblem pricingProblem = new PricingProblem(dataModel, "EVRSPTWPricing");
-
-		//Create the master problem
-		Master master=new Master(dataModel, pricingProblem, cutHandler);
-
-		//Define which solvers to use (one or more)
-		List<Class<? extends AbstractPricingProblemSolver<EVRPTW, Route, PricingProblem>>> solvers= new ArrayList<>();
-		solvers.add(HeuristicLabelingPricingProblemSolver.class);
-		solvers.add(HeuristicMinCostLabelingPricingProblemSolver.class);
-		solvers.add(HeuristicLabelingMultigraphPricingProblemSolver.class);
-		solvers.add(ExactLabelingMultigraphPricingProblemSolver.class);
-		
-		//Create a set of initial columns and use it as an upper bound
-		List<Route> initSolution=this.getInitialSolution(pricingProblem);
-
-		//Define Branch creators
-		List<? extends AbstractBranchCreator<EVRPTW, Route, PricingProblem>> branchCreators= Collections.singletonList(new BranchingRules(dataModel, pricingProblem));
-
-		//Create a Branch-and-Price instance
-		BranchAndPrice bap=new BranchAndPrice(dataModel, master, pricingProblem, solvers, branchCreators, upperBound, initSolution);
-
-		//OPTIONAL: Attach a debugger
-		SimpleDebugger debugger=new PersonalizedDebbuger(bap, cutHandler, true);
-
-		//Solve the problem problem through Branch-and-Price
-		bap.runBranchAndPrice(System.currentTimeMillis()+7200000L);
-
-		//Print solution
-		PrintWriter out;
-		try {
-			out = new PrintWriter(new BufferedWriter(new FileWriter("./results/output.txt", true)));
-			out.print(dataModel.getName()+"\t"+bap.getSolution().size()+"\t"+	getScaledObjective(bap.getBoundRootNode())+"\t"+ dataModel.columnsRootNode + "\t"+ dataModel.cutsRootNode+ "\t"
-					+bap.getNumberOfProcessedNodes() +"\t" + getTimeInSeconds(bap.getMasterSolveTime())+"\t"+getTimeInSeconds(bap.getPricingSolveTime())+"\t"+getTimeInSeconds(bap.getSolveTime()) +"\t"+ getScaledObjective(bap.getObjective())
-					+ "\t");
-
-			double[] chargingInformation = getChargingInformation(bap.getSolution());
-			out.print(dataModel.B +  "\t" + chargingInformation[0] + "\t"+ chargingInformation[1] + "\t"+ chargingInformation[2]);
-			out.print("\n");
-			out.close();
-
-		} catch (IOException e) {
-			// Do nothing
+		//OPTIONAL: Trace of the CG iterations and nodes (shared by the copies of the instance)
+		if(dataModel.solverTrace) dataModel.trace = new SolverTrace(dataModel.getName());
+
+		//OPTIONAL: Progress and metrics of the solvers through JMX (shared by the copies of the instance)
+		if(dataModel.monitoring) {dataModel.monitor = new SolverMonitor(dataModel); dataModel.monitor.register();}
+
+		//Create a Branch-and-Price for each worker (only one unless the tree is explored in parallel)
+		List<BranchAndPrice> branchAndPrices = new ArrayList<>();
+		List<CutHandler<EVRPTW, VRPMasterData>> cutHandlers = new ArrayList<>();
+		List<Route> initSolution = null;
+		PricingProblem firstPricingProblem = null;
+		List<AbstractCutGenerator<EVRPTW, ?>> firstCutGenerators = new ArrayList<>();
+		for (int k = 0; k < Math.max(dataModel.numberOfWorkers, 1); k++) {
+			EVRPTW workerModel = (k == 0) ? dataModel : dataModel.copy();
+			if(dataModel.usesParallelTreeSearch()) workerModel.infeasibleArcs = new boolean[workerModel.numArcs]; //shared by the pricing solvers of the worker
+
+			//Create a cutHandler, then create a SRC AbstractInequality Generator and add it to the handler
+			CutHandler<EVRPTW, VRPMasterData> cutHandler=new CutHandler<>();
+			SubsetRowInequalityGenerator cutGen = new SubsetRowInequalityGenerator(workerModel);
+			cutHandler.addCutGenerator(cutGen);
+			CapacityInequalityGenerator capacityCutGen = workerModel.capacityCuts ? new CapacityInequalityGenerator(workerModel) : null;
+			if(capacityCutGen != null) cutHandler.addCutGenerator(capacityCutGen);
+			if(k == 0) {firstCutGenerators.add(cutGen); if(capacityCutGen != null) firstCutGenerators.add(capacityCutGen);}
+
+			//Create the pricing problem
+			PricingProblem pricingProblem = new PricingProblem(workerModel, "EVRSPTWPricing");
+
+			//Create the master problem
+			Master master=new Master(workerModel, pricingProblem, cutHandler);
+
+			//Define which solvers to use (one or more)
+			List<Class<? extends AbstractPricingProblemSolver<EVRPTW, Route, PricingProblem>>> solvers= new ArrayList<>();
+			solvers.add(HeuristicLabelingPricingProblemSolver.class);
+			solvers.add(HeuristicMinCostLabelingPricingProblemSolver.class);
+			solvers.add(HeuristicLabelingMultigraphPricingProblemSolver.class);
+			solvers.add(ExactLabelingMultigraphPricingProblemSolver.class);
+
+			//Create a set of initial columns and use it as an upper bound (computed once; the other workers get copies associated with their pricing problem)
+			List<Route> workerSolution;
+			if(k == 0) {
+				workerSolution=this.getInitialSolution(workerModel, pricingProblem);
+				initSolution = workerSolution; firstPricingProblem = pricingProblem;
+			}else {
+				workerSolution = new ArrayList<Route>(initSolution.size());
+				for(Route column: initSolution) {
+					Route newColumn = column.clone(pricingProblem);
+					newColumn.value = column.value;
+					newColumn.BBnode = column.BBnode;
+					workerSolution.add(newColumn);
+				}
+			}
+
+			//Define Branch creators
+			List<? extends AbstractBranchCreator<EVRPTW, Route, PricingProblem>> branchCreators= Collections.singletonList(new BranchingRules(workerModel, pricingProblem));
+
+			//Create a Branch-and-Price instance
+			branchAndPrices.add(new BranchAndPrice(workerModel, master, pricingProblem, solvers, branchCreators, upperBound, workerSolution));
+			cutHandlers.add(cutHandler);
+		}
+
+		//OPTIONAL: Run a metaheuristic alongside the Branch-and-Price (on its own copy of the instance)
+		ALNS alns = null;
+		if(dataModel.adaptiveLargeNeighborhoodSearch) {
+			alns = new ALNS(dataModel.copy(), firstPricingProblem);
+			for(BranchAndPrice bap: branchAndPrices) bap.setALNS(alns);
+			alns.start(System.currentTimeMillis()+7200000L);
+		}
+
+		if(!dataModel.usesParallelTreeSearch()) {
+			BranchAndPrice bap = branchAndPrices.get(0);
+
+			//OPTIONAL: Attach a debugger
+			SimpleDebugger debugger=new PersonalizedDebbuger(bap, cutHandlers.get(0), true);
+
+			//Solve the problem problem through Branch-and-Price
+			bap.runBranchAndPrice(System.currentTimeMillis()+7200000L);
+			printSolution(bap.getSolution(), bap.getBoundRootNode(), bap.getNumberOfProcessedNodes(), bap.getMasterSolveTime(), bap.getPricingSolveTime(), bap.getSolveTime(), bap.getObjective());
+		}else {
+			//Solve the problem problem through a parallel Branch-and-Price (optionally, resumed from and saved in a checkpoint)
+			ParallelBranchAndPrice bap = new ParallelBranchAndPrice(branchAndPrices, initSolution, upperBound);
+			if(dataModel.checkpointing) bap.setCheckpoint(new File("./results/checkpoint/"+dataModel.getName()+".bin"), firstCutGenerators);
+			bap.runBranchAndPrice(System.currentTimeMillis()+7200000L);
+			printSolution(bap.getSolution(), bap.getBoundRootNode(), bap.getNumberOfProcessedNodes(), bap.getMasterSolveTime(), bap.getPricingSolveTime(), bap.getSolveTime(), bap.getObjective());
 		}
 
+		//Save the columns of the root node (warm start of the next runs)
+		for(BranchAndPrice bap: branchAndPrices)
+			if(bap.getRootColumns() != null) {WarmStart.writeColumnPool(dataModel, bap.getRootColumns()); break;}
+
 		//Clean up:
-		bap.close(); 		//close master and pricing problems
-		cutHandler.close(); //close the cut handler. The close() call is propagated to all registered AbstractCutGenerator classes
+		if(alns != null) alns.stop(); 										//stop the metaheuristic
+		for(BranchAndPrice bap: branchAndPrices) bap.close(); 				//close master and pricing problems
+		for(CutHandler<EVRPTW, VRPMasterData> cutHandler: cutHandlers) cutHandler.close(); //close the cut handler. The close() call is propagated to all registered AbstractCutGenerator classes
+		if(dataModel.trace != null) dataModel.trace.close(); 				//close the trace file
+		if(dataModel.monitor != null) dataModel.monitor.unregister(); 		//unregister the MBean
+	}
+
+	/** Prints the solution and the statistics of the Branch-and-Price. */
+	private void printSolution(List<Route> solution, double boundRootNode, int processedNodes, long masterSolveTime, long pricingSolveTime, long solveTime, double objective) {
+		double[] chargingInformation = getChargingInformation(solution);
+		String line = dataModel.getName()+"\t"+solution.size()+"\t"+	getScaledObjective(boundRootNode)+"\t"+ dataModel.columnsRootNode + "\t"+ dataModel.cutsRootNode+ "\t"
+				+processedNodes +"\t" + getTimeInSeconds(masterSolveTime)+"\t"+getTimeInSeconds(pricingSolveTime)+"\t"+getTimeInSeconds(solveTime) +"\t"+ getScaledObjective(objective)
+				+ "\t" + dataModel.B +  "\t" + chargingInformation[0] + "\t"+ chargingInformation[1] + "\t"+ chargingInformation[2];
+
+		//one line per instance (instances may be solved in parallel, see BatchRunner)
+		synchronized (outputLock) {
+			try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter("./results/output.txt", true)))) {
+				out.print(line+"\n");
+			} catch (IOException e) {
+				// Do nothing
+			}
+		}
 	}
 
 	/** Computes the charging schedule statistics for a given solution. */
@@ -153,9 +221,11 @@ public final class EVRPTWSolver {
 	/**
 	 * Create an initial solution for the mE-VRSPTW.
 	 * Simple initial solution: visit each customer with a single vehicle and assign a charging schedule. 
+	 * Optionally, the routes of the constructive heuristic are added (with value 1) and its cost is used as upper bound.
+	 * Optionally, the routes saved by a previous run are added (see {@link WarmStart}).
 	 * @return initial set of routes
 	 */
-	private List<Route> getInitialSolution(PricingProblem pricingProblem){
+	private List<Route> getInitialSolution(EVRPTW dataModel, PricingProblem pricingProblem){
 
 		List<Route> initSolution = new ArrayList<>();
 
@@ -166,30 +236,48 @@ public final class EVRPTWSolver {
 		upperBound = (int) Math.pow(10, 20);
 		initSolution.add(new Route("initSolution", true, route, routeSequence, pricingProblem, (int) Math.pow(10, 20), 0, 0, 0, 0.0, new ArrayList<Integer>(), 0, 0)); //dummy 
 
-		//Dummy routes (possibly feasible)
+		//Dummy routes (cheapest feasible choice of the parallel arcs, latest charging interval)
+		RouteEvaluator evaluator = new RouteEvaluator(dataModel, pricingProblem, "initSolution");
 		for(int i=1; i<=dataModel.C; i++){ //a route for each customer
-			route = new HashMap<Integer, Integer>();
-			route.put(i, 1);
-			boolean added = false;
-			for(Arc arc: dataModel.graph.getAllEdges(0, i)) {
-				if(added) break;
-				for(Arc arc2: dataModel.graph.getAllEdges(i, dataModel.C+1)) {
-					int cost = arc.cost+arc2.cost;
-					int energy = arc.energy+arc2.energy;
-					if(energy>dataModel.E) continue;
-					routeSequence = new int[] {i};
-					ArrayList<Integer> arcs = new ArrayList<Integer>(dataModel.C);
-					arcs.add(arc.id);arcs.add(arc2.id);
-					int latestDeparture = dataModel.vertices[i].closing_tw-arc.time;
-					latestDeparture = (int) (latestDeparture/10);
-					int initialChargingTime = latestDeparture-dataModel.f_inverse[energy];
-
-					//Add the route
-					Route column=new Route("initSolution", false, route, routeSequence, pricingProblem, cost, latestDeparture, energy, dataModel.vertices[i].load, 0.0, arcs, initialChargingTime, dataModel.f_inverse[energy]);
+			Route column = evaluator.evaluate(Collections.singletonList(i));
+			if(column == null) continue;
+			column.BBnode=0;
+			initSolution.add(column);
+		}
+
+		//Constructive heuristic (initial upper bound)
+		if(dataModel.constructiveHeuristic) {
+			List<Route> heuristicSolution = new ConstructiveHeuristic(dataModel, evaluator).solve();
+			if(heuristicSolution != null) {
+				upperBound = 0;
+				for(Route column: heuristicSolution) {
+					upperBound+=column.cost;
 					column.BBnode=0;
-					initSolution.add(column);
-					added = true;
-					break;
+					column.value=1;
+					int index = initSolution.indexOf(column);
+					if(index>=0) initSolution.get(index).value=1;
+					else initSolution.add(column);
+				}
+			}
+		}
+
+		//Warm start: saved column pool and solution (initial upper bound if it is better)
+		if(dataModel.warmStart) {
+			WarmStart warmStart = new WarmStart(dataModel, pricingProblem);
+			Set<Route> columns = new HashSet<Route>(initSolution);
+			for(Route column: warmStart.readColumnPool())
+				if(columns.add(column)) initSolution.add(column);
+			List<Route> savedSolution = warmStart.readSolution();
+			int savedCost = 0;
+			if(savedSolution != null) for(Route column: savedSolution) savedCost+=column.cost;
+			if(savedSolution != null && savedCost<upperBound) {
+				upperBound = savedCost;
+				for(Route column: initSolution) column.value=0; //previous incumbent (constructive heuristic)
+				for(Route column: savedSolution) {
+					column.value=1;
+					int index = initSolution.indexOf(column);
+					if(index>=0) initSolution.get(index).value=1;
+					else initSolution.add(column);
 				}
 			}
 		}
@@ -252,6 +340,8 @@ public final class EVRPTWSolver {
 		public void processNextNode(ProcessingNextNodeEvent processingNextNodeEvent) {
 			logger.debug("================ PROCESSING NODE {} ================", processingNextNodeEvent.node.nodeID);
 			logger.debug("Nodes remaining in queue: {} - Node bound: {} - Incumbent solution: {}",new Object[]{processingNextNodeEvent.nodesInQueue, processingNextNodeEvent.node.getBound(), processingNextNodeEvent.objectiveIncumbentSolution});
+			if(dataModel.monitor != null) //best node first: the bound of the node is the bound of the tree
+				dataModel.monitor.nodeStarted(processingNextNodeEvent.node.getRootPath().size()-1, processingNextNodeEvent.node.getBound(), processingNextNodeEvent.objectiveIncumbentSolution, bap.getSolution(), processingNextNodeEvent.nodesInQueue);
 		}
 		@Override
 		public void pruneNode(PruneNodeEvent pruneNodeEvent) {
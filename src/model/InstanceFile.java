@@ -0,0 +1,198 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Raw data of an instance (.xml file following the guidelines of the VRPREP).
+ * The file is read in one pass with a streaming (StAX) parser, and the data is stored in a compact binary cache (./data/.cache)
+ * whose name includes a hash of the .xml file. Later runs map the cache file into memory and skip the parsing.
+ */
+public final class InstanceFile {
+
+	public static boolean useCache = true; 					//if true, the binary cache is read (and written when missing)
+	private static final int MAGIC = 0x45565250; 			//first int of a cache file
+	private static final int VERSION = 1; 					//version of the cache format
+
+	public int chargers; 									//number of chargers
+	public int numArcs; 									//number of arcs (information of the instance)
+	public int twoAlternativesPairs; 						//number of node pairs with two alternatives to travel
+	public double avgAlternatives; 							//avg. number of alternatives to travel
+	public int lastChargingPeriod; 							//last charging period (as in the file)
+	public int capacity; 									//load capacity
+	public int energyCapacity; 								//energy capacity
+	public int[][] nodes; 									//id, cx, cy, load, start and end of the time window of each node
+	public int[][] links; 									//id, tail, head, cost, time, energy, min. cost, min. time, min. energy and is min. cost (0/1) of each link
+	public int[][] breakpoints; 							//energy level and periods of each breakpoint of the inverse recharging function
+
+	private InstanceFile() {
+	}
+
+	/**
+	 * Reads an instance (from the cache if possible).
+	 * @param instanceName instance name (the file must be ./data/instanceName.xml)
+	 * @throws IOException Throws IO exception when the instance cannot be read.
+	 */
+	public static InstanceFile read(String instanceName) throws IOException {
+		File xmlFile = new File("./data/"+instanceName+".xml");
+		if(!useCache) return parse(xmlFile);
+
+		File cacheFile = new File("./data/.cache/"+instanceName+"-"+hash(xmlFile)+".bin");
+		if(cacheFile.exists()) {
+			try {return load(cacheFile);}
+			catch (IOException e) {System.out.println(" - Invalid instance cache (it is rebuilt): " + cacheFile);}
+		}
+		InstanceFile instance = parse(xmlFile);
+		try {instance.store(cacheFile);}
+		catch (IOException e) {System.out.println(" - The instance cache could not be written: " + e.getMessage());}
+		return instance;
+	}
+
+	/** Parses the .xml file in one pass (StAX). */
+	private static InstanceFile parse(File xmlFile) throws IOException {
+		InstanceFile instance = new InstanceFile();
+		List<int[]> nodes = new ArrayList<int[]>();
+		List<int[]> links = new ArrayList<int[]>();
+		List<int[]> breakpoints = new ArrayList<int[]>();
+		int[] node = null; int[] link = null; int[] breakpoint = null;
+		boolean inverseFunction = false;
+
+		try(InputStream in = new FileInputStream(xmlFile)) {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					switch(reader.getLocalName()) {
+					//elements with children
+					case "node": node = new int[6]; node[0] = Integer.parseInt(reader.getAttributeValue(null, "id")); break;
+					case "link": link = new int[10]; link[0] = Integer.parseInt(reader.getAttributeValue(null, "id"));
+					link[1] = Integer.parseInt(reader.getAttributeValue(null, "tail")); link[2] = Integer.parseInt(reader.getAttributeValue(null, "head")); break;
+					case "inverse_recharging_function": inverseFunction = true; break;
+					case "breakpoint": if(inverseFunction) breakpoint = new int[2]; break;
+					//information
+					case "num_chargers": instance.chargers = Integer.parseInt(reader.getElementText().trim()); break;
+					case "num_arcs": instance.numArcs = Integer.parseInt(reader.getElementText().trim()); break;
+					case "two_alternatives_pairs": instance.twoAlternativesPairs = Integer.parseInt(reader.getElementText().trim()); break;
+					case "avg_alternatives": instance.avgAlternatives = Double.parseDouble(reader.getElementText().trim()); break;
+					//nodes
+					case "cx": node[1] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "cy": node[2] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "load": node[3] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "start": node[4] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "end": node[5] = Integer.parseInt(reader.getElementText().trim()); break;
+					//links
+					case "travel_cost": link[3] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "travel_time": link[4] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "energy_consumption": link[5] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "min_cost": link[6] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "min_time": link[7] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "min_energy": link[8] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "is_min_cost": link[9] = Boolean.parseBoolean(reader.getElementText().trim()) ? 1 : 0; break;
+					//fleet
+					case "capacity": instance.capacity = Integer.parseInt(reader.getElementText().trim()); break;
+					case "last_charging_period": instance.lastChargingPeriod = Integer.parseInt(reader.getElementText().trim()); break;
+					case "energy_capacity": instance.energyCapacity = Integer.parseInt(reader.getElementText().trim()); break;
+					case "energy_level": if(breakpoint != null) breakpoint[0] = Integer.parseInt(reader.getElementText().trim()); break;
+					case "periods": if(breakpoint != null) breakpoint[1] = Integer.parseInt(reader.getElementText().trim()); break;
+					default: break;
+					}
+				}
+				else if(event == XMLStreamConstants.END_ELEMENT) {
+					switch(reader.getLocalName()) {
+					case "node": nodes.add(node); node = null; break;
+					case "link": links.add(link); link = null; break;
+					case "breakpoint": if(breakpoint != null) breakpoints.add(breakpoint); breakpoint = null; break;
+					case "inverse_recharging_function": inverseFunction = false; break;
+					default: break;
+					}
+				}
+			}
+			reader.close();
+		} catch (XMLStreamException | NullPointerException | NumberFormatException e) {
+			throw new IOException("Invalid instance file " + xmlFile + ": " + e.getMessage(), e);
+		}
+		instance.nodes = nodes.toArray(new int[0][]);
+		instance.links = links.toArray(new int[0][]);
+		instance.breakpoints = breakpoints.toArray(new int[0][]);
+		return instance;
+	}
+
+	/** Loads a cache file (mapped into memory). */
+	private static InstanceFile load(File cacheFile) throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(cacheFile, "r"); FileChannel channel = file.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) throw new IOException("Unknown format");
+			InstanceFile instance = new InstanceFile();
+			instance.chargers = buffer.getInt();
+			instance.numArcs = buffer.getInt();
+			instance.twoAlternativesPairs = buffer.getInt();
+			instance.avgAlternatives = buffer.getDouble();
+			instance.lastChargingPeriod = buffer.getInt();
+			instance.capacity = buffer.getInt();
+			instance.energyCapacity = buffer.getInt();
+			instance.nodes = new int[buffer.getInt()][6];
+			for(int[] node: instance.nodes) for (int k = 0; k < node.length; k++) node[k] = buffer.getInt();
+			instance.links = new int[buffer.getInt()][10];
+			for(int[] link: instance.links) for (int k = 0; k < link.length; k++) link[k] = buffer.getInt();
+			instance.breakpoints = new int[buffer.getInt()][2];
+			for(int[] breakpoint: instance.breakpoints) for (int k = 0; k < breakpoint.length; k++) breakpoint[k] = buffer.getInt();
+			return instance;
+		} catch (RuntimeException e) { //truncated file
+			throw new IOException("Invalid cache file " + cacheFile, e);
+		}
+	}
+
+	/** Writes the cache file (through a temporary file, so that concurrent runs never read a partial file). */
+	private void store(File cacheFile) throws IOException {
+		cacheFile.getParentFile().mkdirs();
+		File temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(chargers);
+			out.writeInt(numArcs);
+			out.writeInt(twoAlternativesPairs);
+			out.writeDouble(avgAlternatives);
+			out.writeInt(lastChargingPeriod);
+			out.writeInt(capacity);
+			out.writeInt(energyCapacity);
+			for(int[][] table: new int[][][] {nodes, links, breakpoints}) {
+				out.writeInt(table.length);
+				for(int[] row: table) for(int value: row) out.writeInt(value);
+			}
+		}
+		try {Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);}
+		catch (IOException e) {temporaryFile.delete(); throw e;}
+	}
+
+	/** Returns a hash (SHA-256, first 16 hexadecimal digits) of a file. */
+	private static String hash(File file) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] bytes = digest.digest(Files.readAllBytes(file.toPath()));
+			StringBuilder hash = new StringBuilder();
+			for (int k = 0; k < 8; k++) hash.append(String.format("%02x", bytes[k]));
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import columnGeneration.Route;
+
+/**
+ * JMX instrumentation of a run (MBean evrptw:type=SolverMonitor,instance="instanceName"), so long runs can be followed with standard tools
+ * (e.g., jconsole or a JMX client) on a headless server. The search reports its progress at the start of each node, the new incumbent solutions
+ * as soon as they are found (search and heuristics), and the column generation and the pricing solvers report their times and labels
+ * (shared by the workers of the parallel tree search).
+ * The operations request a graceful termination or write the incumbent solution.
+ */
+public final class SolverMonitor implements SolverMonitorMXBean {
+
+	private final EVRPTW dataModel; 												//data model
+	private final long startTime; 													//creation time
+	private ObjectName objectName; 													//name of the registered MBean (null if not registered)
+	private volatile boolean stopRequested = false; 								//a graceful termination has been requested
+
+	//Progress of the tree search (last node started)
+	private double globalBound = 0; 												//best bound of the tree
+	private int incumbent = Integer.MAX_VALUE; 										//objective of the incumbent solution
+	private List<Route> incumbentSolution = new ArrayList<Route>(); 				//incumbent solution
+	private int openNodes = 0; 														//open nodes
+	private int processedNodes = 0; 												//nodes started
+	private int currentNodeDepth = 0; 												//depth of the last node started
+
+	//Solvers
+	private volatile int columnPoolSize = 0; 										//columns of the last master problem solved
+	private volatile int activeSubsetRowCuts = 0; 									//SRCs of the last master problem solved
+	private final LongAdder masterTime = new LongAdder(); 							//time solving the master problems
+	private final Map<String, LongAdder> pricingTimes = new ConcurrentHashMap<String, LongAdder>(); //time of each pricing solver
+	private final LongAdder pricingTime = new LongAdder(); 							//time of the pricing solvers
+	private final LongAdder labelsCreated = new LongAdder(); 						//labels created by the pricing solvers
+
+	public SolverMonitor(EVRPTW dataModel) {
+		this.dataModel = dataModel;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/** Registers the MBean in the platform MBean server. */
+	public void register() {
+		try {
+			objectName = new ObjectName("evrptw:type=SolverMonitor,instance="+ObjectName.quote(dataModel.getName()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch (JMException e) {
+			objectName = null;
+			e.printStackTrace();
+		}
+	}
+
+	/** Unregisters the MBean (end of the run). */
+	public void unregister() {
+		if(objectName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		objectName = null;
+	}
+
+	/**
+	 * Reports the start of a node (called by the thread processing it).
+	 * @param depth depth of the node
+	 * @param bound best bound of the tree
+	 * @param objective objective of the incumbent solution
+	 * @param solution incumbent solution (only copied when it improves)
+	 * @param nodesInQueue open nodes (besides the ones being processed)
+	 */
+	public synchronized void nodeStarted(int depth, double bound, int objective, List<Route> solution, int nodesInQueue) {
+		globalBound = Math.min(bound, objective);
+		incumbentFound(objective, solution);
+		openNodes = nodesInQueue;
+		processedNodes++;
+		currentNodeDepth = depth;
+	}
+
+	/**
+	 * Reports a solution found by the search or by a heuristic, when it is found (the dump writes the best one reported).
+	 * @param objective objective of the solution
+	 * @param solution routes of the solution (copied if it improves the incumbent)
+	 */
+	public synchronized void incumbentFound(int objective, List<Route> solution) {
+		if(objective<incumbent && solution != null) {incumbent = objective; incumbentSolution = new ArrayList<Route>(solution);}
+	}
+
+	/** Reports the solution of a master problem. */
+	public void masterSolved(long time, int columns, int subsetRowCuts) {
+		masterTime.add(time);
+		columnPoolSize = columns;
+		activeSubsetRowCuts = subsetRowCuts;
+	}
+
+	/** Reports a call to a pricing solver. */
+	public void pricingSolved(String solver, long time, long labels) {
+		pricingTimes.computeIfAbsent(solver, name -> new LongAdder()).add(time);
+		pricingTime.add(time);
+		labelsCreated.add(labels);
+	}
+
+	/** Returns true if a graceful termination has been requested. */
+	public boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	@Override
+	public String getInstanceName() {
+		return dataModel.getName();
+	}
+
+	@Override
+	public synchronized double getGlobalBound() {
+		return globalBound*0.1;
+	}
+
+	@Override
+	public synchronized double getIncumbent() {
+		return (incumbent == Integer.MAX_VALUE) ? Double.NaN : incumbent*0.1;
+	}
+
+	@Override
+	public synchronized double getGap() {
+		if(incumbent == Integer.MAX_VALUE || incumbent == 0) return Double.NaN;
+		return (incumbent-globalBound)/incumbent;
+	}
+
+	@Override
+	public synchronized int getOpenNodes() {
+		return openNodes;
+	}
+
+	@Override
+	public synchronized int getProcessedNodes() {
+		return processedNodes;
+	}
+
+	@Override
+	public synchronized int getCurrentNodeDepth() {
+		return currentNodeDepth;
+	}
+
+	@Override
+	public int getColumnPoolSize() {
+		return columnPoolSize;
+	}
+
+	@Override
+	public int getActiveSubsetRowCuts() {
+		return activeSubsetRowCuts;
+	}
+
+	@Override
+	public long getMasterTime() {
+		return masterTime.sum();
+	}
+
+	@Override
+	public Map<String, Long> getPricingTimes() {
+		Map<String, Long> times = new TreeMap<String, Long>();
+		for(Map.Entry<String, LongAdder> entry: pricingTimes.entrySet()) times.put(entry.getKey(), entry.getValue().sum());
+		return times;
+	}
+
+	@Override
+	public double getLabelThroughput() {
+		long time = pricingTime.sum();
+		return (time == 0) ? 0 : labelsCreated.sum()*1000.0/time;
+	}
+
+	@Override
+	public long getElapsedTime() {
+		return System.currentTimeMillis()-startTime;
+	}
+
+	@Override
+	public void requestStop() {
+		System.out.println(" - Graceful termination requested (JMX)");
+		stopRequested = true;
+	}
+
+	@Override
+	public String dumpIncumbent() {
+		List<Route> solution;
+		int objective;
+		synchronized(this) {solution = incumbentSolution; objective = incumbent;}
+		if(solution.isEmpty()) return "No incumbent solution";
+		File file = new File("./results/incumbent/"+dataModel.getName()+".txt");
+		try {
+			WarmStart.writeRoutes(file, solution);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "The incumbent could not be written: " + e.getMessage();
+		}
+		return "Incumbent (objective " + objective*0.1 + ", " + solution.size() + " routes) written to " + file.getPath();
+	}
+}
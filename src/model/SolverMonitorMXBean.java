@@ -0,0 +1,55 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link SolverMonitor} (JMX): progress of the Branch-and-Price and metrics of the solvers.
+ * Objectives and bounds are in the units of ./results/output.txt; times are in milliseconds.
+ */
+public interface SolverMonitorMXBean {
+
+	/** Name of the instance being solved. */
+	String getInstanceName();
+
+	/** Best bound of the tree (smallest bound of the open nodes). */
+	double getGlobalBound();
+
+	/** Objective of the incumbent solution. */
+	double getIncumbent();
+
+	/** Relative gap between the incumbent and the global bound. */
+	double getGap();
+
+	/** Open nodes of the tree. */
+	int getOpenNodes();
+
+	/** Nodes processed. */
+	int getProcessedNodes();
+
+	/** Depth of the last node started. */
+	int getCurrentNodeDepth();
+
+	/** Columns of the last master problem solved. */
+	int getColumnPoolSize();
+
+	/** SRCs of the last master problem solved. */
+	int getActiveSubsetRowCuts();
+
+	/** Cumulative time solving the master problems. */
+	long getMasterTime();
+
+	/** Cumulative time of each pricing solver. */
+	Map<String, Long> getPricingTimes();
+
+	/** Labels created per second of pricing. */
+	double getLabelThroughput();
+
+	/** Running time. */
+	long getElapsedTime();
+
+	/** Requests a graceful termination: the search stops after the current column generation iteration (as with the time limit). */
+	void requestStop();
+
+	/** Writes the incumbent solution to ./results/incumbent (a line per route, as the column pools). Returns a description of the file written. */
+	String dumpIncumbent();
+}
@@ -0,0 +1,204 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import columnGeneration.CoveringSolutionRepair;
+import columnGeneration.PricingProblem;
+import columnGeneration.Route;
+import model.EVRPTW.Arc;
+
+/**
+ * Reads the routes saved by previous runs: the solution of the instance (./results/solution) and the column pool of its root node (./results/pool).
+ * Every route is evaluated again on the instance (arcs, time windows, energy, load and charging interval), so files of other versions of an
+ * instance only lose their invalid routes. The saved solution is only used if all its routes are valid and it is feasible (covering and chargers capacity);
+ * with the set-covering master, a solution visiting some customer more than once is turned into a partition first (as the incumbents of the search).
+ */
+public final class WarmStart {
+
+	private final EVRPTW dataModel; 						//data model
+	private final PricingProblem pricingProblem; 			//pricing problem (of the routes created)
+
+	public WarmStart(EVRPTW dataModel, PricingProblem pricingProblem) {
+		this.dataModel = dataModel;
+		this.pricingProblem = pricingProblem;
+	}
+
+	/**
+	 * Reads the saved solution of the instance (./results/solution/instanceName.xml).
+	 * @return the routes of the solution (a partition of the customers) or null if there is no file or the solution is not feasible.
+	 */
+	public List<Route> readSolution() {
+		File file = new File("./results/solution/"+dataModel.getName()+".xml");
+		if(!file.exists()) return null;
+		List<Route> solution = new ArrayList<Route>();
+		try(InputStream in = new FileInputStream(file)) {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			List<Integer> arcs = null;
+			int initialChargingTime = 0;
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					switch(reader.getLocalName()) {
+					case "initial_charging_period": initialChargingTime = Integer.parseInt(reader.getElementText().trim()); break;
+					case "arcs_sequence": arcs = parseArcs(reader.getElementText()); break;
+					default: break;
+					}
+				}
+				else if(event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("route")) {
+					Route route = (arcs == null) ? null : evaluate(arcs, initialChargingTime);
+					if(route == null) {System.out.println(" - Invalid route in the saved solution: " + arcs); return null;}
+					solution.add(route);
+					arcs = null;
+				}
+			}
+			reader.close();
+		} catch (IOException | XMLStreamException | NumberFormatException e) {
+			System.out.println(" - The saved solution could not be read: " + e.getMessage());
+			return null;
+		}
+		if(!isFeasible(solution)) return null;
+		if(dataModel.setCoveringFormulation) {
+			CoveringSolutionRepair coveringRepair = new CoveringSolutionRepair(dataModel);
+			if(coveringRepair.isOverCovered(solution)) {
+				for(Route route: solution) route.value = 1;
+				solution = coveringRepair.repair(solution);
+				if(solution == null) System.out.println(" - The saved solution visits some customer more than once and could not be repaired");
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * Reads the column pool saved at the end of a previous run (./results/pool/instanceName.txt).
+	 * @return the valid routes (empty if there is no file).
+	 */
+	public List<Route> readColumnPool() {
+		List<Route> columns = new ArrayList<Route>();
+		File file = new File("./results/pool/"+dataModel.getName()+".txt");
+		if(!file.exists()) return columns;
+		int invalidColumns = 0;
+		try(BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] fields = line.split(";"); //initial charging period;arcs
+				if(fields.length != 2) continue;
+				Route route = evaluate(parseArcs(fields[1]), Integer.parseInt(fields[0].trim()));
+				if(route != null) columns.add(route);
+				else invalidColumns++;
+			}
+		} catch (IOException | NumberFormatException e) {
+			System.out.println(" - The column pool could not be read: " + e.getMessage());
+		}
+		System.out.println(" - Column pool: " + columns.size() + " routes (" + invalidColumns + " invalid)");
+		return columns;
+	}
+
+	/**
+	 * Writes a column pool (./results/pool/instanceName.txt): a line per route with its initial charging period and its arcs.
+	 */
+	public static void writeColumnPool(EVRPTW dataModel, Collection<Route> columns) {
+		try {
+			writeRoutes(new File("./results/pool/"+dataModel.getName()+".txt"), columns);
+		} catch (IOException e) {
+			System.out.println(" - The column pool could not be written: " + e.getMessage());
+		}
+	}
+
+	/** Writes a set of routes (not artificial) in the format of the column pools. */
+	static void writeRoutes(File file, Collection<Route> columns) throws IOException {
+		file.getParentFile().mkdirs();
+		try(PrintWriter out = new PrintWriter(file)) {
+			for(Route column: columns) {
+				if(column.isArtificialColumn) continue;
+				StringBuilder line = new StringBuilder().append(column.initialChargingTime).append(';');
+				for (int k = 0; k < column.arcs.size(); k++) line.append((k>0) ? "," : "").append(column.arcs.get(k));
+				out.println(line);
+			}
+		}
+	}
+
+	/** Parses a comma separated list of arcs. */
+	private List<Integer> parseArcs(String text) {
+		List<Integer> arcs = new ArrayList<Integer>();
+		for(String arc: text.trim().split(","))
+			if(!arc.trim().isEmpty()) arcs.add(Integer.parseInt(arc.trim()));
+		return arcs;
+	}
+
+	/**
+	 * Evaluates a sequence of arcs (backward, as in the labeling algorithms) with a given initial charging period.
+	 * @return the route or null if it is infeasible.
+	 */
+	private Route evaluate(List<Integer> arcs, int initialChargingTime) {
+		if(arcs.isEmpty()) return null;
+		for (int k = 0; k < arcs.size(); k++) {
+			if(arcs.get(k)<0 || arcs.get(k)>=dataModel.arcs.length || dataModel.arcs[arcs.get(k)] == null) return null;
+			Arc arc = dataModel.arcs[arcs.get(k)];
+			if(k == 0 && arc.tail != 0) return null;
+			if(k == arcs.size()-1 && arc.head != dataModel.C+1) return null;
+			if(k>0 && dataModel.arcs[arcs.get(k-1)].head != arc.tail) return null;
+		}
+
+		int remainingTime = dataModel.vertices[dataModel.C+1].closing_tw;
+		int remainingEnergy = dataModel.E;
+		int load = 0; int cost = 0;
+		HashMap<Integer, Integer> route = new HashMap<Integer, Integer>(dataModel.C);
+		for (int k = arcs.size()-1; k >= 0; k--) {
+			Arc arc = dataModel.arcs[arcs.get(k)];
+			int source = arc.tail;
+			remainingTime-=arc.time;
+			if(remainingTime>dataModel.vertices[source].closing_tw) remainingTime = dataModel.vertices[source].closing_tw;
+			if(remainingTime<dataModel.vertices[source].opening_tw) return null;
+			remainingEnergy-=arc.energy;
+			if(remainingEnergy<0) return null;
+			load+=dataModel.vertices[source].load;
+			cost+=arc.cost;
+			if(source>=1 && source<=dataModel.C) route.put(source, route.getOrDefault(source, 0)+1);
+		}
+		if(load>dataModel.Q) return null;
+
+		//Charging interval
+		int departureTime = (int) (remainingTime/10);
+		int energy = dataModel.E-remainingEnergy;
+		int chargingTime = dataModel.f_inverse[energy];
+		int endChargingTime = initialChargingTime+chargingTime-1;
+		if(initialChargingTime<1 || endChargingTime>=departureTime || endChargingTime>dataModel.last_charging_period) return null;
+
+		//Gets the route sequence (of customers)
+		int[] routeSequence = new int[arcs.size()-1];
+		for (int k = 0; k < routeSequence.length; k++)
+			routeSequence[k] = dataModel.arcs[arcs.get(k)].head;
+
+		Route newRoute = new Route("warmStart", false, route, routeSequence, pricingProblem, cost, departureTime, energy, load, 0.0, new ArrayList<Integer>(arcs), initialChargingTime, chargingTime);
+		newRoute.BBnode = 0;
+		return newRoute;
+	}
+
+	/** Returns true if the routes visit every customer (exactly once, unless the master is a set-covering) and respect the chargers capacity. */
+	private boolean isFeasible(List<Route> solution) {
+		int[] visits = new int[dataModel.C+1];
+		int[] vehiclesCharging = new int[dataModel.last_charging_period+1];
+		for(Route route: solution) {
+			for(int i: route.route.keySet()) visits[i]+=route.route.get(i);
+			for (int t = route.initialChargingTime; t <= route.initialChargingTime+route.chargingTime-1; t++) vehiclesCharging[t]++;
+		}
+		for (int i = 1; i <= dataModel.C; i++)
+			if(visits[i] == 0 || (visits[i]>1 && !dataModel.setCoveringFormulation)) {System.out.println(" - The saved solution does not cover customer " + i); return false;}
+		for (int t = 1; t <= dataModel.last_charging_period; t++)
+			if(vehiclesCharging[t]>dataModel.B) {System.out.println(" - The saved solution exceeds the chargers capacity at period " + t); return false;}
+		return true;
+	}
+}